@@ -0,0 +1,117 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.datasprout.excel.ExcelSproutOptions;
+import de.dfki.sds.datasprout.excel.PatternsToSetups;
+import de.dfki.sds.datasprout.excel.TableGenerator;
+import de.dfki.sds.datasprout.utils.KnowledgeGraphScaler;
+import de.dfki.sds.datasprout.vocab.FOAF;
+import de.dfki.sds.datasprout.vocab.GL;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.vocabulary.DCTerms;
+
+/**
+ * The inputs of the benchmarks: the bundled knowledge graphs (GL, BSBM, SP2B),
+ * synthetically scaled, and the settings of the pipeline with all patterns.
+ */
+public class BenchmarkData {
+
+    /**
+     * Loads a bundled knowledge graph.
+     * @param kg GL, BSBM or SP2B
+     * @param scale synthetic instances per instance (1 is the original graph)
+     * @return
+     */
+    public static Model model(String kg, int scale) {
+        Model model = ModelFactory.createDefaultModel();
+        try (InputStream in = BenchmarkData.class.getResourceAsStream("/de/dfki/sds/datasprout/web/kg/" + kg + ".ttl")) {
+            if (in == null) {
+                throw new RuntimeException("knowledge graph " + kg + " not found");
+            }
+            model.read(in, null, "TTL");
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        return scale(model, scale);
+    }
+
+    //a synthetic graph with scale times the instances (KnowledgeGraphScaler)
+    private static Model scale(Model model, int scale) {
+        if (scale <= 1) {
+            return model;
+        }
+        KnowledgeGraphScaler scaler = new KnowledgeGraphScaler(new RdfsAnalyzer().analyze(model));
+        scaler.setScaleFactor(scale);
+
+        Model scaled = ModelFactory.createDefaultModel();
+        scaled.setNsPrefixes(model);
+        scaler.scale(StreamRDFLib.graph(scaled.getGraph()));
+        return scaled;
+    }
+
+    /**
+     * All patterns on, the label properties of the pipeline.
+     * @return
+     */
+    public static PatternsToSetups patternsToSetups() {
+        PatternsToSetups p = new PatternsToSetups(Locale.ENGLISH);
+        p.setMultipleEntitiesInOneCell(true);
+        p.setNumericInformationAsText(true);
+        p.setAcronymsOrSymbols(true);
+        p.setMultipleSurfaceForms(true);
+        p.setPropertyValueAsColor(true);
+        p.setIntraCellAdditionalInformation(true);
+        p.setPartialFormattingIndicatesRelations(true);
+        p.setOutdatedIsFormatted(true);
+        p.setMultipleTypesInATable(true);
+
+        p.getLabelProperties().add(FOAF.name);
+        p.getLabelProperties().add(DCTerms.title);
+        p.getLabelProperties().add(GL.hasId);
+        p.getLabelProperties().add(ResourceFactory.createProperty("http://purl.org/dc/elements/1.1/title"));
+        p.getLabelProperties().add(ResourceFactory.createProperty("http://localhost/vocabulary/bench/booktitle"));
+        p.getAcronymProperties().add(FOAF.firstName);
+        p.getAcronymProperties().add(FOAF.lastName);
+        p.getAcronymProperties().add(GL.hasAbbreviation);
+        p.getPartialLabelProperties().add(FOAF.firstName);
+        p.getPartialLabelProperties().add(FOAF.lastName);
+        p.getPartialLabelProperties().add(GL.worksAt);
+        p.getPartialLabelProperties().add(FOAF.homepage);
+        p.getPartialLabelProperties().add(DCTerms.issued);
+        p.getOutdatedProperties().add(GL.wasFormerEditor);
+        p.getMergeCellDelimiters().addAll(Arrays.asList(", ", " ", " + ", " & "));
+        p.getBooleanTrueSymbols().addAll(Arrays.asList("OK", "true", "yes", "x"));
+        p.getBooleanFalseSymbols().addAll(Arrays.asList("-", "false", "no", "not"));
+        return p;
+    }
+
+    /**
+     * Options like in the pipeline: one workbook with all provenance files.
+     * @param model
+     * @return
+     */
+    public static ExcelSproutOptions options(Model model) {
+        ExcelSproutOptions options = new ExcelSproutOptions();
+        options.setPrefixMapping(model);
+        options.setPatternsToSetups(patternsToSetups());
+        options.setWriteProvenanceCSV(true);
+        options.setWriteProvenanceModel(true);
+        options.setWriteExpectedModel(true);
+        options.setWriteGenerationSummaryJson(true);
+        options.setNumberOfWorkbooks(1);
+        options.setRandomSeed(0);
+        return options;
+    }
+
+    public static TableGenerator tableGenerator() {
+        TableGenerator tableGenerator = new TableGenerator();
+        tableGenerator.getDataTypeMap().put("http://www4.wiwiss.fu-berlin.de/bizer/bsbm/v01/vocabulary/USD", value -> Double.parseDouble(value));
+        return tableGenerator;
+    }
+}
@@ -0,0 +1,49 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.datasprout.excel.ExcelTable;
+import de.dfki.sds.datasprout.excelgen.ExcelGenerator;
+import de.dfki.sds.datasprout.excelgen.ExcelGeneratorResult;
+import de.dfki.sds.datasprout.excelgen.ExcelGeneratorSheetConfig;
+import de.dfki.sds.datasprout.excelgen.ExcelGeneratorTableConfig;
+import de.dfki.sds.datasprout.excelgen.ExcelGeneratorWorkbookConfig;
+import java.awt.Point;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ExcelGeneratorTableDrawer.exceltable of all tables, each in its own sheet of an
+ * in-memory workbook (not saved).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExcelDrawerBenchmark {
+
+    @Benchmark
+    public ExcelGeneratorResult exceltable(PipelineState.Generated generated) {
+        ExcelGeneratorWorkbookConfig workbookConf = new ExcelGeneratorWorkbookConfig();
+        workbookConf.setFileName("workbook.xlsx");
+
+        int i = 0;
+        for (ExcelTable table : generated.tables) {
+            ExcelGeneratorTableConfig tableConf = new ExcelGeneratorTableConfig();
+            tableConf.setOffset(new Point(0, 0));
+            tableConf.setStaticCellDrawer(d -> d.exceltable(table, generated.options));
+
+            ExcelGeneratorSheetConfig sheetConf = new ExcelGeneratorSheetConfig();
+            sheetConf.setSheetName("Sheet" + (i++));
+            sheetConf.getTableConfigs().add(tableConf);
+            workbookConf.getSheetConfigs().add(sheetConf);
+        }
+
+        return new ExcelGenerator().generate(null, workbookConf);
+    }
+}
@@ -0,0 +1,61 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.datasprout.excel.ExcelTable;
+import de.dfki.sds.datasprout.excelgen.FontStyle;
+import de.dfki.sds.hephaistos.storage.excel.ExcelCell;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * FontStyle.parse of the rich texts of the generated cells
+ * (e.g. Partial Formatting Indicates Relations).
+ * One operation parses all of them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FontStyleBenchmark {
+
+    private List<String> richTexts;
+
+    @Setup(Level.Trial)
+    public void collect(PipelineState.Generated generated) {
+        richTexts = new ArrayList<>();
+        for (ExcelTable table : generated.tables) {
+            for (ExcelCell[] row : table.getData()) {
+                for (ExcelCell cell : row) {
+                    if (cell != null && cell.getValueRichText() != null) {
+                        richTexts.add(cell.getValueRichText());
+                    }
+                }
+            }
+        }
+        //graphs without rich text cells
+        if (richTexts.isEmpty()) {
+            richTexts.add("<b>Jane <font color='#0000ff'>Doe</font></b> &amp; <i>John</i> <u>Doe</u>");
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String richText : richTexts) {
+            blackhole.consume(FontStyle.parse(richText));
+        }
+    }
+}
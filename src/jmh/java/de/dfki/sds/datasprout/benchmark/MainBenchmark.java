@@ -0,0 +1,23 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that the allocation rate
+ * (gc.alloc.rate.norm: bytes per operation) is reported next to the throughput.
+ * The arguments are the ones of JMH, e.g. a benchmark regex and -p kg=GL -p scale=1.
+ */
+public class MainBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,28 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.datasprout.Setup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PatternsToSetups.generate with all patterns for one workbook.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PatternsToSetupsBenchmark {
+
+    @Benchmark
+    public List<Setup> generate(PipelineState.Analyzed analyzed) {
+        return BenchmarkData.patternsToSetups().generate(analyzed.rdfsAnalyzer, 1, 0L);
+    }
+}
@@ -0,0 +1,77 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.datasprout.Setup;
+import de.dfki.sds.datasprout.excel.ExcelSproutOptions;
+import de.dfki.sds.datasprout.excel.ExcelTable;
+import de.dfki.sds.datasprout.excel.IdCounter;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import java.util.List;
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The results of the pipeline stages, each state is the input of the next stage.
+ * They are created once per trial, so a benchmark only measures its own stage.
+ */
+public class PipelineState {
+
+    /**
+     * A bundled knowledge graph, scaled by copying its instances.
+     */
+    @State(Scope.Benchmark)
+    public static class Graph {
+
+        @Param({"GL", "BSBM", "SP2B"})
+        public String kg;
+
+        @Param({"1", "4"})
+        public int scale;
+
+        public Model model;
+
+        @org.openjdk.jmh.annotations.Setup(Level.Trial)
+        public void load() {
+            model = BenchmarkData.model(kg, scale);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Analyzed {
+
+        public RdfsAnalyzer rdfsAnalyzer;
+
+        @org.openjdk.jmh.annotations.Setup(Level.Trial)
+        public void analyze(Graph graph) {
+            rdfsAnalyzer = new RdfsAnalyzer().analyze(graph.model);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Planned {
+
+        public List<Setup> setups;
+        public ExcelSproutOptions options;
+
+        @org.openjdk.jmh.annotations.Setup(Level.Trial)
+        public void plan(Analyzed analyzed) {
+            options = BenchmarkData.options(analyzed.rdfsAnalyzer.getModel());
+            setups = options.getPatternsToSetups().generate(analyzed.rdfsAnalyzer, options.getNumberOfWorkbooks(), options.getRandomSeed());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Generated {
+
+        public List<ExcelTable> tables;
+        public ExcelSproutOptions options;
+
+        @org.openjdk.jmh.annotations.Setup(Level.Trial)
+        public void generate(Planned planned) {
+            options = planned.options;
+            tables = BenchmarkData.tableGenerator().generateList(planned.setups, new IdCounter(), options);
+        }
+    }
+}
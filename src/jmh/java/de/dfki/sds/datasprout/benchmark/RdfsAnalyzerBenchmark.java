@@ -0,0 +1,28 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RdfsAnalyzer.analyze of a whole graph.
+ * The graph is skolemized by the first analysis, later ones only read it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RdfsAnalyzerBenchmark {
+
+    @Benchmark
+    public RdfsAnalyzer analyze(PipelineState.Graph graph) {
+        return new RdfsAnalyzer().analyze(graph.model);
+    }
+}
@@ -0,0 +1,91 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.datasprout.excel.ExcelTable;
+import de.dfki.sds.datasprout.excel.ProvenanceStore;
+import de.dfki.sds.datasprout.utils.SemanticUtility;
+import de.dfki.sds.datasprout.utils.StatementFormatter;
+import de.dfki.sds.datasprout.vocab.CSVW;
+import de.dfki.sds.datasprout.vocab.PROV;
+import de.dfki.sds.datasprout.vocab.SS;
+import de.dfki.sds.hephaistos.storage.excel.ExcelCell;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.shared.PrefixMapping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Turtle of the provenance of a cell (provenance CSV and cell comments):
+ * with the StatementFormatter and with a model of the statements and the
+ * Turtle writer (Provenance.getModel and SemanticUtility.toTTL, the path before the formatter).
+ * One operation formats the statements of one cell, the cells of the generated tables are visited in turn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatementFormatterBenchmark {
+
+    private List<List<Statement>> cells;
+    private int next;
+
+    //like the provenance of WorkbookCreator
+    private PrefixMapping prefixMapping;
+    private StatementFormatter statementFormatter;
+
+    @Setup(Level.Trial)
+    public void collect(PipelineState.Generated generated) {
+        cells = new ArrayList<>();
+        for (ExcelTable table : generated.tables) {
+            ProvenanceStore provenanceStore = table.getProvenanceStore();
+            for (ExcelCell cell : provenanceStore.getCells()) {
+                if (cell.getAddress() != null && provenanceStore.getStatementCount(cell) > 0) {
+                    cells.add(provenanceStore.getStatements(cell));
+                }
+            }
+        }
+
+        prefixMapping = PrefixMapping.Factory.create();
+        prefixMapping.setNsPrefixes(generated.options.getPrefixMapping());
+        prefixMapping.setNsPrefix("prov", PROV.NS);
+        prefixMapping.setNsPrefix("csvw", CSVW.NS);
+        prefixMapping.setNsPrefix("ss", SS.NS);
+        prefixMapping.setNsPrefixes(PrefixMapping.Standard);
+
+        statementFormatter = new StatementFormatter(prefixMapping);
+    }
+
+    private List<Statement> next() {
+        List<Statement> statements = cells.get(next);
+        next = next + 1 == cells.size() ? 0 : next + 1;
+        return statements;
+    }
+
+    @Benchmark
+    public String statementFormatter() {
+        return statementFormatter.format(next()).toString();
+    }
+
+    @Benchmark
+    public String modelAndTurtleWriter() {
+        Model model = ModelFactory.createDefaultModel();
+        model.add(next());
+        model.setNsPrefixes(prefixMapping);
+        return SemanticUtility.toTTL(model, false);
+    }
+}
@@ -0,0 +1,96 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.rdf2rdb.SubjectIndex;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-cell lookup of the table generator: the objects of a subject and a property,
+ * with the SubjectIndex and with Model.listObjectsOfProperty (the path before the index).
+ * One operation is one lookup, the (subject, property) pairs of the graph are visited
+ * in a shuffled order, e.g. -p kg=BSBM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubjectIndexBenchmark {
+
+    private Model model;
+    private SubjectIndex index;
+
+    private Resource[] subjects;
+    private Property[] properties;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void collect(PipelineState.Graph graph) {
+        model = graph.model;
+        index = SubjectIndex.build(model);
+
+        Set<Statement> pairs = new LinkedHashSet<>();
+        StmtIterator iter = model.listStatements();
+        try {
+            while (iter.hasNext()) {
+                Statement stmt = iter.next();
+                //the object does not matter, one pair per subject and property
+                pairs.add(model.createStatement(stmt.getSubject(), stmt.getPredicate(), ""));
+            }
+        } finally {
+            iter.close();
+        }
+
+        //not in the order of the graph, like the cells of the tables
+        List<Statement> shuffled = new ArrayList<>(pairs);
+        Collections.shuffle(shuffled, new Random(0));
+
+        subjects = new Resource[shuffled.size()];
+        properties = new Property[shuffled.size()];
+        for (int i = 0; i < shuffled.size(); i++) {
+            subjects[i] = shuffled.get(i).getSubject();
+            properties[i] = shuffled.get(i).getPredicate();
+        }
+    }
+
+    private int next() {
+        int i = next;
+        next = i + 1 == subjects.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public List<RDFNode> subjectIndex() {
+        int i = next();
+        return index.objects(subjects[i], properties[i]);
+    }
+
+    @Benchmark
+    public List<RDFNode> listObjectsOfProperty() {
+        int i = next();
+        return model.listObjectsOfProperty(subjects[i], properties[i]).toList();
+    }
+}
@@ -0,0 +1,35 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.datasprout.excel.ExcelTable;
+import de.dfki.sds.datasprout.excel.IdCounter;
+import de.dfki.sds.datasprout.excel.TableGenerator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TableGenerator.generate of all tables of the setups (sequentially).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TableGeneratorBenchmark {
+
+    private TableGenerator tableGenerator = BenchmarkData.tableGenerator();
+
+    @Benchmark
+    public List<ExcelTable> generate(PipelineState.Planned planned) {
+        return tableGenerator.generateList(planned.setups, new IdCounter(), planned.options);
+    }
+}
@@ -0,0 +1,57 @@
+package de.dfki.sds.datasprout.benchmark;
+
+import de.dfki.sds.datasprout.excel.WorkbookCreator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * WorkbookCreator.create of the tables: the workbook and its provenance files
+ * (expected.ttl.gz, provenance.ttl.gz, provenance CSV) written to a temporary folder.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkbookCreatorBenchmark {
+
+    @Param({"false", "true"})
+    public boolean streamingProvenance;
+
+    private File folder;
+
+    @Setup(Level.Trial)
+    public void createFolder() throws IOException {
+        folder = Files.createTempDirectory("datasprout-benchmark").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFolder() {
+        FileUtils.deleteQuietly(folder);
+    }
+
+    @Benchmark
+    public File create(PipelineState.Generated generated) {
+        generated.options.setStreamingProvenance(streamingProvenance);
+        File dst = new File(folder, "workbooks");
+        new WorkbookCreator().create(dst, generated.tables, generated.options);
+        return dst;
+    }
+}
@@ -7,10 +7,15 @@ import de.dfki.sds.datasprout.excel.PatternsToSetups;
 import de.dfki.sds.datasprout.excel.TableGenerator;
 import de.dfki.sds.datasprout.excel.WorkbookCreator;
 import de.dfki.sds.datasprout.utils.Dataset;
+import de.dfki.sds.datasprout.utils.ParallelRdfLoader;
+import de.dfki.sds.datasprout.utils.PerformanceRecorder;
+import de.dfki.sds.datasprout.utils.Tdb2Store;
 import de.dfki.sds.datasprout.vocab.FOAF;
 import de.dfki.sds.datasprout.vocab.GL;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzerCache;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzerSnapshots;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -20,11 +25,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Random;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.shared.PrefixMapping;
 import org.apache.jena.vocabulary.DCTerms;
 import org.zeroturnaround.zip.commons.FileUtils;
 
@@ -36,11 +42,22 @@ public class DataSproutPipeline {
     private List<Dataset> datasets;
     private File genFolder;
     private Map<String, Consumer<ExcelSproutOptions>> modeOptions;
+    
+    //a dataset is analyzed once for all modes
+    private RdfsAnalyzerCache rdfsAnalyzerCache;
+    
+    //optional: analyzed datasets persisted across runs
+    private RdfsAnalyzerSnapshots snapshots;
+    
+    //N-Triples are parsed in parallel
+    private ParallelRdfLoader loader;
 
     public DataSproutPipeline() {
         datasets = new ArrayList<>();
         genFolder = new File("gen");
         modeOptions = new HashMap<>();
+        rdfsAnalyzerCache = new RdfsAnalyzerCache();
+        loader = new ParallelRdfLoader();
     }
 
     private void defaultSettings(ExcelSproutOptions options, String mode) {
@@ -99,57 +116,139 @@ public class DataSproutPipeline {
         for (Dataset dataset : datasets) {
             
             IdCounter idCounter = new IdCounter();
+            
+            //load and analysis are in the performance of every mode
+            PerformanceRecorder recorder = new PerformanceRecorder();
 
             File datasetFolder = new File(genFolder, dataset.getName());
 
             System.out.println("==============");
             System.out.println("loading " + dataset.getName());
-            Model model = ModelFactory.createDefaultModel().read(new FileReader(dataset.getFile()), null, "TTL");
-            System.out.println(model.size() + " statements");
-
-            for (Entry<String, Consumer<ExcelSproutOptions>> modeOption : modeOptions.entrySet()) {
+            
+            if (dataset.isTdb2()) {
+                //the graph stays on disk, it is bulk loaded once (and again when the file changed)
+                try (Tdb2Store store = new Tdb2Store(dataset.getTdb2Folder())) {
+                    if (!store.isLoaded(dataset.getFile(), dataset.getTdb2GraphUri())) {
+                        recorder.begin("load");
+                        try {
+                            store.bulkLoad(dataset.getFile(), dataset.getTdb2GraphUri());
+                        } finally {
+                            recorder.end();
+                        }
+                    }
+                    
+                    //analysis and generation in one read transaction
+                    store.beginRead();
+                    try {
+                        RdfsAnalyzer rdfsAnalyzer = new RdfsAnalyzer();
+                        rdfsAnalyzer.setIndexed(false);
+                        recorder.begin("analyze");
+                        try {
+                            rdfsAnalyzer.analyze(store.getModel(dataset.getTdb2GraphUri()));
+                        } finally {
+                            recorder.end();
+                        }
+                        generate(dataset, rdfsAnalyzer, datasetFolder, tableGenerator, workbookCreator, idCounter, recorder);
+                    } finally {
+                        store.end();
+                    }
+                }
+                continue;
+            }
+            
+            //the file is only loaded and analyzed if it changed since the last run
+            String key = dataset.getName() + "|" + dataset.getFile().getAbsolutePath() + "|" + dataset.getFile().lastModified() + "|" + dataset.getFile().length();
+            Supplier<Model> parser = () -> {
+                recorder.begin("load");
+                try {
+                    return loader.load(dataset.getFile());
+                } finally {
+                    recorder.end();
+                }
+            };
+            RdfsAnalyzer rdfsAnalyzer;
+            //the load is measured on its own (inside of the analysis)
+            recorder.begin("analyze");
+            try {
+                if (snapshots == null) {
+                    rdfsAnalyzer = rdfsAnalyzerCache.get(key, parser);
+                } else {
+                    //also across runs: a fresh snapshot of the file is loaded instead of parsing and analyzing it
+                    rdfsAnalyzer = rdfsAnalyzerCache.getAnalyzer(key, () -> snapshots.get(
+                            RdfsAnalyzerSnapshots.sha256(dataset.getFile()), 
+                            parser, 
+                            rdfsAnalyzerCache.getAnalyzerParallelism()
+                    ));
+                }
+            } finally {
+                recorder.end();
+            }
+            generate(dataset, rdfsAnalyzer, datasetFolder, tableGenerator, workbookCreator, idCounter, recorder);
+        }
+    }
 
-                ExcelSproutOptions options = new ExcelSproutOptions();
-                options.setPrefixMapping(model);
-                
+    //all modes of a dataset
+    private void generate(Dataset dataset, RdfsAnalyzer rdfsAnalyzer, File datasetFolder, TableGenerator tableGenerator, WorkbookCreator workbookCreator, IdCounter idCounter, PerformanceRecorder recorder) throws IOException {
+        Model model = rdfsAnalyzer.getModel();
+        long statements = rdfsAnalyzer.getSize();
+        System.out.println(statements + " statements");
 
-                String mode = modeOption.getKey();
-                Consumer<ExcelSproutOptions> modeOptionSetter = modeOption.getValue();
+        for (Entry<String, Consumer<ExcelSproutOptions>> modeOption : modeOptions.entrySet()) {
 
-                System.out.println("--------------");
-                System.out.println("Mode: " + mode);
+            ExcelSproutOptions options = new ExcelSproutOptions();
+            //a copy, since the prefixes of a TDB2 model are only readable in its transaction
+            options.setPrefixMapping(PrefixMapping.Factory.create().setNsPrefixes(model));
+            options.setPerformanceRecorder(recorder.copy());
+            
 
-                File datasetModeFolder = new File(datasetFolder, mode);
+            String mode = modeOption.getKey();
+            Consumer<ExcelSproutOptions> modeOptionSetter = modeOption.getValue();
 
-                PatternsToSetups patternsToSetups = new PatternsToSetups(Locale.ENGLISH);
-                patternsToSetups.setMultipleEntitiesInOneCell(true);
-                options.setPatternsToSetups(patternsToSetups);
+            System.out.println("--------------");
+            System.out.println("Mode: " + mode);
 
-                defaultSettings(options, mode);
+            File datasetModeFolder = new File(datasetFolder, mode);
 
-                //changes per mode
-                modeOptionSetter.accept(options);
-                
-                options.getGenerationSummary().put("dataset", dataset.getName());
-                options.getGenerationSummary().put("statements", model.size());
-                options.getGenerationSummary().put("mode", mode);
-                options.getGenerationSummary().put("date", LocalDate.now().toString());
-                options.getGenerationSummary().put("numberOfWorkbooks", options.getNumberOfWorkbooks());
-                options.getGenerationSummary().put("randomSeed", options.getRandomSeed());
-                options.getGenerationSummary().put("locale", patternsToSetups.getLocale().toString());
+            PatternsToSetups patternsToSetups = new PatternsToSetups(Locale.ENGLISH);
+            patternsToSetups.setMultipleEntitiesInOneCell(true);
+            options.setPatternsToSetups(patternsToSetups);
 
-                //generate --------------------
-                //from patterns to setups for tables
-                List<Setup> setups = patternsToSetups.generate(model, options.getNumberOfWorkbooks(), new Random(options.getRandomSeed()));
+            defaultSettings(options, mode);
 
-                //from setups to tables
-                List<ExcelTable> tables = tableGenerator.generateList(setups, idCounter, options);
-                System.out.println(tables.size() + " tables");
-                options.getGenerationSummary().put("tables", tables.size());
+            //changes per mode
+            modeOptionSetter.accept(options);
+            
+            if (dataset.isTdb2()) {
+                //the read transaction belongs to this thread
+                options.setTableParallelism(1);
+                options.setTableExecutor(null);
+            }
+            
+            options.getGenerationSummary().put("dataset", dataset.getName());
+            options.getGenerationSummary().put("statements", statements);
+            options.getGenerationSummary().put("mode", mode);
+            options.getGenerationSummary().put("date", LocalDate.now().toString());
+            options.getGenerationSummary().put("numberOfWorkbooks", options.getNumberOfWorkbooks());
+            options.getGenerationSummary().put("randomSeed", options.getRandomSeed());
+            options.getGenerationSummary().put("locale", patternsToSetups.getLocale().toString());
 
-                //from tables to workbooks
-                workbookCreator.create(datasetModeFolder, tables, options);
+            //generate --------------------
+            //from patterns to setups for tables
+            List<Setup> setups;
+            options.getPerformanceRecorder().begin("setups");
+            try {
+                setups = patternsToSetups.generate(rdfsAnalyzer, options.getNumberOfWorkbooks(), options.getRandomSeed());
+            } finally {
+                options.getPerformanceRecorder().end();
             }
+
+            //from setups to tables
+            List<ExcelTable> tables = tableGenerator.generateList(setups, idCounter, options);
+            System.out.println(tables.size() + " tables");
+            options.getGenerationSummary().put("tables", tables.size());
+
+            //from tables to workbooks
+            workbookCreator.create(datasetModeFolder, tables, options);
         }
     }
 
@@ -161,4 +260,25 @@ public class DataSproutPipeline {
         return modeOptions;
     }
 
+    public RdfsAnalyzerCache getRdfsAnalyzerCache() {
+        return rdfsAnalyzerCache;
+    }
+
+    public ParallelRdfLoader getLoader() {
+        return loader;
+    }
+
+    public RdfsAnalyzerSnapshots getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Loads fresh snapshots of the datasets instead of parsing and analyzing them (and saves new ones).
+     * The workbooks are not the same as the ones of a run without snapshots, see RdfsAnalyzerSnapshots.
+     * @param snapshots null to always parse (default)
+     */
+    public void setSnapshots(RdfsAnalyzerSnapshots snapshots) {
+        this.snapshots = snapshots;
+    }
+
 }
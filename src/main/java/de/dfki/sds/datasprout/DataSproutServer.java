@@ -8,11 +8,18 @@ import de.dfki.sds.datasprout.excel.PatternsToSetups;
 import de.dfki.sds.datasprout.excel.TableGenerator;
 import de.dfki.sds.datasprout.excel.WorkbookCreator;
 import de.dfki.sds.datasprout.vocab.FOAF;
+import de.dfki.sds.datasprout.utils.PerformanceRecorder;
+import de.dfki.sds.datasprout.utils.ZipStreamer;
 import de.dfki.sds.datasprout.vocab.GL;
-import java.io.ByteArrayOutputStream;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzerCache;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzerSnapshots;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URLEncoder;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -21,15 +28,17 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.vocabulary.DCTerms;
 import org.json.JSONObject;
-import org.zeroturnaround.zip.ZipUtil;
 import spark.Request;
 import spark.Response;
 import spark.Spark;
@@ -49,6 +58,31 @@ public class DataSproutServer {
     
     private Map<String, String> kg2resource;
     
+    private KnowledgeGraphCache kgCache;
+    
+    //a knowledge graph is analyzed once for all requests
+    private RdfsAnalyzerCache rdfsAnalyzerCache;
+    
+    //optional: analyzed knowledge graphs persisted across server starts
+    private RdfsAnalyzerSnapshots snapshots;
+    
+    //asynchronous sprawls
+    private SprawlJobManager jobManager;
+    
+    //tables generated at the same time per request
+    private int tableParallelism;
+    
+    //workbooks written at the same time per request
+    private int workbookParallelism;
+    
+    //served at /metrics
+    private ServerMetrics metrics;
+    
+    //optional: zips of identical /sprawl requests
+    private SprawlResultCache resultCache;
+    
+    private Map<String, String> kg2hash;
+    
     public DataSproutServer(String[] args) {
         folder = new File("gen");
         folder.mkdir();
@@ -58,6 +92,56 @@ public class DataSproutServer {
         kg2resource.put("BSBM", ROOT_PATH + "/web/kg/BSBM.ttl");
         kg2resource.put("LUBM", ROOT_PATH + "/web/kg/LUBM.ttl");
         kg2resource.put("SP2B", ROOT_PATH + "/web/kg/SP2B.ttl");
+        
+        //e.g. --kgLoadPolicy=Eager
+        KnowledgeGraphCache.LoadPolicy loadPolicy = KnowledgeGraphCache.LoadPolicy.parse(arg(args, "kgLoadPolicy", "Lazy"));
+        kgCache = new KnowledgeGraphCache(kg2resource, loadPolicy);
+        rdfsAnalyzerCache = new RdfsAnalyzerCache();
+        
+        //e.g. --analyzerParallelism=4
+        rdfsAnalyzerCache.setAnalyzerParallelism(Integer.parseInt(arg(args, "analyzerParallelism", "1")));
+        
+        //e.g. --snapshotFolder=snapshot, off by default since the workbooks then differ from the ones without snapshots
+        String snapshotFolder = arg(args, "snapshotFolder", "");
+        if(!snapshotFolder.isEmpty()) {
+            snapshots = new RdfsAnalyzerSnapshots(new File(snapshotFolder));
+        }
+        
+        //e.g. --jobConcurrency=2 --jobQueueDepth=16 --jobRetentionMinutes=60
+        jobManager = new SprawlJobManager(
+                Integer.parseInt(arg(args, "jobConcurrency", "2")),
+                Integer.parseInt(arg(args, "jobQueueDepth", "16")),
+                Long.parseLong(arg(args, "jobRetentionMinutes", "60")) * 60 * 1000
+        );
+        
+        //e.g. --tableParallelism=4
+        tableParallelism = Integer.parseInt(arg(args, "tableParallelism", "1"));
+        
+        //e.g. --workbookParallelism=2
+        workbookParallelism = Integer.parseInt(arg(args, "workbookParallelism", "1"));
+        
+        metrics = new ServerMetrics();
+        
+        //e.g. --resultCacheMegabytes=1024, 0 disables the cache
+        long resultCacheMegabytes = Long.parseLong(arg(args, "resultCacheMegabytes", "1024"));
+        if(resultCacheMegabytes > 0) {
+            resultCache = new SprawlResultCache(new File(folder, "result-cache"), resultCacheMegabytes * 1024 * 1024);
+        }
+        
+        kg2hash = new ConcurrentHashMap<>();
+    }
+    
+    //reads arguments in the form --key=value
+    private static String arg(String[] args, String key, String defaultValue) {
+        if(args == null) {
+            return defaultValue;
+        }
+        for(String arg : args) {
+            if(arg.startsWith("--" + key + "=")) {
+                return arg.substring(key.length() + 3);
+            }
+        }
+        return defaultValue;
     }
     
     public void start() {
@@ -71,54 +155,176 @@ public class DataSproutServer {
         Spark.staticFiles.location(ROOT_PATH + "/web");
         
         Spark.before((req, res) -> {
+            req.attribute("metrics.start", System.nanoTime());
+            
             String path = req.pathInfo();
             if (!path.equals("/") && path.endsWith("/")) {
                 res.redirect(path.substring(0, path.length() - 1));
             }
         });
         
+        Spark.afterAfter((req, res) -> {
+            Long start = req.attribute("metrics.start");
+            if (start == null) {
+                return;
+            }
+            metrics.request(
+                    metricsRoute(req.pathInfo()),
+                    req.requestMethod(),
+                    kgCache.contains(req.queryParams("kg")) ? req.queryParams("kg") : "none",
+                    "excel".equals(req.queryParams("mode")) ? "excel" : "none",
+                    res.raw().getStatus(),
+                    (System.nanoTime() - start) / 1e9
+            );
+        });
+        
         Spark.awaitInitialization();
         System.out.println("server running at localhost:" + port);
         
+        kgCache.init();
+        
         Spark.get("/sprawl", this::getSprawl);
+        Spark.get("/kgcache", (req, resp) -> {
+            resp.type("application/json");
+            JSONObject json = kgCache.toJSON();
+            JSONObject analysis = new JSONObject();
+            analysis.put("size", rdfsAnalyzerCache.size());
+            analysis.put("hits", rdfsAnalyzerCache.getHits());
+            analysis.put("misses", rdfsAnalyzerCache.getMisses());
+            json.put("analysis", analysis);
+            return json.toString(2);
+        });
+        
+        Spark.post("/jobs", this::postJob);
+        Spark.get("/jobs", (req, resp) -> {
+            resp.type("application/json");
+            return jobManager.toJSON().toString(2);
+        });
+        Spark.get("/jobs/:id", this::getJob);
+        Spark.get("/jobs/:id/result", this::getJobResult);
+        
+        metrics.counter("datasprout_kgcache_hits_total", "Knowledge graph cache hits.", kgCache::getHits);
+        metrics.counter("datasprout_kgcache_misses_total", "Knowledge graph cache misses (parses).", kgCache::getMisses);
+        metrics.gauge("datasprout_kgcache_loaded", "Parsed knowledge graphs in the cache.", () -> kgCache.getLoadedNames().size());
+        metrics.counter("datasprout_analysis_cache_hits_total", "Analysis cache hits.", rdfsAnalyzerCache::getHits);
+        metrics.counter("datasprout_analysis_cache_misses_total", "Analysis cache misses.", rdfsAnalyzerCache::getMisses);
+        metrics.gauge("datasprout_analysis_cache_size", "Analyzed knowledge graphs in the cache.", rdfsAnalyzerCache::size);
+        metrics.gauge("datasprout_jobs_queued", "Jobs waiting in the queue.", jobManager::getQueued);
+        metrics.gauge("datasprout_jobs_active", "Jobs running now.", jobManager::getActive);
+        metrics.gauge("datasprout_jobs_queue_depth", "Capacity of the job queue.", jobManager::getQueueDepth);
+        metrics.gauge("datasprout_jobs", "Known jobs (queued, running and retained).", jobManager::getJobCount);
+        
+        if (resultCache != null) {
+            metrics.counter("datasprout_result_cache_hits_total", "Sprawls served from the result cache.", resultCache::getHits);
+            metrics.counter("datasprout_result_cache_misses_total", "Sprawls generated for the result cache.", resultCache::getMisses);
+            metrics.counter("datasprout_result_cache_shared_total", "Sprawls which waited for an identical running generation.", resultCache::getShared);
+            metrics.gauge("datasprout_result_cache_entries", "Zips in the result cache.", resultCache::size);
+            metrics.gauge("datasprout_result_cache_bytes", "Bytes of the zips in the result cache.", resultCache::getBytes);
+        }
+        
+        Spark.get("/metrics", (req, resp) -> {
+            resp.type("text/plain; version=0.0.4; charset=utf-8");
+            return metrics.scrape();
+        });
     }
     
-    private void excel(File genFolder, Model model, Request req) throws IOException {
+    //the route of a path, ids are replaced so that the number of label values is bounded
+    private static String metricsRoute(String path) {
+        if (path.equals("/") || path.equals("/sprawl") || path.equals("/kgcache") || path.equals("/jobs") || path.equals("/metrics")) {
+            return path;
+        }
+        if (path.matches("/jobs/[^/]+")) {
+            return "/jobs/:id";
+        }
+        if (path.matches("/jobs/[^/]+/result")) {
+            return "/jobs/:id/result";
+        }
+        return "other";
+    }
+    
+    //job is null in case of a synchronous sprawl
+    private void excel(File genFolder, RdfsAnalyzer rdfsAnalyzer, ExcelSproutOptions options, SprawlJob job) throws IOException {
         
-        //from params to options
-        ExcelSproutOptions options = excelOptions(req);
-        options.setPrefixMapping(model);
+        options.setPrefixMapping(rdfsAnalyzer.getModel());
         
-        List<Setup> setups = options.getPatternsToSetups().generate(
-                model,
-                options.getNumberOfWorkbooks(), 
-                new Random(options.getRandomSeed())
-        );
+        stage(job, "setups");
+        List<Setup> setups;
+        options.getPerformanceRecorder().begin("setups");
+        try {
+            setups = options.getPatternsToSetups().generate(
+                    rdfsAnalyzer,
+                    options.getNumberOfWorkbooks(), 
+                    options.getRandomSeed()
+            );
+        } finally {
+            options.getPerformanceRecorder().end();
+        }
         
         IdCounter idCounter = new IdCounter();
         
         //generate tables from the setups
+        stage(job, "tables");
         TableGenerator generator = new TableGenerator();
         generator.getDataTypeMap().put("http://www4.wiwiss.fu-berlin.de/bizer/bsbm/v01/vocabulary/USD", value -> Double.parseDouble(value));
         List<ExcelTable> tables = generator.generateList(setups, idCounter, options);
         
         //generate workbooks
+        stage(job, "workbooks");
         WorkbookCreator workbookCreator = new WorkbookCreator();
         workbookCreator.create(genFolder, tables, options);
     }
     
+    //zips the folder of a finished workbook, measured as stage "zip"
+    private Consumer<File> zipListener(ZipStreamer zipStreamer, PerformanceRecorder recorder) {
+        return workbookFolder -> {
+            long bytes = zipStreamer.getBytes();
+            recorder.begin("zip");
+            try {
+                zipStreamer.addFolder(workbookFolder);
+            } finally {
+                recorder.end();
+            }
+            recorder.addOutput("zip", zipStreamer.getBytes() - bytes);
+        };
+    }
+    
+    //the summary.json files are written before the zip, so their performance has no zip stage:
+    //the complete performance (with zip, except closing the zip) is the trailing entry performance.json
+    private void zipFinish(ZipStreamer zipStreamer, PerformanceRecorder recorder) {
+        long bytes = zipStreamer.getBytes();
+        recorder.begin("zip");
+        try {
+            zipStreamer.addRemaining();
+        } finally {
+            recorder.end();
+        }
+        recorder.addOutput("zip", zipStreamer.getBytes() - bytes);
+        zipStreamer.addText("performance.json", recorder.toJSON().toString(2));
+        zipStreamer.finish();
+    }
+    
+    private void stage(SprawlJob job, String stage) {
+        if(job != null) {
+            job.stage(stage);
+        }
+    }
+    
     //from request to options
     private ExcelSproutOptions excelOptions(Request req) {
         ExcelSproutOptions options = new ExcelSproutOptions();
         
         options.setRandomSeed(Long.parseLong(req.queryParams("randomSeed")));
         options.setNumberOfWorkbooks(Integer.parseInt(req.queryParams("numberOfWorkbooks")));
+        options.setTableParallelism(tableParallelism);
+        options.setWorkbookParallelism(workbookParallelism);
         
         options.setWriteExpectedModel(Boolean.parseBoolean(req.queryParams("writeExpectedModel")));
         options.setWriteProvenanceModel(Boolean.parseBoolean(req.queryParams("writeProvenanceModel")));
         options.setWriteProvenanceCSV(Boolean.parseBoolean(req.queryParams("writeProvenanceCSV")));
         options.setWriteGenerationSummaryJson(Boolean.parseBoolean(req.queryParams("writeGenerationSummaryJson")));
         options.setProvenanceAsCellComment(Boolean.parseBoolean(req.queryParams("provenanceAsCellComment")));
+        options.setStreamingWorkbooks(Boolean.parseBoolean(req.queryParams("streamingWorkbooks")));
+        options.setStreamingProvenance(Boolean.parseBoolean(req.queryParams("streamingProvenance")));
         
         String patternsJson = req.queryParams("patterns");
         JSONObject patterns = new JSONObject(patternsJson);
@@ -173,6 +379,8 @@ public class DataSproutServer {
     
     private Object getSprawl(Request req, Response resp) throws Exception {
         
+        ZipStreamer zipStreamer = null;
+        SprawlResultCache.Flight flight = null;
         try {
             //zip filename
             LocalDateTime ldt = LocalDateTime.now();
@@ -188,45 +396,280 @@ public class DataSproutServer {
                 return getError("mode parameter is not set", req, resp);
             }
             
-            //get model
-            if(!kg2resource.containsKey(kg)) {
+            if(!kgCache.contains(kg)) {
                 throw new RuntimeException("a knowledge graph named " + kg + " was not found");
             }
-            InputStream kgStream = DataSproutServer.class.getResourceAsStream(kg2resource.get(kg));
-            Model model = ModelFactory.createDefaultModel().read(kgStream, null, "TTL");
             
-            //generate it
+            //from params to options
+            ExcelSproutOptions options = options(mode, req);
+            String zipFilename = "datasprout-sprawl-" + kg + "-" + mode + "-" + time + ".zip";
+            
+            //an identical request was generated before or is generated now
+            if(resultCache != null) {
+                flight = resultCache.begin(resultKey(kg, mode, options, req));
+                if(!flight.isLeader()) {
+                    InputStream cached = flight.open();
+                    if(cached != null) {
+                        try(InputStream in = cached) {
+                            resp.type("application/zip");
+                            resp.header("content-disposition", "attachment;filename=" + zipFilename);
+                            resp.raw().setContentLengthLong(flight.length());
+                            OutputStream out = metrics.counting("/sprawl", resp.raw().getOutputStream());
+                            IOUtils.copy(in, out);
+                            out.flush();
+                        }
+                        return resp.raw();
+                    }
+                    //the zip is gone: generated without the cache
+                    flight = null;
+                }
+            }
+            SprawlResultCache.Flight leader = flight;
+            
             File genFolder = new File(folder, time);
             genFolder.mkdir();
-            switch(mode) {
-                case "excel": 
-                    excel(genFolder, model, req);
-                    break;
-                    
-                default: 
-                    throw new RuntimeException("mode " + mode + " is unknown");
-            }
             
-            System.gc();
+            //the zip is sent (chunked) while the workbooks are generated:
+            //the response is committed with the first finished workbook
+            zipStreamer = new ZipStreamer(genFolder, () -> {
+                resp.type("application/zip");
+                resp.header("content-disposition", "attachment;filename=" + zipFilename);
+                OutputStream out = metrics.counting("/sprawl", resp.raw().getOutputStream());
+                //also written to the result cache
+                return leader == null ? out : leader.tee(out);
+            });
+            options.setWorkbookListener(zipListener(zipStreamer, options.getPerformanceRecorder()));
             
-            //pack zip
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ZipUtil.pack(genFolder, baos);
-
-            //send
-            String zipFilename = "datasprout-sprawl-" + kg + "-" + mode + "-" + time + ".zip";
+            //generate it
+            sprawl(genFolder, kg, mode, options, null);
             
-            resp.type("application/zip");
-            resp.header("content-disposition", "attachment;filename=" + zipFilename);
-            return baos.toByteArray();
+            zipFinish(zipStreamer, options.getPerformanceRecorder());
+            if(flight != null) {
+                flight.commit();
+            }
+            return resp.raw();
             
         } catch(Exception e) {
             e.printStackTrace();
             String stacktrace = ExceptionUtils.getStackTrace(e);
+            
+            //an error is not cached, the waiting identical requests get it too
+            if(flight != null && flight.isLeader()) {
+                flight.abort(e);
+            }
+            
+            //too late for the error page: report the error in the zip
+            if(zipStreamer != null && zipStreamer.isOpened()) {
+                //the stream may be broken (e.g. the client went away)
+                try {
+                    zipStreamer.addText("error.txt", "Exception:\n" + stacktrace);
+                    zipStreamer.finish();
+                } catch(Exception reportException) {
+                    System.out.println("the error could not be reported in the zip: " + reportException.getMessage());
+                    zipStreamer.abort();
+                }
+                return resp.raw();
+            }
+            
             return getError("Exception:\n" + stacktrace, req, resp);
         } 
     }
     
+    //the parameters which determine the generated zip (parsed like in the options)
+    private String resultKey(String kg, String mode, ExcelSproutOptions options, Request req) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("kg", kg);
+        params.put("kgHash", kgHash(kg));
+        params.put("mode", mode);
+        params.put("randomSeed", options.getRandomSeed());
+        params.put("numberOfWorkbooks", options.getNumberOfWorkbooks());
+        params.put("patterns", new JSONObject(req.queryParams("patterns")));
+        params.put("lang", options.getPatternsToSetups().getLocale().toLanguageTag());
+        params.put("writeExpectedModel", options.isWriteExpectedModel());
+        params.put("writeProvenanceModel", options.isWriteProvenanceModel());
+        params.put("writeProvenanceCSV", options.isWriteProvenanceCSV());
+        params.put("writeGenerationSummaryJson", options.isWriteGenerationSummaryJson());
+        params.put("provenanceAsCellComment", options.isProvenanceAsCellComment());
+        params.put("streamingWorkbooks", options.isStreamingWorkbooks());
+        params.put("streamingProvenance", options.isStreamingProvenance());
+        return SprawlResultCache.key(params);
+    }
+    
+    //from request to options of the mode
+    private ExcelSproutOptions options(String mode, Request req) {
+        switch(mode) {
+            case "excel": 
+                return excelOptions(req);
+
+            default: 
+                throw new RuntimeException("mode " + mode + " is unknown");
+        }
+    }
+    
+    private void sprawl(File genFolder, String kg, String mode, ExcelSproutOptions options, SprawlJob job) throws IOException {
+        metrics.generationStarted();
+        try {
+            //get analyzed model (a copy because the analysis changes it)
+            stage(job, "analysis");
+            PerformanceRecorder recorder = options.getPerformanceRecorder();
+            Supplier<Model> loader = () -> {
+                recorder.begin("load");
+                try {
+                    return kgCache.getCopy(kg);
+                } finally {
+                    recorder.end();
+                }
+            };
+            RdfsAnalyzer rdfsAnalyzer;
+            //the load is measured on its own (inside of the analysis)
+            recorder.begin("analyze");
+            try {
+                if(snapshots == null) {
+                    rdfsAnalyzer = rdfsAnalyzerCache.get(kg, loader);
+                } else {
+                    //a fresh snapshot is loaded instead of parsing and analyzing the knowledge graph
+                    rdfsAnalyzer = rdfsAnalyzerCache.getAnalyzer(kg, () -> snapshots.get(
+                            kgHash(kg), 
+                            loader, 
+                            rdfsAnalyzerCache.getAnalyzerParallelism()
+                    ));
+                }
+            } finally {
+                recorder.end();
+            }
+            
+            switch(mode) {
+                case "excel": 
+                    excel(genFolder, rdfsAnalyzer, options, job);
+                    break;
+
+                default: 
+                    throw new RuntimeException("mode " + mode + " is unknown");
+            }
+        } finally {
+            metrics.generationFinished();
+        }
+        
+        System.gc();
+    }
+    
+    //the content hash of the knowledge graph's resource, computed once
+    private String kgHash(String kg) {
+        return kg2hash.computeIfAbsent(kg, this::resourceHash);
+    }
+    
+    private String resourceHash(String kg) {
+        try(InputStream in = DataSproutServer.class.getResourceAsStream(kg2resource.get(kg))) {
+            if(in == null) {
+                throw new RuntimeException("resource " + kg2resource.get(kg) + " of knowledge graph " + kg + " is missing");
+            }
+            return RdfsAnalyzerSnapshots.sha256(in);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    //queues a sprawl and returns the job id
+    private Object postJob(Request req, Response resp) throws Exception {
+        resp.type("application/json");
+        
+        String kg = req.queryParams("kg");
+        String mode = req.queryParams("mode");
+        if(kg == null) {
+            return getJsonError(400, "kg parameter is not set", resp);
+        }
+        if(mode == null) {
+            return getJsonError(400, "mode parameter is not set", resp);
+        }
+        if(!kgCache.contains(kg)) {
+            return getJsonError(404, "a knowledge graph named " + kg + " was not found", resp);
+        }
+        
+        //the request is not available anymore when the job runs
+        ExcelSproutOptions options;
+        try {
+            options = options(mode, req);
+        } catch(Exception e) {
+            return getJsonError(400, e.getMessage(), resp);
+        }
+        
+        SprawlJob job = new SprawlJob(UUID.randomUUID().toString(), kg, mode, options);
+        job.setGenFolder(new File(folder, "job-" + job.getId()));
+        job.setZipFile(new File(folder, "job-" + job.getId() + ".zip"));
+        
+        try {
+            jobManager.submit(job, j -> {
+                j.getGenFolder().mkdir();
+                
+                //zip the workbooks while the next ones are generated
+                ZipStreamer zipStreamer = new ZipStreamer(j.getGenFolder(), () -> new FileOutputStream(j.getZipFile()));
+                j.getOptions().setWorkbookListener(zipListener(zipStreamer, j.getOptions().getPerformanceRecorder()));
+                
+                try {
+                    sprawl(j.getGenFolder(), j.getKg(), j.getMode(), j.getOptions(), j);
+                } catch(Exception e) {
+                    zipStreamer.abort();
+                    throw e;
+                }
+                
+                j.stage("zip");
+                zipFinish(zipStreamer, j.getOptions().getPerformanceRecorder());
+            });
+        } catch(RejectedExecutionException e) {
+            resp.header("Retry-After", "60");
+            return getJsonError(503, "the job queue is full, try again later", resp);
+        }
+        
+        resp.status(202);
+        resp.header("Location", "/jobs/" + job.getId());
+        return job.toJSON().toString(2);
+    }
+    
+    private Object getJob(Request req, Response resp) throws Exception {
+        resp.type("application/json");
+        
+        SprawlJob job = jobManager.get(req.params("id"));
+        if(job == null) {
+            return getJsonError(404, "job " + req.params("id") + " was not found", resp);
+        }
+        
+        return job.toJSON().toString(2);
+    }
+    
+    private Object getJobResult(Request req, Response resp) throws Exception {
+        SprawlJob job = jobManager.get(req.params("id"));
+        if(job == null) {
+            resp.type("application/json");
+            return getJsonError(404, "job " + req.params("id") + " was not found", resp);
+        }
+        if(job.getState() != SprawlJob.State.Finished) {
+            resp.type("application/json");
+            return getJsonError(409, "job " + job.getId() + " is " + job.getState().name(), resp);
+        }
+        
+        String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss"));
+        String zipFilename = "datasprout-sprawl-" + job.getKg() + "-" + job.getMode() + "-" + time + ".zip";
+        
+        resp.type("application/zip");
+        resp.header("content-disposition", "attachment;filename=" + zipFilename);
+        resp.raw().setContentLengthLong(job.getZipFile().length());
+        
+        //stream the file instead of loading it into memory
+        try(InputStream in = new FileInputStream(job.getZipFile())) {
+            OutputStream out = metrics.counting("/jobs/:id/result", resp.raw().getOutputStream());
+            IOUtils.copy(in, out);
+            out.flush();
+        }
+        return resp.raw();
+    }
+    
+    private String getJsonError(int status, String msg, Response resp) {
+        resp.status(status);
+        JSONObject json = new JSONObject();
+        json.put("error", msg);
+        return json.toString(2);
+    }
+    
     private Object getError(String msg, Request req, Response resp) throws Exception {
         String errorHtml = IOUtils.toString(DataSproutServer.class.getResourceAsStream(ROOT_PATH + "/web/error.html"), "UTF-8");
         errorHtml = errorHtml.replace("${msg}", msg);
@@ -0,0 +1,188 @@
+package de.dfki.sds.datasprout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.graph.GraphReadOnly;
+import org.json.JSONObject;
+
+/**
+ * Parses the knowledge graphs of the server only once.
+ * Requests get a read-only view or a copy of the parsed model.
+ */
+public class KnowledgeGraphCache {
+
+    public enum LoadPolicy {
+        //parse all knowledge graphs when the server starts
+        Eager,
+        //parse a knowledge graph when it is requested the first time
+        Lazy;
+
+        /**
+         * Parses the name of a policy, ignoring the case (e.g. lazy).
+         * @param name
+         * @return
+         */
+        public static LoadPolicy parse(String name) {
+            for (LoadPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name.trim())) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("unknown load policy '" + name + "', allowed values are " + Arrays.toString(values()));
+        }
+    }
+
+    //name to classpath resource
+    private Map<String, String> name2resource;
+
+    private Map<String, Model> name2model;
+    private Map<String, Long> name2loadTime;
+
+    private LoadPolicy loadPolicy;
+
+    private AtomicLong hits;
+    private AtomicLong misses;
+
+    public KnowledgeGraphCache(Map<String, String> name2resource, LoadPolicy loadPolicy) {
+        this.name2resource = name2resource;
+        this.loadPolicy = loadPolicy;
+        name2model = new ConcurrentHashMap<>();
+        name2loadTime = new ConcurrentHashMap<>();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+    }
+
+    /**
+     * In case of an eager load policy all knowledge graphs are parsed now.
+     * Missing resources are reported and skipped.
+     */
+    public void init() {
+        if (loadPolicy != LoadPolicy.Eager) {
+            return;
+        }
+
+        for (String name : name2resource.keySet()) {
+            try {
+                name2model.computeIfAbsent(name, this::parse);
+            } catch (Exception e) {
+                System.out.println("knowledge graph " + name + " not loaded: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean contains(String name) {
+        return name2resource.containsKey(name);
+    }
+
+    /**
+     * A view on the cached model which throws an exception when it is changed.
+     * @param name
+     * @return
+     */
+    public Model getReadOnly(String name) {
+        Model model = load(name);
+        return ModelFactory.createModelForGraph(new GraphReadOnly(model.getGraph()));
+    }
+
+    /**
+     * A copy of the cached model which can be changed, e.g. by the
+     * skolemization of the RdfsAnalyzer.
+     * @param name
+     * @return
+     */
+    public Model getCopy(String name) {
+        Model model = load(name);
+        Model copy = ModelFactory.createDefaultModel();
+        copy.setNsPrefixes(model);
+        copy.add(model);
+        return copy;
+    }
+
+    private Model load(String name) {
+        if (!name2resource.containsKey(name)) {
+            throw new RuntimeException("a knowledge graph named " + name + " was not found");
+        }
+
+        boolean[] miss = new boolean[1];
+        Model model = name2model.computeIfAbsent(name, n -> {
+            miss[0] = true;
+            return parse(n);
+        });
+
+        if (miss[0]) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return model;
+    }
+
+    private Model parse(String name) {
+        String resource = name2resource.get(name);
+
+        long begin = System.currentTimeMillis();
+        Model model;
+        try (InputStream kgStream = KnowledgeGraphCache.class.getResourceAsStream(resource)) {
+            if (kgStream == null) {
+                throw new RuntimeException("resource " + resource + " of knowledge graph " + name + " is missing");
+            }
+            model = ModelFactory.createDefaultModel().read(kgStream, null, "TTL");
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        long loadTime = System.currentTimeMillis() - begin;
+
+        name2loadTime.put(name, loadTime);
+        System.out.println("knowledge graph " + name + " loaded with " + model.size() + " statements in " + loadTime + " ms");
+
+        return model;
+    }
+
+    public LoadPolicy getLoadPolicy() {
+        return loadPolicy;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public Map<String, Long> getLoadTimes() {
+        return name2loadTime;
+    }
+
+    public List<String> getLoadedNames() {
+        return new ArrayList<>(name2model.keySet());
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("loadPolicy", loadPolicy.name());
+        json.put("hits", getHits());
+        json.put("misses", getMisses());
+
+        JSONObject graphs = new JSONObject();
+        for (Entry<String, Model> e : name2model.entrySet()) {
+            JSONObject graph = new JSONObject();
+            graph.put("statements", e.getValue().size());
+            graph.put("loadTimeMillis", name2loadTime.get(e.getKey()));
+            graphs.put(e.getKey(), graph);
+        }
+        json.put("graphs", graphs);
+
+        return json;
+    }
+}
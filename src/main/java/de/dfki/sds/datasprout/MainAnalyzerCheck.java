@@ -0,0 +1,99 @@
+package de.dfki.sds.datasprout;
+
+import de.dfki.sds.datasprout.utils.ParallelRdfLoader;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Statement;
+
+/**
+ * Checks that an incremental update of the RdfsAnalyzer (add, remove) results in the same
+ * analysis as a fresh analysis of the changed model, e.g.
+ * MainAnalyzerCheck GL 200 [seed] [rounds]
+ * A random patch of statements is added to the graph without it and removed from the whole graph.
+ * The first argument is a bundled graph (GL, BSBM, SP2B) or a file.
+ * Exits with 1 if there are differences.
+ */
+public class MainAnalyzerCheck {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: <GL|BSBM|SP2B|file> <patch size> [seed] [rounds]");
+            return;
+        }
+
+        Model model;
+        File file = new File(args[0]);
+        if (file.exists()) {
+            model = new ParallelRdfLoader().load(file);
+        } else {
+            try (InputStream in = MainAnalyzerCheck.class.getResourceAsStream("/de/dfki/sds/datasprout/web/kg/" + args[0] + ".ttl")) {
+                if (in == null) {
+                    throw new RuntimeException(args[0] + " is neither a file nor a bundled knowledge graph");
+                }
+                model = ModelFactory.createDefaultModel().read(in, null, "TTL");
+            }
+        }
+        int patchSize = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        //skolemized once, so that all analyzers see the same resources
+        new RdfsAnalyzer().analyze(model);
+        List<Statement> statements = model.listStatements().toList();
+
+        Random random = new Random(seed);
+        int failed = 0;
+        for (int round = 0; round < rounds; round++) {
+            Collections.shuffle(statements, random);
+            List<Statement> patch = new ArrayList<>(statements.subList(0, Math.min(patchSize, statements.size())));
+
+            Model reduced = copy(model);
+            reduced.remove(patch);
+
+            //add: the patch is added to the graph without it, a part of it twice
+            RdfsAnalyzer added = new RdfsAnalyzer().analyze(copy(reduced));
+            for (Statement stmt : patch) {
+                added.add(stmt);
+            }
+            added.listen();
+            added.getModel().add(patch.subList(0, patch.size() / 2));
+            added.unlisten();
+            failed += report("add", round, added.differences(new RdfsAnalyzer().analyze(copy(model))));
+
+            //remove: the patch is removed from the whole graph, by the listener
+            RdfsAnalyzer removed = new RdfsAnalyzer().analyze(copy(model));
+            removed.listen();
+            removed.getModel().remove(patch);
+            removed.unlisten();
+            failed += report("remove", round, removed.differences(new RdfsAnalyzer().analyze(copy(reduced))));
+        }
+
+        System.out.println(failed == 0 ? "no differences" : failed + " checks with differences");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static Model copy(Model model) {
+        Model copy = ModelFactory.createDefaultModel();
+        copy.setNsPrefixes(model);
+        copy.add(model);
+        return copy;
+    }
+
+    private static int report(String name, int round, List<String> differences) {
+        if (differences.isEmpty()) {
+            return 0;
+        }
+        System.out.println(name + " (round " + round + "):");
+        for (String difference : differences) {
+            System.out.println("    " + difference);
+        }
+        return 1;
+    }
+}
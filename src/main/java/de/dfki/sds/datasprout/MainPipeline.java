@@ -13,6 +13,7 @@ import de.dfki.sds.datasprout.utils.Dataset;
 import de.dfki.sds.datasprout.vocab.FOAF;
 import de.dfki.sds.datasprout.vocab.GL;
 import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzerSnapshots;
 import java.awt.Color;
 import java.awt.Point;
 import java.io.File;
@@ -47,6 +48,14 @@ public class MainPipeline {
         pipeline.getDatasets().add(new Dataset("LUBM", new File("dataset/LUBM.ttl")));
         pipeline.getDatasets().add(new Dataset("SP2B", new File("dataset/SP2B.ttl")));
         
+        //opt-in, e.g. --snapshotFolder=snapshot: unchanged datasets are not parsed and analyzed again,
+        //but the workbooks differ from the ones of a run without snapshots (see RdfsAnalyzerSnapshots)
+        for (String arg : args) {
+            if (arg.startsWith("--snapshotFolder=")) {
+                pipeline.setSnapshots(new RdfsAnalyzerSnapshots(new File(arg.substring("--snapshotFolder=".length()))));
+            }
+        }
+        
         pipeline.getModeOptions().put("Clean", options -> { });
         
         String prefix = "SinglePattern_";
@@ -0,0 +1,49 @@
+package de.dfki.sds.datasprout;
+
+import de.dfki.sds.datasprout.utils.KnowledgeGraphScaler;
+import de.dfki.sds.datasprout.utils.ParallelRdfLoader;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import java.io.File;
+import java.io.InputStream;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+
+/**
+ * Writes a synthetic, scaled version of a knowledge graph as N-Triples, e.g. for load tests:
+ * MainScaler GL 100 dataset/GL-x100.nt [seed]
+ * The first argument is a bundled graph (GL, BSBM, SP2B) or a file.
+ * The written file can be used as a Dataset of the DataSproutPipeline.
+ */
+public class MainScaler {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("usage: <GL|BSBM|SP2B|file> <scale factor> <output.nt> [seed]");
+            return;
+        }
+
+        Model model;
+        File file = new File(args[0]);
+        if (file.exists()) {
+            model = new ParallelRdfLoader().load(file);
+        } else {
+            try (InputStream in = MainScaler.class.getResourceAsStream("/de/dfki/sds/datasprout/web/kg/" + args[0] + ".ttl")) {
+                if (in == null) {
+                    throw new RuntimeException(args[0] + " is neither a file nor a bundled knowledge graph");
+                }
+                model = ModelFactory.createDefaultModel().read(in, null, "TTL");
+            }
+        }
+
+        KnowledgeGraphScaler scaler = new KnowledgeGraphScaler(new RdfsAnalyzer().analyze(model));
+        scaler.setScaleFactor(Double.parseDouble(args[1]));
+        if (args.length > 3) {
+            scaler.setSeed(Long.parseLong(args[3]));
+        }
+        File output = new File(args[2]);
+        if (output.getAbsoluteFile().getParentFile() != null) {
+            output.getAbsoluteFile().getParentFile().mkdirs();
+        }
+        scaler.write(output);
+    }
+}
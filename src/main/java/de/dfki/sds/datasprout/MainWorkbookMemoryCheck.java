@@ -0,0 +1,116 @@
+package de.dfki.sds.datasprout;
+
+import de.dfki.sds.datasprout.excel.ExcelSproutOptions;
+import de.dfki.sds.datasprout.excel.ExcelTable;
+import de.dfki.sds.datasprout.excel.IdCounter;
+import de.dfki.sds.datasprout.excel.PatternsToSetups;
+import de.dfki.sds.datasprout.excel.TableGenerator;
+import de.dfki.sds.datasprout.excel.WorkbookCreator;
+import de.dfki.sds.datasprout.vocab.FOAF;
+import de.dfki.sds.datasprout.vocab.GL;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.DCTerms;
+
+/**
+ * Checks that workbooks created in parallel fit in the heap, like a sprawl of the server with
+ * all patterns and the provenance as cell comments, e.g. with -Xmx1536m
+ * MainWorkbookMemoryCheck GL 4 3 [streaming]
+ * The arguments are a bundled graph (GL, BSBM, SP2B), the number of workbooks and the workbook parallelism.
+ * Exits with 1 if the heap was not enough.
+ */
+public class MainWorkbookMemoryCheck {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("usage: <GL|BSBM|SP2B> <number of workbooks> <workbook parallelism> [streaming]");
+            return;
+        }
+
+        Model model;
+        try (InputStream in = MainWorkbookMemoryCheck.class.getResourceAsStream("/de/dfki/sds/datasprout/web/kg/" + args[0] + ".ttl")) {
+            if (in == null) {
+                throw new RuntimeException(args[0] + " is not a bundled knowledge graph");
+            }
+            model = ModelFactory.createDefaultModel().read(in, null, "TTL");
+        }
+        RdfsAnalyzer rdfsAnalyzer = new RdfsAnalyzer().analyze(model);
+
+        ExcelSproutOptions options = options(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        options.setStreamingWorkbooks(args.length > 3 && Boolean.parseBoolean(args[3]));
+        options.setPrefixMapping(rdfsAnalyzer.getModel());
+
+        File genFolder = Files.createTempDirectory("datasprout-memory").toFile();
+        try {
+            List<Setup> setups = options.getPatternsToSetups().generate(rdfsAnalyzer, options.getNumberOfWorkbooks(), options.getRandomSeed());
+
+            TableGenerator generator = new TableGenerator();
+            generator.getDataTypeMap().put("http://www4.wiwiss.fu-berlin.de/bizer/bsbm/v01/vocabulary/USD", value -> Double.parseDouble(value));
+            List<ExcelTable> tables = generator.generateList(setups, new IdCounter(), options);
+
+            new WorkbookCreator().create(genFolder, tables, options);
+        } catch (OutOfMemoryError | RuntimeException ex) {
+            //a parallel workbook fails wrapped in a RuntimeException
+            Throwable cause = ex;
+            while (cause != null && !(cause instanceof OutOfMemoryError)) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                throw ex;
+            }
+            System.out.println("out of memory: " + cause.getMessage());
+            System.exit(1);
+        } finally {
+            FileUtils.deleteQuietly(genFolder);
+        }
+
+        System.out.println("workbooks created, max heap " + (Runtime.getRuntime().maxMemory() / 1024 / 1024) + " MB");
+        System.exit(0);
+    }
+
+    //the options of a sprawl with all patterns and the provenance as cell comments
+    private static ExcelSproutOptions options(int numberOfWorkbooks, int workbookParallelism) {
+        ExcelSproutOptions options = new ExcelSproutOptions();
+        options.setRandomSeed(0);
+        options.setNumberOfWorkbooks(numberOfWorkbooks);
+        options.setWorkbookParallelism(workbookParallelism);
+        options.setProvenanceAsCellComment(true);
+
+        PatternsToSetups patternsToSetups = new PatternsToSetups(Locale.ENGLISH);
+        options.setPatternsToSetups(patternsToSetups);
+        patternsToSetups.setNumericInformationAsText(true);
+        patternsToSetups.setAcronymsOrSymbols(true);
+        patternsToSetups.setMultipleSurfaceForms(true);
+        patternsToSetups.setPropertyValueAsColor(true);
+        patternsToSetups.setPartialFormattingIndicatesRelations(true);
+        patternsToSetups.setOutdatedIsFormatted(true);
+        patternsToSetups.setMultipleEntitiesInOneCell(true);
+        patternsToSetups.setIntraCellAdditionalInformation(true);
+        patternsToSetups.setMultipleTypesInATable(true);
+
+        patternsToSetups.getLabelProperties().add(FOAF.name);
+        patternsToSetups.getLabelProperties().add(DCTerms.title);
+        patternsToSetups.getLabelProperties().add(ResourceFactory.createProperty("http://purl.org/dc/elements/1.1/title"));
+        patternsToSetups.getLabelProperties().add(ResourceFactory.createProperty("http://localhost/vocabulary/bench/booktitle"));
+        patternsToSetups.getAcronymProperties().add(FOAF.firstName);
+        patternsToSetups.getAcronymProperties().add(FOAF.lastName);
+        patternsToSetups.getPartialLabelProperties().add(FOAF.firstName);
+        patternsToSetups.getPartialLabelProperties().add(FOAF.lastName);
+        patternsToSetups.getPartialLabelProperties().add(FOAF.homepage);
+        patternsToSetups.getPartialLabelProperties().add(DCTerms.issued);
+        patternsToSetups.getOutdatedProperties().add(GL.wasFormerEditor);
+        patternsToSetups.getMergeCellDelimiters().addAll(Arrays.asList(", ", " ", " + ", " & "));
+        patternsToSetups.getBooleanTrueSymbols().addAll(Arrays.asList("OK", "true", "yes", "x"));
+        patternsToSetups.getBooleanFalseSymbols().addAll(Arrays.asList("-", "false", "no", "not"));
+        return options;
+    }
+}
@@ -5,20 +5,31 @@ import de.dfki.sds.datasprout.utils.SetUtility;
 import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.Stack;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Space of all possibilties.
  * Just a key with a value (flat list).
  * In getSetups the flat lists are used to create subsets (sublists) based on 
  * minMaxMap size settings.
+ * getSetups builds all combinations at once, setupIterator and setupStream
+ * create them one by one in the same order, getSetup(index) creates a single one.
  */
 public class Possibilities extends LinkedHashMap<String, List<Object>> {
 
@@ -194,6 +205,357 @@ public class Possibilities extends LinkedHashMap<String, List<Object>> {
         return result;
     }
     
+    //-------------------------------------------
+    //lazy setups
+
+    /**
+     * The setups of getSetups() in the same order, created when they are iterated.
+     * Only the option subsets of the keys are kept, not the combinations.
+     * Except for dependent keys: the setups before a dependent key which got more than one option
+     * are kept until their other options are iterated (so that the function is applied once per setup),
+     * thus the memory is in the order of these setups.
+     * Later changes of the possibilities are not reflected.
+     * @return
+     */
+    public Iterator<Setup> setupIterator() {
+        List<Level> levels = levels();
+        if (levels.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        return iterator(levels, levels.size() - 1);
+    }
+
+    /**
+     * The setups of getSetups() as a stream.
+     * Without dependent keys it is split by index, thus it can be processed in parallel
+     * without creating the setups before.
+     * @param parallel
+     * @return
+     */
+    public Stream<Setup> setupStream(boolean parallel) {
+        List<Level> levels = levels();
+        if (levels.isEmpty()) {
+            return Stream.empty();
+        }
+        if (isIndexed(levels)) {
+            return StreamSupport.stream(new IndexSpliterator(levels, 0, count(levels, levels.size() - 1)), parallel);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(levels, levels.size() - 1), Spliterator.ORDERED | Spliterator.NONNULL), parallel);
+    }
+
+    /**
+     * The number of setups of getSetups(), counted by iteration if there are dependent keys.
+     * @return
+     */
+    public long getSetupCount() {
+        List<Level> levels = levels();
+        if (levels.isEmpty()) {
+            return 0;
+        }
+        if (isIndexed(levels)) {
+            return count(levels, levels.size() - 1);
+        }
+        long count = 0;
+        Iterator<Setup> iter = iterator(levels, levels.size() - 1);
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * The setup at the index of getSetups(), without creating the others.
+     * With dependent keys the setups before the index are iterated.
+     * @param index
+     * @return
+     */
+    public Setup getSetup(long index) {
+        List<Level> levels = levels();
+        if (index < 0 || levels.isEmpty()) {
+            throw new IndexOutOfBoundsException("setup " + index);
+        }
+        if (isIndexed(levels)) {
+            long count = count(levels, levels.size() - 1);
+            if (index >= count) {
+                throw new IndexOutOfBoundsException("setup " + index + " of " + count);
+            }
+            return setup(levels, levels.size() - 1, index);
+        }
+        Iterator<Setup> iter = iterator(levels, levels.size() - 1);
+        for (long i = 0; iter.hasNext(); i++) {
+            Setup setup = iter.next();
+            if (i == index) {
+                return setup;
+            }
+        }
+        throw new IndexOutOfBoundsException("setup " + index);
+    }
+
+    /**
+     * A uniformly drawn setup of getSetups().
+     * @param rnd
+     * @return
+     */
+    public Setup sampleSetup(Random rnd) {
+        long count = getSetupCount();
+        if (count == 0) {
+            throw new RuntimeException("there are no setups");
+        }
+        long index = (long) (rnd.nextDouble() * count);
+        return getSetup(Math.min(index, count - 1));
+    }
+
+    //the options of a dependent key contain the function (its subsets may not, depending on minMax)
+    @SuppressWarnings("unchecked")
+    private Function<Setup, List<List<Object>>> function(String key) {
+        List<Object> options = this.get(key);
+        if (options == null || options.isEmpty() || !(options.get(0) instanceof Function)) {
+            throw new RuntimeException("the dependent key " + key + " has no function");
+        }
+        return (Function<Setup, List<List<Object>>>) options.get(0);
+    }
+
+    //the keys in the order of getSetups
+    private List<Level> levels() {
+        List<Level> levels = new ArrayList<>();
+        boolean empty = true;
+        for (String key : getTopologicalSortedKeys()) {
+            Level level = new Level();
+            level.key = key;
+            level.dependent = dependsOn.containsKey(key);
+            if (level.dependent) {
+                level.function = function(key);
+            }
+            //also a dependent key uses them if there are no setups before
+            level.subsets = subsetsOf(key, this.get(key));
+            //setups without options of the key stay, so only the first keys can result in none
+            empty = empty && level.subsets.isEmpty();
+            level.empty = empty;
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    private static boolean isIndexed(List<Level> levels) {
+        for (int k = 1; k < levels.size(); k++) {
+            if (levels.get(k).dependent && !levels.get(k - 1).empty) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //the setups after level k
+    private Iterator<Setup> iterator(List<Level> levels, int k) {
+        Level level = levels.get(k);
+        if (k == 0 || levels.get(k - 1).empty) {
+            List<Setup> setups = new ArrayList<>();
+            for (List<Object> option : level.subsets) {
+                setups.add(level.with(new Setup(), option));
+            }
+            return setups.iterator();
+        }
+        return new LevelIterator(level, () -> iterator(levels, k - 1));
+    }
+
+    //number of setups after level k, without dependent keys
+    private static long count(List<Level> levels, int k) {
+        Level level = levels.get(k);
+        if (k == 0 || levels.get(k - 1).empty) {
+            return level.subsets.size();
+        }
+        long before = count(levels, k - 1);
+        if (level.subsets.isEmpty()) {
+            return before;
+        }
+        try {
+            return Math.multiplyExact(before, level.subsets.size());
+        } catch (ArithmeticException ex) {
+            throw new RuntimeException("there are more than " + Long.MAX_VALUE + " setups", ex);
+        }
+    }
+
+    //setup at the index after level k, without dependent keys
+    private static Setup setup(List<Level> levels, int k, long index) {
+        Level level = levels.get(k);
+        if (k == 0 || levels.get(k - 1).empty) {
+            return level.with(new Setup(), level.subsets.get((int) index));
+        }
+        if (level.subsets.isEmpty()) {
+            return setup(levels, k - 1, index);
+        }
+        //like getSetups: first all setups before with the first option, then each with the other options
+        long before = count(levels, k - 1);
+        if (index < before) {
+            return level.with(setup(levels, k - 1, index), level.subsets.get(0));
+        }
+        int others = level.subsets.size() - 1;
+        index -= before;
+        return level.with(setup(levels, k - 1, index / others), level.subsets.get(1 + (int) (index % others)));
+    }
+
+    //a key with its option subsets
+    private static class Level {
+
+        private String key;
+        private boolean dependent;
+        //of a dependent key: the setup before to its option subsets
+        private Function<Setup, List<List<Object>>> function;
+        private List<List<Object>> subsets;
+        //no setups up to this level
+        private boolean empty;
+
+        private List<List<Object>> options(Setup setup) {
+            if (dependent) {
+                return function.apply(setup);
+            }
+            return subsets;
+        }
+
+        //a copy of the setup with the option
+        private Setup with(Setup setup, List<Object> option) {
+            Setup copy = new Setup(setup);
+            copy.put(key, option);
+            return copy;
+        }
+    }
+
+    //like getSetups for one key: the setups before with their first option, then with the other ones.
+    //An independent key iterates the setups before again for the other options,
+    //a dependent key keeps the setups with more than one option of the first pass,
+    //so that its function is applied once per setup before and the passes do not double per level
+    private static class LevelIterator implements Iterator<Setup> {
+
+        private Level level;
+        private Supplier<Iterator<Setup>> before;
+        private Iterator<Setup> source;
+        private boolean firstPass;
+        private Iterator<Setup> buffer;
+
+        //dependent key: the setups before and their options, for the second pass
+        private List<Setup> pendingSetups;
+        private List<List<List<Object>>> pendingOptions;
+
+        LevelIterator(Level level, Supplier<Iterator<Setup>> before) {
+            this.level = level;
+            this.before = before;
+            this.source = before.get();
+            this.firstPass = true;
+            this.buffer = Collections.emptyIterator();
+            if (level.dependent) {
+                pendingSetups = new ArrayList<>();
+                pendingOptions = new ArrayList<>();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!buffer.hasNext()) {
+                if (!firstPass && level.dependent) {
+                    if (pendingSetups.isEmpty()) {
+                        return false;
+                    }
+                    //the pending ones are released in order
+                    Setup setup = pendingSetups.remove(pendingSetups.size() - 1);
+                    List<List<Object>> options = pendingOptions.remove(pendingOptions.size() - 1);
+                    buffer = others(setup, options);
+                    continue;
+                }
+
+                if (!source.hasNext()) {
+                    //an independent key with one option has no second pass
+                    if (!firstPass || (!level.dependent && level.subsets.size() <= 1)) {
+                        return false;
+                    }
+                    firstPass = false;
+                    if (level.dependent) {
+                        source = null;
+                        Collections.reverse(pendingSetups);
+                        Collections.reverse(pendingOptions);
+                    } else {
+                        source = before.get();
+                    }
+                    continue;
+                }
+
+                Setup setup = source.next();
+                List<List<Object>> options = level.options(setup);
+                if (firstPass) {
+                    buffer = Collections.singletonList(options.isEmpty() ? setup : level.with(setup, options.get(0))).iterator();
+                    if (level.dependent && options.size() > 1) {
+                        pendingSetups.add(setup);
+                        pendingOptions.add(options);
+                    }
+                } else if (options.size() > 1) {
+                    buffer = others(setup, options);
+                }
+            }
+            return true;
+        }
+
+        //copies of the setup with the options after the first one
+        private Iterator<Setup> others(Setup setup, List<List<Object>> options) {
+            List<Setup> copies = new ArrayList<>(options.size() - 1);
+            for (int i = 1; i < options.size(); i++) {
+                copies.add(level.with(setup, options.get(i)));
+            }
+            return copies.iterator();
+        }
+
+        @Override
+        public Setup next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return buffer.next();
+        }
+    }
+
+    //setups of an index range, split in halves
+    private static class IndexSpliterator implements Spliterator<Setup> {
+
+        private List<Level> levels;
+        private long index;
+        private long end;
+
+        IndexSpliterator(List<Level> levels, long index, long end) {
+            this.levels = levels;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Setup> action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(setup(levels, levels.size() - 1, index++));
+            return true;
+        }
+
+        @Override
+        public Spliterator<Setup> trySplit() {
+            long mid = index + (end - index) / 2;
+            if (mid <= index) {
+                return null;
+            }
+            Spliterator<Setup> prefix = new IndexSpliterator(levels, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
     private List<List<Object>> subsetsOf(String key, List<Object> options) {
         List<List<Object>> optionSubsets = SetUtility.subsetsAsList(options);
         
@@ -25,6 +25,11 @@ public class Provenance {
         statements = new ArrayList<>();
         usedPatterns = new HashMap<>();
     }
+    
+    public Provenance(List<Statement> statements, Map<String, Object> usedPatterns) {
+        this.statements = statements;
+        this.usedPatterns = usedPatterns;
+    }
 
     public List<Statement> getStatements() {
         return statements;
@@ -0,0 +1,271 @@
+package de.dfki.sds.datasprout;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of the server in the Prometheus text format (version 0.0.4), no client library needed.
+ * Requests are counted per route, method, kg, mode and status, their durations are histograms
+ * (rates and latency quantiles are computed by Prometheus).
+ * In addition: active generations, streamed bytes, registered gauges and counters
+ * (e.g. of the caches and the job queue) and heap, GC and thread statistics of the JVM.
+ */
+public class ServerMetrics {
+
+    //upper bounds in seconds, a generation can take minutes
+    private static final double[] DURATION_BUCKETS = {0.005, 0.01, 0.05, 0.1, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300};
+
+    private static final String[] REQUEST_LABELS = {"route", "method", "kg", "mode", "status"};
+    private static final String[] DURATION_LABELS = {"route", "method", "kg", "mode"};
+
+    //label values to count, sorted for a stable output
+    private Map<List<String>, Long> requests;
+    private Map<List<String>, Histogram> durations;
+
+    private AtomicInteger activeGenerations;
+
+    //route to bytes
+    private Map<String, AtomicLong> streamedBytes;
+
+    //name to value, with help text and type
+    private Map<String, Metric> registered;
+
+    public ServerMetrics() {
+        requests = new TreeMap<>(ServerMetrics::compare);
+        durations = new TreeMap<>(ServerMetrics::compare);
+        activeGenerations = new AtomicInteger();
+        streamedBytes = new TreeMap<>();
+        registered = new LinkedHashMap<>();
+    }
+
+    /**
+     * Counts a finished request.
+     * @param route the matched path, e.g. /jobs/:id
+     * @param method
+     * @param kg a known knowledge graph or "none"
+     * @param mode a known mode or "none"
+     * @param status
+     * @param seconds duration
+     */
+    public synchronized void request(String route, String method, String kg, String mode, int status, double seconds) {
+        requests.merge(Arrays.asList(route, method, kg, mode, String.valueOf(status)), 1L, Long::sum);
+        durations.computeIfAbsent(Arrays.asList(route, method, kg, mode), k -> new Histogram()).observe(seconds);
+    }
+
+    public void generationStarted() {
+        activeGenerations.incrementAndGet();
+    }
+
+    public void generationFinished() {
+        activeGenerations.decrementAndGet();
+    }
+
+    /**
+     * Counts the bytes written to the stream as streamed by the route.
+     * @param route
+     * @param out
+     * @return
+     */
+    public OutputStream counting(String route, OutputStream out) {
+        AtomicLong bytes;
+        synchronized (this) {
+            bytes = streamedBytes.computeIfAbsent(route, r -> new AtomicLong());
+        }
+        return new CountingOutputStream(out, bytes);
+    }
+
+    /**
+     * A value which can go up and down, read when the metrics are scraped.
+     * @param name
+     * @param help
+     * @param value
+     */
+    public synchronized void gauge(String name, String help, Supplier<Number> value) {
+        registered.put(name, new Metric(help, "gauge", value));
+    }
+
+    /**
+     * A value which only goes up, read when the metrics are scraped.
+     * @param name should end with _total
+     * @param help
+     * @param value
+     */
+    public synchronized void counter(String name, String help, Supplier<Number> value) {
+        registered.put(name, new Metric(help, "counter", value));
+    }
+
+    /**
+     * All metrics in the Prometheus text format.
+     * @return
+     */
+    public synchronized String scrape() {
+        StringBuilder sb = new StringBuilder();
+
+        header(sb, "datasprout_requests_total", "Finished HTTP requests.", "counter");
+        for (Entry<List<String>, Long> e : requests.entrySet()) {
+            sample(sb, "datasprout_requests_total", REQUEST_LABELS, e.getKey(), null, e.getValue());
+        }
+
+        header(sb, "datasprout_request_duration_seconds", "Durations of the HTTP requests.", "histogram");
+        for (Entry<List<String>, Histogram> e : durations.entrySet()) {
+            Histogram histogram = e.getValue();
+            long cumulative = 0;
+            for (int i = 0; i < DURATION_BUCKETS.length; i++) {
+                cumulative += histogram.buckets[i];
+                sample(sb, "datasprout_request_duration_seconds_bucket", DURATION_LABELS, e.getKey(), format(DURATION_BUCKETS[i]), cumulative);
+            }
+            sample(sb, "datasprout_request_duration_seconds_bucket", DURATION_LABELS, e.getKey(), "+Inf", histogram.count);
+            sample(sb, "datasprout_request_duration_seconds_sum", DURATION_LABELS, e.getKey(), null, histogram.sum);
+            sample(sb, "datasprout_request_duration_seconds_count", DURATION_LABELS, e.getKey(), null, histogram.count);
+        }
+
+        header(sb, "datasprout_active_generations", "Generations (sprawls and jobs) running now.", "gauge");
+        sb.append("datasprout_active_generations ").append(activeGenerations.get()).append('\n');
+
+        header(sb, "datasprout_streamed_bytes_total", "Bytes sent in response bodies of generated results.", "counter");
+        for (Entry<String, AtomicLong> e : streamedBytes.entrySet()) {
+            sample(sb, "datasprout_streamed_bytes_total", new String[]{"route"}, Arrays.asList(e.getKey()), null, e.getValue().get());
+        }
+
+        for (Entry<String, Metric> e : registered.entrySet()) {
+            header(sb, e.getKey(), e.getValue().help, e.getValue().type);
+            sb.append(e.getKey()).append(' ').append(format(e.getValue().value.get().doubleValue())).append('\n');
+        }
+
+        jvm(sb);
+
+        return sb.toString();
+    }
+
+    private void jvm(StringBuilder sb) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        header(sb, "jvm_memory_heap_used_bytes", "Used heap.", "gauge");
+        sb.append("jvm_memory_heap_used_bytes ").append(heap.getUsed()).append('\n');
+        header(sb, "jvm_memory_heap_committed_bytes", "Committed heap.", "gauge");
+        sb.append("jvm_memory_heap_committed_bytes ").append(heap.getCommitted()).append('\n');
+        header(sb, "jvm_memory_heap_max_bytes", "Max heap, -1 if undefined.", "gauge");
+        sb.append("jvm_memory_heap_max_bytes ").append(heap.getMax()).append('\n');
+
+        List<GarbageCollectorMXBean> gcs = ManagementFactory.getGarbageCollectorMXBeans();
+        header(sb, "jvm_gc_collections_total", "Collections per garbage collector.", "counter");
+        for (GarbageCollectorMXBean gc : gcs) {
+            sample(sb, "jvm_gc_collections_total", new String[]{"gc"}, Arrays.asList(gc.getName()), null, Math.max(0, gc.getCollectionCount()));
+        }
+        header(sb, "jvm_gc_collection_seconds_total", "Time spent in collections per garbage collector.", "counter");
+        for (GarbageCollectorMXBean gc : gcs) {
+            sample(sb, "jvm_gc_collection_seconds_total", new String[]{"gc"}, Arrays.asList(gc.getName()), null, Math.max(0, gc.getCollectionTime()) / 1000.0);
+        }
+
+        header(sb, "jvm_threads_live", "Live threads.", "gauge");
+        sb.append("jvm_threads_live ").append(ManagementFactory.getThreadMXBean().getThreadCount()).append('\n');
+    }
+
+    private static void header(StringBuilder sb, String name, String help, String type) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    //le is the extra label of a histogram bucket
+    private static void sample(StringBuilder sb, String name, String[] labels, List<String> values, String le, Number value) {
+        sb.append(name).append('{');
+        for (int i = 0; i < labels.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"").append(escape(values.get(i))).append('"');
+        }
+        if (le != null) {
+            sb.append(",le=\"").append(le).append('"');
+        }
+        sb.append("} ").append(format(value.doubleValue())).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    private static int compare(List<String> a, List<String> b) {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int c = a.get(i).compareTo(b.get(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+
+    private static class Histogram {
+
+        //not cumulative, the output sums them up
+        private long[] buckets = new long[DURATION_BUCKETS.length];
+        private long count;
+        private double sum;
+
+        private void observe(double seconds) {
+            for (int i = 0; i < DURATION_BUCKETS.length; i++) {
+                if (seconds <= DURATION_BUCKETS[i]) {
+                    buckets[i]++;
+                    break;
+                }
+            }
+            count++;
+            sum += seconds;
+        }
+    }
+
+    private static class Metric {
+
+        private String help;
+        private String type;
+        private Supplier<Number> value;
+
+        Metric(String help, String type, Supplier<Number> value) {
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    //counts while the bytes are written, so a running download is visible
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private AtomicLong bytes;
+
+        CountingOutputStream(OutputStream out, AtomicLong bytes) {
+            super(out);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytes.addAndGet(len);
+        }
+    }
+}
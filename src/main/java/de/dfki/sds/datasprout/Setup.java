@@ -1,12 +1,14 @@
 
 package de.dfki.sds.datasprout;
 
+import de.dfki.sds.datasprout.utils.SurfaceFormSpace;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import org.apache.commons.math3.distribution.EnumeratedDistribution;
 import org.apache.commons.math3.util.Pair;
 
@@ -19,18 +21,24 @@ public class Setup extends LinkedHashMap<String, Object> {
     public static final String PROPERTIES = "properties";
     public static final String LABEL_PROPERTIES = "LabelProperties";
     public static final String RANDOM = "random";
+    //seed of the setup (long), tables derive the randoms of rows and cells from it
+    public static final String SEED = "seed";
     public static final String INSTANCE_FILTER = "instanceFilter";
     public static final String RDFS_ANALYZER = "rdfsAnalyzer";
 
-    private Map<String, EnumeratedDistribution> distribution;
+    //key to cumulative probabilities, used to sample with a given random
+    private Map<String, double[]> cumulative;
+    private Map<String, Object[]> cumulativeValues;
     
     public Setup() {
-        distribution = new HashMap<>();
+        cumulative = new HashMap<>();
+        cumulativeValues = new HashMap<>();
     }
 
     public Setup(Map<? extends String, ? extends Object> map) {
         super(map);
-        distribution = new HashMap<>();
+        cumulative = new HashMap<>();
+        cumulativeValues = new HashMap<>();
     }
 
     public Object getSingle(String key) {
@@ -64,6 +72,11 @@ public class Setup extends LinkedHashMap<String, Object> {
     public Object put(String key, Object value) {
         Object obj = super.put(key, value);
         
+        //sampled by index, so no distribution of all its values
+        if(value instanceof SurfaceFormSpace) {
+            return obj;
+        }
+        
         if(value instanceof List) {
             List list = (List) value;
             if(!list.isEmpty()) {
@@ -105,31 +118,103 @@ public class Setup extends LinkedHashMap<String, Object> {
         for(int i = 0; i < distribution.length; i++) {
             pmf.add(new Pair(values.get(i), distribution[i]));
         }
+        //only used to validate and normalize the pmf, its own generator is never sampled
         EnumeratedDistribution ed = new EnumeratedDistribution(pmf);
-                
-        this.distribution.put(key, ed);
+        
+        List<Pair<Object, Double>> normalized = ed.getPmf();
+        double[] cum = new double[normalized.size()];
+        Object[] vals = new Object[normalized.size()];
+        double sum = 0;
+        for(int i = 0; i < cum.length; i++) {
+            sum += normalized.get(i).getValue();
+            cum[i] = sum;
+            vals[i] = normalized.get(i).getKey();
+        }
+        this.cumulative.put(key, cum);
+        this.cumulativeValues.put(key, vals);
+    }
+    
+    /**
+     * Samples a value of the key by its distribution (a single value is returned as is).
+     * The sample is drawn with the given random, thus the result is reproducible with the same seed.
+     * @param key
+     * @param rnd
+     * @return 
+     */
+    public Object getByDistribution(String key, Random rnd) {
+        return getChoice(key).sample(rnd);
     }
     
-    public Object getByDistribution(String key) {
+    /**
+     * Resolves the key once, so that it can be sampled many times without a lookup
+     * (see getByDistribution(key, rnd)).
+     * Later changes of the setup are not reflected.
+     * @param key
+     * @return 
+     */
+    public Choice getChoice(String key) {
+        Object v = get(key);
+        if(v instanceof SurfaceFormSpace && !cumulative.containsKey(key)) {
+            //uniform by index, unless a distribution was put
+            return new Choice(key, v, null, null, true);
+        }
+        if(v instanceof List && ((List) v).size() != 1) {
+            //not single, need distribution (may be null, then sample throws)
+            return new Choice(key, null, cumulative.get(key), cumulativeValues.get(key), true);
+        }
         
         //if single just return one
-        Object v = get(key);
         if(v instanceof List) {
-            List l = (List)v;
-            if(l.size() == 1) {
-                return l.get(0);
-            }
-        } else {
-            return v;
+            v = ((List) v).get(0);
         }
+        return new Choice(key, v, null, null, false);
+    }
+    
+    /**
+     * A resolved key of a setup: a single value or a discrete distribution.
+     */
+    public static class Choice {
         
-        //not single, need distribution
-        if(!distribution.containsKey(key)) {
-            throw new RuntimeException("for " + key + " is no distribution defined, use putDistribution");
+        private String key;
+        private Object value;
+        private double[] cumulative;
+        private Object[] values;
+        private boolean distribution;
+
+        private Choice(String key, Object value, double[] cumulative, Object[] values, boolean distribution) {
+            this.key = key;
+            this.value = value;
+            this.cumulative = cumulative;
+            this.values = values;
+            this.distribution = distribution;
         }
         
-        EnumeratedDistribution ed = distribution.get(key);
-        return ed.sample();
+        public Object sample(Random rnd) {
+            if(!distribution) {
+                return value;
+            }
+            
+            if(value instanceof SurfaceFormSpace) {
+                return ((SurfaceFormSpace) value).sample(rnd);
+            }
+            
+            if(cumulative == null) {
+                throw new RuntimeException("for " + key + " is no distribution defined, use putDistribution");
+            }
+            
+            double u = rnd.nextDouble();
+            for(int i = 0; i < cumulative.length; i++) {
+                if(u < cumulative[i]) {
+                    return values[i];
+                }
+            }
+            //rounding errors
+            return values[values.length - 1];
+        }
+
+        public String getKey() {
+            return key;
+        }
     }
     
     /*
@@ -0,0 +1,184 @@
+package de.dfki.sds.datasprout;
+
+import de.dfki.sds.datasprout.excel.ExcelSproutOptions;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONObject;
+
+/**
+ * A sprawl request which is executed asynchronously by the SprawlJobManager.
+ * The client polls the state and downloads the zip file when it is finished.
+ */
+public class SprawlJob {
+
+    public enum State {
+        Queued,
+        Running,
+        Finished,
+        Failed
+    }
+
+    //the stages of a job in the order they are executed, used to compute the progress
+    public static final List<String> STAGES = Arrays.asList(
+            "analysis",
+            "setups",
+            "tables",
+            "workbooks",
+            "zip"
+    );
+
+    private String id;
+    private String kg;
+    private String mode;
+
+    //parsed on the request thread because the request is gone when the job runs
+    private ExcelSproutOptions options;
+
+    private volatile State state;
+    private volatile String stage;
+    private volatile String error;
+
+    private long createdAt;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    private File genFolder;
+    private File zipFile;
+
+    public SprawlJob(String id, String kg, String mode, ExcelSproutOptions options) {
+        this.id = id;
+        this.kg = kg;
+        this.mode = mode;
+        this.options = options;
+        this.state = State.Queued;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public void running() {
+        startedAt = System.currentTimeMillis();
+        state = State.Running;
+    }
+
+    public void stage(String stage) {
+        this.stage = stage;
+    }
+
+    public void finished() {
+        finishedAt = System.currentTimeMillis();
+        stage = null;
+        state = State.Finished;
+    }
+
+    public void failed(String error) {
+        finishedAt = System.currentTimeMillis();
+        this.error = error;
+        state = State.Failed;
+    }
+
+    public boolean isDone() {
+        return state == State.Finished || state == State.Failed;
+    }
+
+    //from 0 to 1
+    public double getProgress() {
+        switch (state) {
+            case Finished:
+                return 1.0;
+            case Queued:
+                return 0.0;
+            default:
+                break;
+        }
+        int index = STAGES.indexOf(stage);
+        if (index < 0) {
+            return 0.0;
+        }
+        return index / (double) STAGES.size();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getKg() {
+        return kg;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public ExcelSproutOptions getOptions() {
+        return options;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public File getGenFolder() {
+        return genFolder;
+    }
+
+    public void setGenFolder(File genFolder) {
+        this.genFolder = genFolder;
+    }
+
+    public File getZipFile() {
+        return zipFile;
+    }
+
+    public void setZipFile(File zipFile) {
+        this.zipFile = zipFile;
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("kg", kg);
+        json.put("mode", mode);
+        json.put("state", state.name());
+        if (stage != null) {
+            json.put("stage", stage);
+        }
+        json.put("progress", getProgress());
+        json.put("createdAt", createdAt);
+        if (startedAt > 0) {
+            json.put("startedAt", startedAt);
+        }
+        if (finishedAt > 0) {
+            json.put("finishedAt", finishedAt);
+            json.put("durationMillis", finishedAt - startedAt);
+        }
+        if (error != null) {
+            json.put("error", error);
+        }
+        //the summary.json files are written before the zip, here it is complete
+        json.put("performance", options.getPerformanceRecorder().toJSON());
+        if (state == State.Finished) {
+            json.put("result", "/jobs/" + id + "/result");
+        }
+        return json;
+    }
+}
@@ -0,0 +1,167 @@
+package de.dfki.sds.datasprout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.json.JSONObject;
+
+/**
+ * Executes sprawl jobs with a bounded number of workers and a bounded queue.
+ * When the queue is full a job is rejected.
+ * Done jobs are kept for a retention time and then removed together with their files,
+ * by a periodic sweep and when jobs are submitted or looked up.
+ */
+public class SprawlJobManager {
+
+    public interface Work {
+        void run(SprawlJob job) throws Exception;
+    }
+
+    private ThreadPoolExecutor executor;
+
+    //removes expired jobs also when no requests arrive
+    private ScheduledExecutorService sweeper;
+
+    private Map<String, SprawlJob> id2job;
+
+    private int maxConcurrency;
+    private int queueDepth;
+    private long retentionMillis;
+
+    public SprawlJobManager(int maxConcurrency, int queueDepth, long retentionMillis) {
+        this.maxConcurrency = maxConcurrency;
+        this.queueDepth = queueDepth;
+        this.retentionMillis = retentionMillis;
+
+        id2job = new ConcurrentHashMap<>();
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, "sprawl-job-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+
+        executor = new ThreadPoolExecutor(
+                maxConcurrency, maxConcurrency,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sprawl-job-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        //an expired job is removed at the latest half a retention time (at most a minute) later
+        long sweepMillis = Math.max(1000, Math.min(retentionMillis / 2, 60 * 1000));
+        sweeper.scheduleWithFixedDelay(this::evict, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the job.
+     * @param job
+     * @param work
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public void submit(SprawlJob job, Work work) {
+        evict();
+
+        id2job.put(job.getId(), job);
+        try {
+            executor.execute(() -> execute(job, work));
+        } catch (RejectedExecutionException e) {
+            id2job.remove(job.getId());
+            throw e;
+        }
+    }
+
+    private void execute(SprawlJob job, Work work) {
+        job.running();
+        try {
+            work.run(job);
+            job.finished();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            job.failed(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    /**
+     * @param id
+     * @return null if the job is unknown or expired
+     */
+    public SprawlJob get(String id) {
+        evict();
+        return id2job.get(id);
+    }
+
+    /**
+     * Removes done jobs which are older than the retention time and deletes their files.
+     */
+    public void evict() {
+        long now = System.currentTimeMillis();
+        List<SprawlJob> expired = new ArrayList<>();
+        for (SprawlJob job : id2job.values()) {
+            if (job.isDone() && now - job.getFinishedAt() > retentionMillis) {
+                expired.add(job);
+            }
+        }
+        for (SprawlJob job : expired) {
+            //only one concurrent eviction deletes the files
+            if (!id2job.remove(job.getId(), job)) {
+                continue;
+            }
+            FileUtils.deleteQuietly(job.getZipFile());
+            FileUtils.deleteQuietly(job.getGenFolder());
+        }
+    }
+
+    public void shutdown() {
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public int getJobCount() {
+        return id2job.size();
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("maxConcurrency", maxConcurrency);
+        json.put("queueDepth", queueDepth);
+        json.put("active", getActive());
+        json.put("queued", getQueued());
+        json.put("jobs", getJobCount());
+        return json;
+    }
+}
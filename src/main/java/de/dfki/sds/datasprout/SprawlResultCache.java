@@ -0,0 +1,447 @@
+package de.dfki.sds.datasprout;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Generated zips of /sprawl requests on local disk, keyed by the SHA-256 of
+ * the canonicalized parameters (see key), since the generation is fully determined by them.
+ * The cache is bounded by the bytes of its files, the least recently used ones are removed first.
+ * A zip which is read by a request is not removed until the request closed it,
+ * a zip larger than the cache is not kept (but still read by the waiting requests).
+ * Identical requests at the same time share one generation (single-flight):
+ * the first one (the leader) generates and writes the zip to the cache file while
+ * it streams it to its client, the others wait and stream the finished file.
+ * A shared zip is the one of the leader byte for byte, thus its summary.json and
+ * performance.json have the date and the timing of the leader's generation.
+ * The folder is emptied when the cache is created, so results of an older version
+ * of the server are not reused.
+ */
+public class SprawlResultCache {
+
+    private File folder;
+    private long maxBytes;
+
+    //key to cached zip, in access order
+    private LinkedHashMap<String, Entry> key2entry;
+    private long bytes;
+
+    //key to the running generation
+    private Map<String, CompletableFuture<Entry>> flights;
+    //the entries of the running generations, followers hold a reference before it is committed
+    private Map<String, Entry> flightEntries;
+
+    private AtomicLong hits;
+    private AtomicLong misses;
+    private AtomicLong shared;
+
+    public SprawlResultCache(File folder, long maxBytes) {
+        this.folder = folder;
+        this.maxBytes = maxBytes;
+        FileUtils.deleteQuietly(folder);
+        folder.mkdirs();
+        key2entry = new LinkedHashMap<>(16, 0.75f, true);
+        flights = new HashMap<>();
+        flightEntries = new HashMap<>();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        shared = new AtomicLong();
+    }
+
+    /**
+     * The SHA-256 (hex) of the parameters. Keys are sorted and JSON values
+     * are written with sorted keys, so the order in the request does not matter.
+     * @param params the parameters which determine the result, e.g. kg, its content hash, mode, randomSeed
+     * @return
+     */
+    public static String key(Map<String, Object> params) {
+        List<String> names = new ArrayList<>(params.keySet());
+        Collections.sort(names);
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            sb.append(name).append('=').append(canonical(params.get(name))).append('\n');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    //JSON with sorted keys, other values as string
+    private static String canonical(Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject json = (JSONObject) value;
+            List<String> keys = new ArrayList<>(json.keySet());
+            Collections.sort(keys);
+            StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(JSONObject.quote(keys.get(i))).append(':').append(canonical(json.get(keys.get(i))));
+            }
+            return sb.append('}').toString();
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(canonical(array.get(i)));
+            }
+            return sb.append(']').toString();
+        }
+        if (value instanceof String) {
+            return JSONObject.quote((String) value);
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Looks up the key: a cached zip, a running generation of another request or
+     * a new generation which the caller has to run (and commit or abort).
+     * A zip of a flight which is not the leader is not removed until it is opened and closed
+     * (or open returned null).
+     * @param key
+     * @return
+     */
+    public synchronized Flight begin(String key) {
+        Entry entry = key2entry.get(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            entry.refs++;
+            return new Flight(this, key, false, CompletableFuture.completedFuture(entry));
+        }
+        CompletableFuture<Entry> running = flights.get(key);
+        if (running != null) {
+            shared.incrementAndGet();
+            flightEntries.get(key).refs++;
+            return new Flight(this, key, false, running);
+        }
+        misses.incrementAndGet();
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        flights.put(key, future);
+        flightEntries.put(key, new Entry());
+        return new Flight(this, key, true, future);
+    }
+
+    private synchronized void commit(String key, File tmp, CompletableFuture<Entry> future) {
+        flights.remove(key);
+        Entry entry = flightEntries.remove(key);
+
+        //unique, since a former zip of the key may still be read
+        String name = tmp.getName();
+        File file = new File(folder, name.substring(0, name.length() - ".part".length()));
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            tmp.delete();
+            future.completeExceptionally(ex);
+            return;
+        }
+        entry.file = file;
+        entry.length = file.length();
+
+        //a file larger than the cache is not kept, it is deleted when the waiting requests read it
+        if (entry.length <= maxBytes) {
+            entry.cached = true;
+            key2entry.put(key, entry);
+            bytes += entry.length;
+            evict(entry);
+        }
+        future.complete(entry);
+        deleteIfUnused(entry);
+    }
+
+    //the least recently used ones first, zips which are read (or waited for) and the kept one stay
+    private void evict(Entry keep) {
+        Iterator<Entry> iter = key2entry.values().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            Entry entry = iter.next();
+            if (entry.refs > 0 || entry == keep) {
+                continue;
+            }
+            iter.remove();
+            entry.cached = false;
+            bytes -= entry.length;
+            deleteIfUnused(entry);
+        }
+    }
+
+    private void deleteIfUnused(Entry entry) {
+        if (!entry.cached && entry.refs == 0 && entry.file != null) {
+            entry.file.delete();
+        }
+    }
+
+    private synchronized void abort(String key, File tmp, CompletableFuture<Entry> future, Exception cause) {
+        flights.remove(key);
+        flightEntries.remove(key);
+        tmp.delete();
+        future.completeExceptionally(cause);
+    }
+
+    //null if the zip is gone
+    private synchronized InputStream open(Entry entry) {
+        if (entry.file == null || !entry.file.isFile()) {
+            return null;
+        }
+        try {
+            return new FileInputStream(entry.file);
+        } catch (FileNotFoundException ex) {
+            return null;
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.refs--;
+        deleteIfUnused(entry);
+        //zips which were read during a commit may be removed now
+        if (entry.refs == 0 && bytes > maxBytes) {
+            evict(null);
+        }
+    }
+
+    public synchronized int size() {
+        return key2entry.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return requests which waited for the generation of an identical request
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    //a zip of the cache, guarded by the lock of the cache
+    private static class Entry {
+
+        private File file;
+        private long length;
+        //in key2entry
+        private boolean cached;
+        //requests which will read or read it
+        private int refs;
+    }
+
+    /**
+     * The result of one request: the leader generates, the others read.
+     */
+    public static class Flight {
+
+        private SprawlResultCache cache;
+        private String key;
+        private boolean leader;
+        private CompletableFuture<Entry> future;
+
+        private File tmp;
+        private boolean released;
+
+        private Flight(SprawlResultCache cache, String key, boolean leader, CompletableFuture<Entry> future) {
+            this.cache = cache;
+            this.key = key;
+            this.leader = leader;
+            this.future = future;
+        }
+
+        /**
+         * @return true if the caller generates the result
+         */
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * For the leader: the zip is written to a cache file and to the client.
+         * Errors of the client (e.g. it went away) are ignored, so the cache file is complete for the others.
+         * @param client
+         * @return
+         * @throws IOException
+         */
+        public OutputStream tee(OutputStream client) throws IOException {
+            tmp = File.createTempFile(key, ".zip.part", cache.folder);
+            return new TeeOutputStream(new FileOutputStream(tmp), client);
+        }
+
+        /**
+         * For the leader: the zip is complete (its stream is closed).
+         */
+        public void commit() {
+            cache.commit(key, tmp, future);
+        }
+
+        /**
+         * For the leader: the generation failed, the waiting requests fail too.
+         * @param cause
+         */
+        public void abort(Exception cause) {
+            if (tmp == null) {
+                tmp = new File(cache.folder, key + ".zip.part");
+            }
+            cache.abort(key, tmp, future, cause);
+        }
+
+        /**
+         * For the others: waits for the zip and opens it.
+         * The zip is kept until the stream is closed.
+         * @return null if the zip is not available (e.g. it could not be stored), then the caller generates it
+         */
+        public InputStream open() {
+            Entry entry;
+            try {
+                entry = future.get();
+            } catch (InterruptedException ex) {
+                release(null);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                release(null);
+                throw new RuntimeException("the generation of an identical request failed", ex.getCause());
+            }
+            InputStream in = cache.open(entry);
+            if (in == null) {
+                release(entry);
+                return null;
+            }
+            return new FilterInputStream(in) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release(entry);
+                    }
+                }
+            };
+        }
+
+        //the entry of a failed generation is not in the cache, it has no file
+        private void release(Entry entry) {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (entry != null) {
+                cache.release(entry);
+            }
+        }
+
+        /**
+         * For the others: bytes of the zip, after open.
+         * @return
+         */
+        public long length() {
+            Entry entry = future.getNow(null);
+            return entry == null ? -1 : entry.length;
+        }
+    }
+
+    //the file gets all bytes, the client only as long as it works
+    private static class TeeOutputStream extends OutputStream {
+
+        private OutputStream file;
+        private OutputStream client;
+
+        TeeOutputStream(OutputStream file, OutputStream client) {
+            this.file = file;
+            this.client = client;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            file.write(b);
+            if (client != null) {
+                try {
+                    client.write(b);
+                } catch (IOException ex) {
+                    client = null;
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            file.write(b, off, len);
+            if (client != null) {
+                try {
+                    client.write(b, off, len);
+                } catch (IOException ex) {
+                    client = null;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            file.flush();
+            if (client != null) {
+                try {
+                    client.flush();
+                } catch (IOException ex) {
+                    client = null;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (IOException ex) {
+                    client = null;
+                }
+            }
+        }
+    }
+}
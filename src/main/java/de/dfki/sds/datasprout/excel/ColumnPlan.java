@@ -0,0 +1,88 @@
+package de.dfki.sds.datasprout.excel;
+
+import de.dfki.sds.datasprout.Setup;
+import de.dfki.sds.datasprout.excel.Patterns.PatternKey;
+import java.util.List;
+import org.apache.jena.rdf.model.Property;
+
+/**
+ * The patterns of one column: for every pattern key the setup key that applies
+ * to the property config is resolved once (same precedence as before:
+ * &lt;config-uri&gt;.key, &lt;property-uri&gt;.key, key).
+ */
+public class ColumnPlan {
+
+    private Setup setup;
+    private PropertyConfig propertyConfig;
+
+    //indexed by PatternKey.ordinal()
+    private Setup.Choice[] choices;
+
+    //plans for single properties of the config, used for the cells which are merged
+    private Property[] properties;
+    private ColumnPlan[] propertyPlans;
+
+    public ColumnPlan(Setup setup, PropertyConfig propertyConfig) {
+        this.setup = setup;
+        this.propertyConfig = propertyConfig;
+
+        PatternKey[] keys = PatternKey.values();
+        choices = new Setup.Choice[keys.length];
+        for (PatternKey key : keys) {
+            choices[key.ordinal()] = setup.getChoice(resolve(key.name()));
+        }
+
+        List<Property> list = propertyConfig.getProperties();
+        properties = list.toArray(new Property[0]);
+        propertyPlans = new ColumnPlan[properties.length];
+    }
+
+    //prefer that there could be a special pattern to property association
+    private String resolve(String patternName) {
+        String patternKey = patternName;
+
+        //try to use the property uri to find a specific pattern configuration
+        if (!propertyConfig.isMulti()) {
+            String key = propertyConfig.getProperty().getURI() + "." + patternName;
+            if (setup.containsKey(key)) {
+                patternKey = key;
+            }
+        }
+        //use this to create a temp uri that can be used for example if you have multiple properties in the
+        //property config. this why you can refer to it with one uri.
+        if (propertyConfig.hasUri()) {
+            String key = propertyConfig.getUri() + "." + patternName;
+            if (setup.containsKey(key)) {
+                patternKey = key;
+            }
+        }
+
+        return patternKey;
+    }
+
+    public Setup.Choice getChoice(PatternKey key) {
+        return choices[key.ordinal()];
+    }
+
+    /**
+     * The plan of a single property of this column (a new PropertyConfig(property)).
+     * @param property
+     * @return
+     */
+    public ColumnPlan forProperty(Property property) {
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i].equals(property)) {
+                if (propertyPlans[i] == null) {
+                    propertyPlans[i] = new ColumnPlan(setup, new PropertyConfig(property));
+                }
+                return propertyPlans[i];
+            }
+        }
+        return new ColumnPlan(setup, new PropertyConfig(property));
+    }
+
+    public PropertyConfig getPropertyConfig() {
+        return propertyConfig;
+    }
+
+}
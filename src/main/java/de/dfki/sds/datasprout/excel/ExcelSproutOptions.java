@@ -2,6 +2,10 @@
 package de.dfki.sds.datasprout.excel;
 
 import de.dfki.sds.datasprout.utils.JsonUtility;
+import de.dfki.sds.datasprout.utils.PerformanceRecorder;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 import org.apache.jena.shared.PrefixMapping;
 import org.json.JSONObject;
 
@@ -28,9 +32,36 @@ public class ExcelSproutOptions {
     
     private JSONObject generationSummary;
     
+    //the cost of the stages, written to the performance section of the summary
+    private PerformanceRecorder performanceRecorder;
+    
+    //called with the folder of a workbook when all its files are written
+    private Consumer<File> workbookListener;
+    
+    //number of tables generated at the same time, 1 means sequential
+    private int tableParallelism = 1;
+    
+    //optional executor for the table generation, otherwise a pool with tableParallelism threads is used
+    private ExecutorService tableExecutor;
+    
+    //write the workbooks with SXSSF so that only a window of rows is in memory (for large tables)
+    private boolean streamingWorkbooks;
+    private int streamingRowWindow = 100;
+    
+    //write expected and provenance statements while the cells are visited instead of building models first
+    private boolean streamingProvenance;
+    
+    //number of workbooks created at the same time, 1 means sequential
+    private int workbookParallelism = 1;
+    
+    //max cells of the workbooks created at the same time, weighted by their fonts and comments,
+    //0 means an estimate based on the free heap
+    private int workbookCellLimit;
+    
     public ExcelSproutOptions() {
         generationSummary = new JSONObject();
         JsonUtility.forceLinkedHashMap(generationSummary);
+        performanceRecorder = new PerformanceRecorder();
     }
     
     public long getRandomSeed() {
@@ -108,5 +139,77 @@ public class ExcelSproutOptions {
     public JSONObject getGenerationSummary() {
         return generationSummary;
     }
+
+    public PerformanceRecorder getPerformanceRecorder() {
+        return performanceRecorder;
+    }
+
+    public void setPerformanceRecorder(PerformanceRecorder performanceRecorder) {
+        this.performanceRecorder = performanceRecorder;
+    }
+
+    public Consumer<File> getWorkbookListener() {
+        return workbookListener;
+    }
+
+    public void setWorkbookListener(Consumer<File> workbookListener) {
+        this.workbookListener = workbookListener;
+    }
+
+    public int getTableParallelism() {
+        return tableParallelism;
+    }
+
+    public void setTableParallelism(int tableParallelism) {
+        this.tableParallelism = tableParallelism;
+    }
+
+    public ExecutorService getTableExecutor() {
+        return tableExecutor;
+    }
+
+    public void setTableExecutor(ExecutorService tableExecutor) {
+        this.tableExecutor = tableExecutor;
+    }
+
+    public boolean isStreamingWorkbooks() {
+        return streamingWorkbooks;
+    }
+
+    public void setStreamingWorkbooks(boolean streamingWorkbooks) {
+        this.streamingWorkbooks = streamingWorkbooks;
+    }
+
+    public int getStreamingRowWindow() {
+        return streamingRowWindow;
+    }
+
+    public void setStreamingRowWindow(int streamingRowWindow) {
+        this.streamingRowWindow = streamingRowWindow;
+    }
+
+    public boolean isStreamingProvenance() {
+        return streamingProvenance;
+    }
+
+    public void setStreamingProvenance(boolean streamingProvenance) {
+        this.streamingProvenance = streamingProvenance;
+    }
+
+    public int getWorkbookParallelism() {
+        return workbookParallelism;
+    }
+
+    public void setWorkbookParallelism(int workbookParallelism) {
+        this.workbookParallelism = workbookParallelism;
+    }
+
+    public int getWorkbookCellLimit() {
+        return workbookCellLimit;
+    }
+
+    public void setWorkbookCellLimit(int workbookCellLimit) {
+        this.workbookCellLimit = workbookCellLimit;
+    }
     
 }
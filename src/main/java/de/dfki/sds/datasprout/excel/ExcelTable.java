@@ -6,22 +6,22 @@ import de.dfki.sds.datasprout.Setup;
 import de.dfki.sds.hephaistos.storage.excel.ExcelCell;
 import java.io.IOException;
 import java.io.StringWriter;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.ResourceFactory;
 
 /**
  * 
  */
 public class ExcelTable {
     
-    private Map<ExcelCell, Provenance> cellProvMap;
+    private ProvenanceStore provenanceStore;
     
     private Setup setup;
 
@@ -30,7 +30,8 @@ public class ExcelTable {
     private IdCounter idCounter;
     
     public ExcelTable() {
-        cellProvMap = new HashMap<>();
+        //keeps the order of the cells to have the same output for the same seed
+        provenanceStore = new ProvenanceStore();
     }
 
     public ExcelCell[][] getData() {
@@ -84,7 +85,7 @@ public class ExcelTable {
     }
     
     public void addStatement(ExcelCell cell, Resource s, Property p, RDFNode o) {
-        cellProvMap.computeIfAbsent(cell, c -> new Provenance()).getStatements().add(ResourceFactory.createStatement(s, p, o));
+        provenanceStore.addStatement(cell, s, p, o);
     }
     
     public void addStatements(ExcelCell cell, Resource s, Property p, List<RDFNode> os) {
@@ -94,11 +95,37 @@ public class ExcelTable {
     }
     
     public void putUsedPattern(ExcelCell cell, String patternName, Object patternValue) {
-        cellProvMap.computeIfAbsent(cell, c -> new Provenance()).getUsedPatterns().put(patternName, patternValue);
+        provenanceStore.putUsedPattern(cell, patternName, patternValue);
+    }
+    
+    /**
+     * Adds the statements and used patterns of a cell to another cell.
+     * @param from
+     * @param to 
+     */
+    public void copyProvenance(ExcelCell from, ExcelCell to) {
+        provenanceStore.copy(from, to);
+    }
+
+    /**
+     * The cells that have provenance, in the order they got it.
+     * @return 
+     */
+    public List<ExcelCell> getProvenanceCells() {
+        return provenanceStore.getCells();
+    }
+    
+    /**
+     * A view of the provenance of the cell (statements are created on each call).
+     * @param cell
+     * @return null if the cell has no provenance
+     */
+    public Provenance getProvenance(ExcelCell cell) {
+        return provenanceStore.getProvenance(cell);
     }
 
-    public Map<ExcelCell, Provenance> getCellProvMap() {
-        return cellProvMap;
+    public ProvenanceStore getProvenanceStore() {
+        return provenanceStore;
     }
 
     @Override
@@ -113,4 +140,40 @@ public class ExcelTable {
     public int getAndIncCellId() {
         return idCounter.getAndIncId();
     }
+    
+    //number of cell ids this table used
+    public int getCellIdCount() {
+        return idCounter.get();
+    }
+    
+    /**
+     * Adds the offset to the id of every cell in the data and the provenance.
+     * Tables are generated with their own ids starting from 0, 
+     * this moves them into a unique range.
+     * @param offset 
+     */
+    public void shiftCellIds(int offset) {
+        if(offset == 0) {
+            return;
+        }
+        
+        Set<ExcelCell> shifted = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(ExcelCell cell : provenanceStore.getCells()) {
+            if(shifted.add(cell)) {
+                cell.setId(cell.getId() + offset);
+            }
+        }
+        if(data != null) {
+            for(ExcelCell[] row : data) {
+                for(ExcelCell cell : row) {
+                    if(cell != null && shifted.add(cell)) {
+                        cell.setId(cell.getId() + offset);
+                    }
+                }
+            }
+        }
+        
+        //the store indexes the cells by id
+        provenanceStore.shiftCellIds(offset);
+    }
 }
@@ -1,17 +1,30 @@
-
 package de.dfki.sds.datasprout.excel;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * 
+ * Thread-safe counter for cell ids.
  */
 public class IdCounter {
 
-    private int id;
+    private AtomicInteger id;
+    
+    public IdCounter() {
+        id = new AtomicInteger();
+    }
     
     public int getAndIncId() {
-        int i = id;
-        id++;
-        return i;
+        return id.getAndIncrement();
+    }
+    
+    //reserves a block of ids and returns the first one
+    public int getAndAdd(int count) {
+        return id.getAndAdd(count);
+    }
+    
+    //number of ids given so far
+    public int get() {
+        return id.get();
     }
     
 }
@@ -128,5 +128,34 @@ public class Patterns {
         
     }
     
+    //the setup keys a table selects per cell (the name is the key)
+    //a column can override them with <property-uri>.<key> or <config-uri>.<key>
+    //resolved once per column in ColumnPlan
+    public enum PatternKey {
+        NumericRendering,
+        NumericNativeDataFormats,
+        NumberStringFormats,
+        BooleanRendering,
+        BooleanNativeDataFormats,
+        BooleanTrueNumbers,
+        BooleanFalseNumbers,
+        BooleanTrueSymbols,
+        BooleanFalseSymbols,
+        DateRendering,
+        DateDataFormats,
+        DateStringFormats,
+        DateTimeRendering,
+        DateTimeDataFormats,
+        DateTimeStringFormats,
+        LabelProperties,
+        LabelPickStrategy,
+        MergeCellStrategy,
+        MergeCellDelimiters,
+        EmptyCellRendering,
+        BlankStringWhitespaces,
+        BlankStringLengths,
+        EmptyCellSymbols,
+        EmptyCellNumbers
+    }
     
 }
@@ -1,16 +1,19 @@
 package de.dfki.sds.datasprout.excel;
 
 import de.dfki.sds.datasprout.Setup;
-import de.dfki.sds.datasprout.utils.ListUtility;
+import de.dfki.sds.datasprout.utils.HierarchicalRandom;
 import de.dfki.sds.datasprout.utils.SemanticUtility;
-import de.dfki.sds.datasprout.utils.SetUtility;
+import de.dfki.sds.datasprout.utils.SurfaceFormSpace;
 import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
 import java.awt.Color;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -127,8 +130,35 @@ public class PatternsToSetups {
     }
 
     public List<Setup> generate(Model model, int numberOfWorkbooks, Random rnd) {
-        rdfsAnalyzer = new RdfsAnalyzer();
-        rdfsAnalyzer.analyze(model);
+        return generate(new RdfsAnalyzer().analyze(model), numberOfWorkbooks, rnd);
+    }
+
+    /**
+     * Use this with an already analyzed model, e.g. from a RdfsAnalyzerCache.
+     * The analyzer is only read, thus it can be shared between calls.
+     * @param rdfsAnalyzer
+     * @param numberOfWorkbooks
+     * @param rnd
+     * @return 
+     */
+    public List<Setup> generate(RdfsAnalyzer rdfsAnalyzer, int numberOfWorkbooks, Random rnd) {
+        return generate(rdfsAnalyzer, numberOfWorkbooks, rnd.nextLong());
+    }
+    
+    /**
+     * The setups are seeded hierarchically: seed → workbook → setup.
+     * Each setup gets its seed (Setup.SEED) from which the TableGenerator
+     * derives the randoms of rows and cells.
+     * Thus the same seed results in the same setups and tables.
+     * @param rdfsAnalyzer
+     * @param numberOfWorkbooks
+     * @param seed
+     * @return 
+     */
+    public List<Setup> generate(RdfsAnalyzer rdfsAnalyzer, int numberOfWorkbooks, long seed) {
+        this.rdfsAnalyzer = rdfsAnalyzer;
+        HierarchicalRandom seedRnd = new HierarchicalRandom(seed);
+        Model model = rdfsAnalyzer.getModel();
 
         //renderings
         List booleanRendering = new ArrayList<>(Arrays.asList(Patterns.BooleanRendering.Native));
@@ -226,7 +256,12 @@ public class PatternsToSetups {
             //you can now pick also shortest
             labelPickStrategy.add(Patterns.LabelPickStrategy.Shortest);
             //special acronym properties are also allowed now
-            labelProperties.addAll(acronymProperties);
+            for(Object acronymProperty : acronymProperties) {
+                //when called again they are already added
+                if(!labelProperties.contains(acronymProperty)) {
+                    labelProperties.add(acronymProperty);
+                }
+            }
         }
 
         //Multiple Surface Forms
@@ -240,15 +275,8 @@ public class PatternsToSetups {
                 props.retainAll(partialLabelPropertiesSet);
                 if (props.size() > 1) {
 
-                    List<List<Property>> subsets = SetUtility.subsetsAsList(new ArrayList<>(props));
-                    subsets.removeIf(ss -> ss.size() <= 1);
-
-                    List<List<Property>> listOfPropertyList = new ArrayList<>();
-                    for (List<Property> subset : subsets) {
-                        for (List<Property> permutation : ListUtility.generatePerm(subset)) {
-                            listOfPropertyList.add(permutation);
-                        }
-                    }
+                    //all permutations of all subsets (size > 1), computed by index when sampled
+                    SurfaceFormSpace<Property> listOfPropertyList = new SurfaceFormSpace<>(new ArrayList<>(props));
 
                     //TODO maybe later you define identifying label properties (like "Smith") and additional information properties (like "Mr.")
                     multipleSurfaceFormsConfig.put(cc.getSingleClass().getURI() + "." + Setup.LABEL_PROPERTIES, listOfPropertyList);
@@ -329,7 +357,8 @@ public class PatternsToSetups {
         if (multipleTypesInATable) {
             //Set<ClassConfig> taken = new HashSet<>();
             
-            Map<Set<ClassConfig>, Double> classes2overlap = new HashMap<>();
+            //linked to have the same order for the same seed
+            Map<Set<ClassConfig>, Double> classes2overlap = new LinkedHashMap<>();
             
             for (ClassConfig left : classConfigs) {
                 for (ClassConfig right : classConfigs) {
@@ -337,7 +366,7 @@ public class PatternsToSetups {
                         continue;
                     }
                     
-                    Set<ClassConfig> subset = new HashSet<>(Arrays.asList(left, right));
+                    Set<ClassConfig> subset = new LinkedHashSet<>(Arrays.asList(left, right));
                     //prevent dublicates
                     if(classes2overlap.containsKey(subset)) {
                         continue;
@@ -369,6 +398,9 @@ public class PatternsToSetups {
         List<Setup> setups = new ArrayList<>();
 
         for (int workbookIndex = 0; workbookIndex < numberOfWorkbooks; workbookIndex++) {
+            
+            //decisions per workbook
+            HierarchicalRandom rnd = seedRnd.child(workbookIndex);
 
             //make a copy so that we can change them
             List<ClassConfig> tmpClassConfigs = new ArrayList<>(classConfigs);
@@ -416,11 +448,19 @@ public class PatternsToSetups {
             }
             
             
-            for (ClassConfig classConfig : tmpClassConfigs) {
+            for (int setupIndex = 0; setupIndex < tmpClassConfigs.size(); setupIndex++) {
+                ClassConfig classConfig = tmpClassConfigs.get(setupIndex);
+                
+                long setupSeed = rnd.child(setupIndex).getSeed();
+                
+                //decisions per setup
+                HierarchicalRandom setupRnd = new HierarchicalRandom(HierarchicalRandom.derive(setupSeed, -1));
 
                 Setup setup = new Setup();
                 setup.put(Setup.CLASSES, classConfig);
-                setup.put(Setup.RANDOM, rnd);
+                //own seed and random per setup, so that tables can be generated in parallel with the same result
+                setup.put(Setup.SEED, setupSeed);
+                setup.put(Setup.RANDOM, new HierarchicalRandom(setupSeed));
                 setup.put("header", true);
                 setup.put("headerBackgroundColor", Color.lightGray);
                 setup.put("locale", locale);
@@ -457,7 +497,7 @@ public class PatternsToSetups {
                 //Intra-Cell Additional Information: PropertyConfig pairs or even three
                 if(intraCellAdditionalInformation) {
                     //adds properties to the setup
-                    intraCellAdditionalInformation(classConfig, setup, rnd);
+                    intraCellAdditionalInformation(classConfig, setup, setupRnd);
                 }
 
                 //Partial Formatting Indicates Relations
@@ -479,7 +519,7 @@ public class PatternsToSetups {
                         
                         //one stays unformatted
                         for(int i = 0; i < pConfig.getProperties().size() - 1; i++) {
-                            String selectedFormatting = randomlyRemove(formattings, rnd);
+                            String selectedFormatting = randomlyRemove(formattings, setupRnd);
                             setup.put(pConfig.getProperties().get(i).getURI() + ".PartialFormattingIndicatesRelations", selectedFormatting);
                         }
                     }
@@ -494,18 +534,18 @@ public class PatternsToSetups {
                 
                 if (propertyValueAsColor) {
                     Map<String, List<Color>> ground2colors = new HashMap<>();
-                    ground2colors.put("BackgroundColor", randomlySortedColorList(0.3f, 0.93f, rnd));
-                    ground2colors.put("ForegroundColor", randomlySortedColorList(0.9f, 0.5f, rnd));
+                    ground2colors.put("BackgroundColor", randomlySortedColorList(0.3f, 0.93f, setupRnd));
+                    ground2colors.put("ForegroundColor", randomlySortedColorList(0.9f, 0.5f, setupRnd));
                     
                     for (Resource cls : classConfig.getClasses()) {
                         Map<Property, Set<RDFNode>> p2os = c2p2oPropValAsColor.get(cls);
                         if (p2os != null) {
                             List<Entry<Property, Set<RDFNode>>> entries = new ArrayList<>(p2os.entrySet());
-                            Collections.shuffle(entries, rnd);
+                            Collections.shuffle(entries, setupRnd);
                             //* \<Property-URI\>.\<RDFNode\>.BackgroundColor
                             //* \<Property-URI\>.\<RDFNode\>.ForegroundColor
                             List<String> grounds = Arrays.asList("BackgroundColor", "ForegroundColor");
-                            Collections.shuffle(grounds, rnd);
+                            Collections.shuffle(grounds, setupRnd);
                             //one for foreground, one for background
                             for(int j = 0; j < Math.min(grounds.size(), entries.size()); j++) {
                                 Entry<Property, Set<RDFNode>> entry = entries.get(j);
@@ -514,7 +554,7 @@ public class PatternsToSetups {
                                     String key = entry.getKey().getURI() + "." + 
                                               objects.get(k).toString() + "." + 
                                               grounds.get(j);
-                                    Color color = randomlyRemove(ground2colors.get(grounds.get(j)), rnd);
+                                    Color color = randomlyRemove(ground2colors.get(grounds.get(j)), setupRnd);
                                     setup.put(key, color);
                                     
                                     colorCodes.append(cls + " | " + key + " => " + color + "\n");
@@ -533,7 +573,7 @@ public class PatternsToSetups {
                                         if(pConfig.getProperties().isEmpty()) {
                                             pConfigsToBeRemoved.add(pConfig);
                                         } else {
-                                            pConfig.setLabel(getLabelFor(SemanticUtility.toResourceList(pConfig.getProperties()), model, rnd));
+                                            pConfig.setLabel(getLabelFor(SemanticUtility.toResourceList(pConfig.getProperties()), model, setupRnd));
                                         }
                                     }
                                 }
@@ -627,7 +667,7 @@ public class PatternsToSetups {
                 propertyConfigs.add(conf);
                 
                 //if multi give it a uri and a label
-                conf.setUri("uuid:" + UUID.randomUUID().toString());
+                conf.setUri("uuid:" + uuidFor(conf.getProperties()));
                 conf.setLabel(getLabelFor(SemanticUtility.toResourceList(conf.getProperties()), rdfsAnalyzer.getModel(), rnd));
                 //its needed because they have same range type
                 conf.setPartialFormattingNeeded(true);
@@ -663,7 +703,7 @@ public class PatternsToSetups {
                     propertyConfigs.add(conf);
 
                     //if multi give it a uri and a label
-                    conf.setUri("uuid:" + UUID.randomUUID().toString());
+                    conf.setUri("uuid:" + uuidFor(conf.getProperties()));
                     conf.setLabel(getLabelFor(SemanticUtility.toResourceList(conf.getProperties()), rdfsAnalyzer.getModel(), rnd));
                     
                     break;
@@ -679,6 +719,15 @@ public class PatternsToSetups {
         setup.put(Setup.PROPERTIES, propertyConfigs);
     }
     
+    //the same properties get the same uuid, thus the setups are the same for the same seed
+    private String uuidFor(List<Property> properties) {
+        StringBuilder sb = new StringBuilder();
+        for(Property p : properties) {
+            sb.append(p.getURI()).append(' ');
+        }
+        return UUID.nameUUIDFromBytes(sb.toString().getBytes(StandardCharsets.UTF_8)).toString();
+    }
+    
     public RdfsAnalyzer getRdfsAnalyzer() {
         return rdfsAnalyzer;
     }
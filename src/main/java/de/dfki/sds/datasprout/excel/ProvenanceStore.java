@@ -0,0 +1,340 @@
+package de.dfki.sds.datasprout.excel;
+
+import de.dfki.sds.datasprout.Provenance;
+import de.dfki.sds.hephaistos.storage.excel.ExcelCell;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+
+/**
+ * The provenance of the cells of a table in int arrays.
+ * Nodes, pattern names and pattern values are dictionary encoded,
+ * a statement is an (s, p, o) int triple and a used pattern a (pattern, value) int pair.
+ * Cells are indexed by their id (ids of a table are dense, they start at the id offset).
+ * The entries of a cell are linked lists in shared arrays, so adding is cheap in any order.
+ * Cells are kept in the order they got their first entry (like the LinkedHashMap before),
+ * thus the output stays the same.
+ * Provenance objects are only created on request (getProvenance) as a view for the writers.
+ */
+public class ProvenanceStore {
+
+    private static final int NONE = -1;
+
+    //dictionaries
+    private Map<RDFNode, Integer> node2id;
+    private List<RDFNode> nodes;
+    private Map<String, Integer> pattern2id;
+    private List<String> patterns;
+    private Map<Object, Integer> value2id;
+    private List<Object> values;
+
+    //cell id - idOffset is the slot
+    private int idOffset;
+    private ExcelCell[] cells;
+    private int[] firstStatement;
+    private int[] lastStatement;
+    private int[] statementCount;
+    private int[] firstPattern;
+    private int[] lastPattern;
+
+    //slots in the order of their first entry
+    private int[] order;
+    private int size;
+
+    //statements: linked per slot
+    private int[] stmtSubject;
+    private int[] stmtPredicate;
+    private int[] stmtObject;
+    private int[] stmtNext;
+    private int statements;
+
+    //used patterns: linked per slot
+    private int[] usedPattern;
+    private int[] usedValue;
+    private int[] usedNext;
+    private int usedPatterns;
+
+    public ProvenanceStore() {
+        node2id = new HashMap<>();
+        nodes = new ArrayList<>();
+        pattern2id = new HashMap<>();
+        patterns = new ArrayList<>();
+        value2id = new HashMap<>();
+        values = new ArrayList<>();
+
+        cells = new ExcelCell[64];
+        firstStatement = new int[64];
+        lastStatement = new int[64];
+        statementCount = new int[64];
+        firstPattern = new int[64];
+        lastPattern = new int[64];
+        Arrays.fill(firstStatement, NONE);
+        Arrays.fill(firstPattern, NONE);
+        order = new int[64];
+
+        stmtSubject = new int[256];
+        stmtPredicate = new int[256];
+        stmtObject = new int[256];
+        stmtNext = new int[256];
+
+        usedPattern = new int[256];
+        usedValue = new int[256];
+        usedNext = new int[256];
+    }
+
+    //-------------------------------------------
+    //write
+
+    public void addStatement(ExcelCell cell, Resource s, Property p, RDFNode o) {
+        addStatement(slotOrCreate(cell), node(s), node(p), node(o));
+    }
+
+    private void addStatement(int slot, int s, int p, int o) {
+        if (statements == stmtSubject.length) {
+            int n = statements * 2;
+            stmtSubject = Arrays.copyOf(stmtSubject, n);
+            stmtPredicate = Arrays.copyOf(stmtPredicate, n);
+            stmtObject = Arrays.copyOf(stmtObject, n);
+            stmtNext = Arrays.copyOf(stmtNext, n);
+        }
+        int i = statements++;
+        stmtSubject[i] = s;
+        stmtPredicate[i] = p;
+        stmtObject[i] = o;
+        stmtNext[i] = NONE;
+
+        if (firstStatement[slot] == NONE) {
+            firstStatement[slot] = i;
+        } else {
+            stmtNext[lastStatement[slot]] = i;
+        }
+        lastStatement[slot] = i;
+        statementCount[slot]++;
+    }
+
+    /**
+     * Like Map.put: an existing value of the pattern is replaced.
+     * @param cell
+     * @param patternName
+     * @param patternValue
+     */
+    public void putUsedPattern(ExcelCell cell, String patternName, Object patternValue) {
+        putUsedPattern(slotOrCreate(cell), pattern(patternName), value(patternValue));
+    }
+
+    private void putUsedPattern(int slot, int pattern, int value) {
+        for (int i = firstPattern[slot]; i != NONE; i = usedNext[i]) {
+            if (usedPattern[i] == pattern) {
+                usedValue[i] = value;
+                return;
+            }
+        }
+
+        if (usedPatterns == usedPattern.length) {
+            int n = usedPatterns * 2;
+            usedPattern = Arrays.copyOf(usedPattern, n);
+            usedValue = Arrays.copyOf(usedValue, n);
+            usedNext = Arrays.copyOf(usedNext, n);
+        }
+        int i = usedPatterns++;
+        usedPattern[i] = pattern;
+        usedValue[i] = value;
+        usedNext[i] = NONE;
+
+        //in put order, so that the maps of getUsedPatterns are the same as before
+        if (firstPattern[slot] == NONE) {
+            firstPattern[slot] = i;
+        } else {
+            usedNext[lastPattern[slot]] = i;
+        }
+        lastPattern[slot] = i;
+    }
+
+    /**
+     * Adds the statements and used patterns of one cell to another
+     * (e.g. the temp cells of a merged cell), without creating statements.
+     * @param from
+     * @param to
+     */
+    public void copy(ExcelCell from, ExcelCell to) {
+        int fromSlot = slot(from);
+        int toSlot = slotOrCreate(to);
+        if (fromSlot == NONE) {
+            return;
+        }
+        //the end is fixed in case from and to are the same
+        int count = statementCount[fromSlot];
+        int i = firstStatement[fromSlot];
+        for (int k = 0; k < count; k++) {
+            addStatement(toSlot, stmtSubject[i], stmtPredicate[i], stmtObject[i]);
+            i = stmtNext[i];
+        }
+        for (int j = firstPattern[fromSlot]; j != NONE; j = usedNext[j]) {
+            putUsedPattern(toSlot, usedPattern[j], usedValue[j]);
+        }
+    }
+
+    /**
+     * Moves the cell ids, the cells have to be moved by the caller.
+     * @param offset
+     */
+    public void shiftCellIds(int offset) {
+        idOffset += offset;
+    }
+
+    //-------------------------------------------
+    //read
+
+    /**
+     * The cells with provenance in the order they got their first entry.
+     * @return
+     */
+    public List<ExcelCell> getCells() {
+        List<ExcelCell> result = new ArrayList<>(size);
+        for (int k = 0; k < size; k++) {
+            result.add(cells[order[k]]);
+        }
+        return result;
+    }
+
+    public boolean contains(ExcelCell cell) {
+        return slot(cell) != NONE;
+    }
+
+    public int getStatementCount(ExcelCell cell) {
+        int slot = slot(cell);
+        return slot == NONE ? 0 : statementCount[slot];
+    }
+
+    /**
+     * Creates the statements of the cell.
+     * @param cell
+     * @return a new list
+     */
+    public List<Statement> getStatements(ExcelCell cell) {
+        int slot = slot(cell);
+        if (slot == NONE) {
+            return new ArrayList<>();
+        }
+        List<Statement> result = new ArrayList<>(statementCount[slot]);
+        for (int i = firstStatement[slot]; i != NONE; i = stmtNext[i]) {
+            result.add(ResourceFactory.createStatement(
+                    nodes.get(stmtSubject[i]).asResource(),
+                    property(nodes.get(stmtPredicate[i])),
+                    nodes.get(stmtObject[i])
+            ));
+        }
+        return result;
+    }
+
+    /**
+     * @param cell
+     * @return a new map, pattern name to value
+     */
+    public Map<String, Object> getUsedPatterns(ExcelCell cell) {
+        Map<String, Object> result = new HashMap<>();
+        int slot = slot(cell);
+        if (slot == NONE) {
+            return result;
+        }
+        for (int i = firstPattern[slot]; i != NONE; i = usedNext[i]) {
+            result.put(patterns.get(usedPattern[i]), values.get(usedValue[i]));
+        }
+        return result;
+    }
+
+    /**
+     * A provenance view of the cell.
+     * @param cell
+     * @return null if the cell has no provenance
+     */
+    public Provenance getProvenance(ExcelCell cell) {
+        if (!contains(cell)) {
+            return null;
+        }
+        return new Provenance(getStatements(cell), getUsedPatterns(cell));
+    }
+
+    //-------------------------------------------
+    //dictionaries and slots
+
+    private int node(RDFNode node) {
+        Integer id = node2id.get(node);
+        if (id == null) {
+            id = nodes.size();
+            node2id.put(node, id);
+            nodes.add(node);
+        }
+        return id;
+    }
+
+    //the dictionary has the first object of a node, it is maybe no Property
+    private static Property property(RDFNode node) {
+        if (node instanceof Property) {
+            return (Property) node;
+        }
+        return ResourceFactory.createProperty(node.asResource().getURI());
+    }
+
+    private int pattern(String name) {
+        Integer id = pattern2id.get(name);
+        if (id == null) {
+            id = patterns.size();
+            pattern2id.put(name, id);
+            patterns.add(name);
+        }
+        return id;
+    }
+
+    private int value(Object value) {
+        Integer id = value2id.get(value);
+        if (id == null) {
+            id = values.size();
+            value2id.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    private int slot(ExcelCell cell) {
+        int slot = cell.getId() - idOffset;
+        if (slot < 0 || slot >= cells.length || cells[slot] == null) {
+            return NONE;
+        }
+        return slot;
+    }
+
+    private int slotOrCreate(ExcelCell cell) {
+        int slot = cell.getId() - idOffset;
+        if (slot < 0) {
+            throw new RuntimeException("cell id " + cell.getId() + " is not an id of this table (offset " + idOffset + ")");
+        }
+        if (slot >= cells.length) {
+            int n = Math.max(slot + 1, cells.length * 2);
+            int old = cells.length;
+            cells = Arrays.copyOf(cells, n);
+            firstStatement = Arrays.copyOf(firstStatement, n);
+            lastStatement = Arrays.copyOf(lastStatement, n);
+            statementCount = Arrays.copyOf(statementCount, n);
+            firstPattern = Arrays.copyOf(firstPattern, n);
+            lastPattern = Arrays.copyOf(lastPattern, n);
+            Arrays.fill(firstStatement, old, n, NONE);
+            Arrays.fill(firstPattern, old, n, NONE);
+        }
+        if (cells[slot] == null) {
+            cells[slot] = cell;
+            if (size == order.length) {
+                order = Arrays.copyOf(order, size * 2);
+            }
+            order[size++] = slot;
+        }
+        return slot;
+    }
+}
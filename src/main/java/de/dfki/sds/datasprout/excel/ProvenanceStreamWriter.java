@@ -0,0 +1,301 @@
+package de.dfki.sds.datasprout.excel;
+
+import de.dfki.sds.datasprout.vocab.CSVW;
+import de.dfki.sds.datasprout.vocab.PROV;
+import de.dfki.sds.datasprout.vocab.SS;
+import de.dfki.sds.hephaistos.storage.excel.ExcelCell;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.zip.GZIPOutputStream;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * Writes the expected statements and the (reified) provenance of the cells
+ * directly as streaming Turtle while the cells are processed, instead of
+ * collecting them in models first.
+ * The models deduplicated the statements, here this is done with sets of
+ * 64 bit fingerprints of the triples (a collision, and thus a missing triple,
+ * is very unlikely for the number of statements of a workbook).
+ * The output contains the same triples as the model based output, only the
+ * order and the pretty printing differ.
+ */
+public class ProvenanceStreamWriter implements Closeable {
+
+    private static final Node RDF_TYPE = RDF.type.asNode();
+    private static final Node RDF_STATEMENT = RDF.Statement.asNode();
+    private static final Node RDF_SUBJECT = RDF.subject.asNode();
+    private static final Node RDF_PREDICATE = RDF.predicate.asNode();
+    private static final Node RDF_OBJECT = RDF.object.asNode();
+    private static final Node PROV_ENTITY = PROV.Entity.asNode();
+    private static final Node PROV_WAS_DERIVED_FROM = PROV.wasDerivedFrom.asNode();
+    private static final Node CSVW_CELL = CSVW.Cell.asNode();
+    private static final Node SS_SHEET_NAME = SS.sheetName.asNode();
+    private static final Node SS_ADDRESS = SS.address.asNode();
+
+    //null if not written
+    private OutputStream expectedOut;
+    private StreamRDF expected;
+    private FingerprintMap expectedSeen;
+
+    //null if not written
+    private OutputStream provenanceOut;
+    private StreamRDF provenance;
+    //statement fingerprint to the number of its reified statement
+    private FingerprintMap reifiedStatements;
+    //(statement number, cell id) pairs already written
+    private FingerprintMap derivedFrom;
+
+    /**
+     * @param expectedFile null if no expected statements are written
+     * @param expectedPrefixes
+     * @param provenanceFile null if no provenance is written
+     * @param provenancePrefixes
+     */
+    public ProvenanceStreamWriter(File expectedFile, PrefixMapping expectedPrefixes, File provenanceFile, PrefixMapping provenancePrefixes) {
+        try {
+            if (expectedFile != null) {
+                expectedOut = open(expectedFile);
+                expected = start(expectedOut, expectedPrefixes);
+                expectedSeen = new FingerprintMap();
+            }
+            if (provenanceFile != null) {
+                provenanceOut = open(provenanceFile);
+                provenance = start(provenanceOut, provenancePrefixes);
+                reifiedStatements = new FingerprintMap();
+                derivedFrom = new FingerprintMap();
+            }
+        } catch (IOException ex) {
+            closeQuietly();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static OutputStream open(File file) throws IOException {
+        return file.getName().endsWith("gz") ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file);
+    }
+
+    private static StreamRDF start(OutputStream os, PrefixMapping prefixMapping) {
+        StreamRDF stream = StreamRDFWriter.getWriterStream(os, RDFFormat.TURTLE_BLOCKS, null);
+        stream.start();
+        for (Entry<String, String> e : prefixMapping.getNsPrefixMap().entrySet()) {
+            stream.prefix(e.getKey(), e.getValue());
+        }
+        return stream;
+    }
+
+    /**
+     * Writes the statements of a cell (like expectedModel.add and rdfProvenance did).
+     * @param cell
+     * @param sheetName
+     * @param statements
+     */
+    public void cell(ExcelCell cell, String sheetName, List<Statement> statements) {
+        if (expected != null) {
+            for (Statement stmt : statements) {
+                Triple t = stmt.asTriple();
+                if (expectedSeen.putIfAbsent(fingerprint(t), 0) < 0) {
+                    expected.triple(t);
+                }
+            }
+        }
+
+        if (provenance != null) {
+            //every cell (id) is visited once
+            Node cellNode = NodeFactory.createURI("cell:" + cell.getId());
+            provenance.triple(Triple.create(cellNode, RDF_TYPE, CSVW_CELL));
+            provenance.triple(Triple.create(cellNode, RDF_TYPE, PROV_ENTITY));
+            provenance.triple(Triple.create(cellNode, SS_SHEET_NAME, NodeFactory.createLiteral(sheetName)));
+            provenance.triple(Triple.create(cellNode, SS_ADDRESS, NodeFactory.createLiteral(cell.getAddress())));
+
+            for (Statement stmt : statements) {
+                Triple t = stmt.asTriple();
+
+                int number = reifiedStatements.size();
+                int existing = reifiedStatements.putIfAbsent(fingerprint(t), number);
+                Node refstmt;
+                if (existing < 0) {
+                    refstmt = reified(number);
+                    provenance.triple(Triple.create(refstmt, RDF_TYPE, RDF_STATEMENT));
+                    provenance.triple(Triple.create(refstmt, RDF_TYPE, PROV_ENTITY));
+                    provenance.triple(Triple.create(refstmt, RDF_SUBJECT, t.getSubject()));
+                    provenance.triple(Triple.create(refstmt, RDF_PREDICATE, t.getPredicate()));
+                    provenance.triple(Triple.create(refstmt, RDF_OBJECT, t.getObject()));
+                } else {
+                    number = existing;
+                    refstmt = reified(number);
+                }
+
+                //exact key, no fingerprint needed
+                long pair = ((long) number << 32) | (cell.getId() & 0xffffffffL);
+                if (derivedFrom.putIfAbsent(pair, 0) < 0) {
+                    provenance.triple(Triple.create(refstmt, PROV_WAS_DERIVED_FROM, cellNode));
+                }
+            }
+        }
+    }
+
+    private static Node reified(int number) {
+        return NodeFactory.createBlankNode("s" + number);
+    }
+
+    //64 bit FNV-1a of the node terms
+    private static long fingerprint(Triple t) {
+        long h = 0xcbf29ce484222325L;
+        h = hash(h, t.getSubject());
+        h = hash(h, t.getPredicate());
+        h = hash(h, t.getObject());
+        return h;
+    }
+
+    private static long hash(long h, Node node) {
+        if (node.isURI()) {
+            h = hash(h, 'U');
+            h = hash(h, node.getURI());
+        } else if (node.isBlank()) {
+            h = hash(h, 'B');
+            h = hash(h, node.getBlankNodeLabel());
+        } else if (node.isLiteral()) {
+            h = hash(h, 'L');
+            h = hash(h, node.getLiteralLexicalForm());
+            h = hash(h, '@');
+            h = hash(h, node.getLiteralLanguage());
+            h = hash(h, '^');
+            h = hash(h, node.getLiteralDatatypeURI() == null ? XSDDatatype.XSDstring.getURI() : node.getLiteralDatatypeURI());
+        } else {
+            h = hash(h, 'N');
+            h = hash(h, node.toString());
+        }
+        return h;
+    }
+
+    private static long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = hash(h, s.charAt(i));
+        }
+        //separator, so that "ab"+"c" differs from "a"+"bc"
+        return hash(h, (char) 0);
+    }
+
+    private static long hash(long h, char c) {
+        h ^= c;
+        h *= 0x100000001b3L;
+        return h;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (expected != null) {
+                expected.finish();
+                expectedOut.close();
+            }
+            if (provenance != null) {
+                provenance.finish();
+                provenanceOut.close();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (expectedOut != null) {
+                expectedOut.close();
+            }
+            if (provenanceOut != null) {
+                provenanceOut.close();
+            }
+        } catch (IOException ex) {
+            //ignore
+        }
+    }
+
+    //open addressing long to int map (keys in a long array, no boxing)
+    private static class FingerprintMap {
+
+        //0 marks an empty slot, so the key 0 is stored as zeroValue
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+        private boolean hasZero;
+        private int zeroValue;
+
+        /**
+         * @return the existing value or -1 if the key was put
+         */
+        int putIfAbsent(long key, int value) {
+            if (key == 0) {
+                if (hasZero) {
+                    return zeroValue;
+                }
+                hasZero = true;
+                zeroValue = value;
+                size++;
+                return -1;
+            }
+
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+
+            //load factor 0.5
+            if (size * 2 > keys.length) {
+                grow();
+            }
+            return -1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == 0) {
+                    continue;
+                }
+                int i = mix(oldKeys[j]) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+
+        private static int mix(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package de.dfki.sds.datasprout.excel;
 
-import de.dfki.sds.datasprout.Provenance;
 import de.dfki.sds.datasprout.Setup;
 import de.dfki.sds.datasprout.excel.Patterns.BooleanRendering;
 import de.dfki.sds.datasprout.excel.Patterns.DateRendering;
@@ -10,10 +9,13 @@ import de.dfki.sds.datasprout.excel.Patterns.LabelPickStrategy;
 import de.dfki.sds.datasprout.excel.Patterns.MergeCellStrategy;
 import de.dfki.sds.datasprout.excel.Patterns.NumberStringFormats;
 import de.dfki.sds.datasprout.excel.Patterns.NumericRendering;
+import de.dfki.sds.datasprout.excel.Patterns.PatternKey;
+import de.dfki.sds.datasprout.utils.HierarchicalRandom;
 import de.dfki.sds.datasprout.utils.RomanNumber;
 import de.dfki.sds.datasprout.utils.SemanticUtility;
 import de.dfki.sds.hephaistos.storage.excel.ExcelCell;
 import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import de.dfki.sds.rdf2rdb.SubjectIndex;
 import java.awt.Color;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -25,12 +27,15 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import org.apache.jena.datatypes.BaseDatatype.TypedValue;
@@ -63,18 +68,76 @@ public class TableGenerator {
         dataTypeMap = new HashMap<>();
     }
 
+    //tables are generated in parallel if options.getTableParallelism() > 1 or options has a table executor
+    //the result is the same as the sequential one: each setup has its own random and
+    //each table its own ids which are moved to a unique range in the order of the setups
     public List<ExcelTable> generateList(List<Setup> setups, IdCounter idCounter, ExcelSproutOptions options) {
         List<ExcelTable> result = new ArrayList<>();
-        for (Setup setup : setups) {
-            result.add(generate(setup, setup.getOrThrow(Setup.RDFS_ANALYZER, RdfsAnalyzer.class), idCounter, options));
+        
+        ExecutorService executor = options.getTableExecutor();
+        boolean ownExecutor = false;
+        if (executor == null && options.getTableParallelism() > 1 && setups.size() > 1) {
+            executor = Executors.newFixedThreadPool(Math.min(options.getTableParallelism(), setups.size()));
+            ownExecutor = true;
+        }
+        
+        if (executor == null) {
+            for (Setup setup : setups) {
+                result.add(recordedTable(setup, setup.getOrThrow(Setup.RDFS_ANALYZER, RdfsAnalyzer.class), options));
+            }
+        } else {
+            try {
+                List<Future<ExcelTable>> futures = new ArrayList<>();
+                for (Setup setup : setups) {
+                    futures.add(executor.submit(() -> recordedTable(setup, setup.getOrThrow(Setup.RDFS_ANALYZER, RdfsAnalyzer.class), options)));
+                }
+                for (Future<ExcelTable> future : futures) {
+                    result.add(future.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new RuntimeException(ex.getCause());
+            } finally {
+                if (ownExecutor) {
+                    executor.shutdownNow();
+                }
+            }
+        }
+        
+        //unique ids in the order of the setups
+        for (ExcelTable table : result) {
+            table.shiftCellIds(idCounter.getAndAdd(table.getCellIdCount()));
         }
+        
         return result;
     }
 
     //based on the settings in the setup and the model we create a excel table
     public ExcelTable generate(Setup setup, RdfsAnalyzer rdfAnalyzer, IdCounter idCounter, ExcelSproutOptions options) {
+        ExcelTable table = recordedTable(setup, rdfAnalyzer, options);
+        table.shiftCellIds(idCounter.getAndAdd(table.getCellIdCount()));
+        return table;
+    }
+    
+    //the generation of a table is a measurement of the stage "tables"
+    private ExcelTable recordedTable(Setup setup, RdfsAnalyzer rdfAnalyzer, ExcelSproutOptions options) {
+        options.getPerformanceRecorder().begin("tables");
+        try {
+            return generateTable(setup, rdfAnalyzer, options);
+        } finally {
+            options.getPerformanceRecorder().end();
+        }
+    }
+    
+    //cell ids of the table start with 0
+    private ExcelTable generateTable(Setup setup, RdfsAnalyzer rdfAnalyzer, ExcelSproutOptions options) {
         ExcelTable table = new ExcelTable();
-        table.setIdCounter(idCounter);
+        table.setIdCounter(new IdCounter());
 
         /*
         a) the setup selected classes, their instances should be rows
@@ -87,9 +150,12 @@ public class TableGenerator {
         
          */
         Model model = rdfAnalyzer.getModel();
+        //all lookups of the cells use the index
+        SubjectIndex index = rdfAnalyzer.getSubjectIndex();
         ClassConfig classConfig = setup.getOrThrow(Setup.CLASSES, ClassConfig.class);
 
-        Random rnd = setup.getSingleOrThrow("random", Random.class);
+        //used for the table, the cells get their own random (see cellRandom)
+        Random rnd = setup.getSingleOrThrow(Setup.RANDOM, Random.class);
 
         List<Resource> instances = new ArrayList<>();
         List<PropertyConfig> propertyConfigs = new ArrayList<>();
@@ -127,6 +193,10 @@ public class TableGenerator {
 
         boolean header = setup.getSingleOrThrow("header", Boolean.class);
         
+        //the setup keys are resolved once, the cells only use the plan
+        TablePlan plan = new TablePlan(setup, propertyConfigs);
+        Long seed = (Long) setup.get(Setup.SEED);
+        
         //Pattern: Multiple Types in a Table (special case: hierarchy)
         if(setup.containsKey("MultipleTypesInATable.ChildProperty")) {
             Property childProperty = setup.getOrThrow("MultipleTypesInATable.ChildProperty", Property.class);
@@ -137,7 +207,7 @@ public class TableGenerator {
             for(Resource inst : instances) {
                 tmpInstances.add(inst);
                 
-                List<Resource> children = SemanticUtility.objects(model, inst, childProperty);
+                List<Resource> children = index.resources(inst, childProperty);
                 
                 //TODO maybe order children here
                 
@@ -164,7 +234,7 @@ public class TableGenerator {
                     name = propertyConfig.getLabel();
                     
                 } else {
-                    Literal labelLit = SemanticUtility.literal(model, propertyConfig.getProperty(), RDFS.label);
+                    Literal labelLit = index.literal(propertyConfig.getProperty(), RDFS.label);
 
                     if (labelLit != null) {
                         name = labelLit.getString();
@@ -237,6 +307,8 @@ public class TableGenerator {
                 
                 int col = i;
                 
+                ColumnPlan column = plan.getColumn(i);
+                
                 //sometimes multiple properties are merged to one cell
                 //this can be configured in PropertyConfig
                 List<Property> properties = propertyConfigs.get(i).getProperties();
@@ -245,7 +317,7 @@ public class TableGenerator {
                 Map<Property, List<RDFNode>> property2objects = new HashMap<>();
                 List<RDFNode> objects = new ArrayList<>();
                 for(Property prop : properties) {
-                    List<RDFNode> nodes = SemanticUtility.rdfnodes(model, instance, prop);
+                    List<RDFNode> nodes = index.objects(instance, prop);
                     if(!nodes.isEmpty()) {
                         property2objects.put(prop, nodes);
                     }
@@ -259,7 +331,7 @@ public class TableGenerator {
                 cell.setRow(row);
                 cell.setColumn(col);
                 
-                
+                Random cellRnd = cellRandom(seed, rnd, row, col);
 
                 boolean add;
 
@@ -270,7 +342,7 @@ public class TableGenerator {
                     //means: one property => one object (simple)
                     //special case: the property config has an object, thus it is a question if this relation exists or not
                     if (objects.size() == 1 || propertyConfigs.get(i).hasObject()) {
-                        add = putObject(instance, propertyConfigs.get(i), property2objects, rdfAnalyzer, cell, table, setup);
+                        add = putObject(instance, column, property2objects, rdfAnalyzer, cell, table, plan, cellRnd);
                         
                         //pattern: Partial Formatting Indicates Relations =======
                         if(add) {
@@ -279,17 +351,11 @@ public class TableGenerator {
                             
                             //we try to find a propery that has a PartialFormattingIndicatesRelations key in setup
                             for(Entry<Property, List<RDFNode>> property2objectsEntry : property2objects.entrySet()) {
-                                String key = property2objectsEntry.getKey().getURI() + ".PartialFormattingIndicatesRelations";
-                                if(setup.containsKey(key)) {
-                                    String formatting = setup.getOrThrow(key, String.class);
-                                    
-                                    table.putUsedPattern(cell, key, formatting);
+                                TablePlan.PartialFormatting formatting = plan.getPartialFormatting(property2objectsEntry.getKey());
+                                if(formatting != null) {
+                                    table.putUsedPattern(cell, formatting.getKey(), formatting.getFormatting());
 
-                                    if(!formatting.contains("|")) {
-                                        throw new RuntimeException("put a '|' in the formatting of " + key);
-                                    }
-
-                                    openCloseTags = formatting.split("\\|");
+                                    openCloseTags = formatting.getOpenCloseTags();
                                     break;
                                 }
                             }
@@ -298,7 +364,7 @@ public class TableGenerator {
                             if(openCloseTags != null) {
                                 sb.append(openCloseTags[0]);
                                 
-                                sb.append(toString(cell, propertyConfigs.get(i), table, setup).replace("<", "&lt;").replace(">", "&gt;"));
+                                sb.append(toString(cell, column, table, plan, cellRnd).replace("<", "&lt;").replace(">", "&gt;"));
                                 
                                 sb.append(openCloseTags[1]);
                                 
@@ -313,12 +379,12 @@ public class TableGenerator {
 
                     } else {
                         //maybe multiple properties and multiple objects
-                        add = putMultipleObjects(instance, propertyConfigs.get(i), property2objects, rdfAnalyzer, cell, table, setup);
+                        add = putMultipleObjects(instance, column, property2objects, rdfAnalyzer, cell, table, plan, cellRnd);
                     }
 
                 } else {
                     //no object
-                    add = putNoObject(instance, propertyConfigs.get(i), cell, table, setup);
+                    add = putNoObject(instance, column, cell, table, plan, cellRnd);
                 }
 
                 if (add) {
@@ -338,16 +404,18 @@ public class TableGenerator {
             String bgKeySelected = null;
             Color foregroundColor = null;
             Color backgroundColor = null;
-            for(Statement stmt : SemanticUtility.iterable(model.listStatements(instance, null, (RDFNode)null))) {
-                String fgKey = stmt.getPredicate().getURI() + "." + stmt.getObject().toString() + ".ForegroundColor";
-                String bgKey = stmt.getPredicate().getURI() + "." + stmt.getObject().toString() + ".BackgroundColor";
-                if(setup.containsKey(fgKey)) {
-                    foregroundColor = setup.getOrThrow(fgKey, Color.class);
-                    fgKeySelected = fgKey;
+            for(Statement stmt : index.statements(instance)) {
+                TablePlan.PropertyValueColor color = plan.getPropertyValueColor(stmt.getPredicate(), stmt.getObject());
+                if(color == null) {
+                    continue;
+                }
+                if(color.getForegroundKey() != null) {
+                    foregroundColor = color.getForeground();
+                    fgKeySelected = color.getForegroundKey();
                 }
-                if(setup.containsKey(bgKey)) {
-                    backgroundColor = setup.getOrThrow(bgKey, Color.class);
-                    bgKeySelected = bgKey;
+                if(color.getBackgroundKey() != null) {
+                    backgroundColor = color.getBackground();
+                    bgKeySelected = color.getBackgroundKey();
                 }
             }
 
@@ -364,6 +432,7 @@ public class TableGenerator {
                     //thus, you can attach the color
                     if(cell == null) {
                         cell = new ExcelCell();
+                        cell.setId(table.getAndIncCellId());
                         cell.setCellType("string");
                         cell.setValueString("");
                         //for provenance
@@ -392,8 +461,19 @@ public class TableGenerator {
         return table;
     }
 
-    private boolean putObject(Resource s, PropertyConfig pConfig, Map<Property, List<RDFNode>> property2objects, RdfsAnalyzer rdfAnalyzer, ExcelCell cell, ExcelTable table, Setup setup) {
-        Model model = rdfAnalyzer.getModel();
+    //with a seed in the setup every cell gets its own random derived from (seed, row, column),
+    //thus a cell is independent of the cells generated before
+    //without a seed (e.g. a manually created setup) the random of the table is used
+    private Random cellRandom(Long seed, Random tableRnd, int row, int col) {
+        if (seed == null) {
+            return tableRnd;
+        }
+        return new HierarchicalRandom(HierarchicalRandom.derive(seed, row, col));
+    }
+
+    private boolean putObject(Resource s, ColumnPlan column, Map<Property, List<RDFNode>> property2objects, RdfsAnalyzer rdfAnalyzer, ExcelCell cell, ExcelTable table, TablePlan plan, Random rnd) {
+        SubjectIndex index = rdfAnalyzer.getSubjectIndex();
+        PropertyConfig pConfig = column.getPropertyConfig();
         
         Property p;
         RDFNode object;
@@ -459,13 +539,10 @@ public class TableGenerator {
                 table.addStatement(cell, s, p, object);
                 
                 //we add the type information for label properties
-                List labelProperties = (List) setup.get(Setup.LABEL_PROPERTIES);
-                if(labelProperties != null) {
-                    if(labelProperties.contains(p)) {
-                        List<Resource> types = SemanticUtility.objects(model, s, RDF.type);
-                        for(Resource type : types) {
-                            table.addStatement(cell, s, RDF.type, type);
-                        }
+                if(plan.isLabelProperty(p)) {
+                    List<Resource> types = index.resources(s, RDF.type);
+                    for(Resource type : types) {
+                        table.addStatement(cell, s, RDF.type, type);
                     }
                 }
                 
@@ -473,7 +550,7 @@ public class TableGenerator {
 
             } else if (value instanceof Number) {
 
-                NumericRendering rend = selectPattern("NumericRendering", NumericRendering.class, pConfig, setup, cell, table);
+                NumericRendering rend = selectPattern(PatternKey.NumericRendering, NumericRendering.class, column, cell, table, rnd);
 
                 Number number = (Number) value;
 
@@ -483,13 +560,13 @@ public class TableGenerator {
                         cell.setValueNumeric(number.doubleValue());
                         cell.setCellType("numeric");
 
-                        String format = selectPattern("NumericNativeDataFormats", String.class, pConfig, setup, cell, table);
+                        String format = selectPattern(PatternKey.NumericNativeDataFormats, String.class, column, cell, table, rnd);
                         cell.setDataFormat(format);
                         break;
 
                     //as a string
                     case String:
-                        String str = numberToString(number, pConfig, setup, cell, table);
+                        String str = numberToString(number, column, plan, cell, table, rnd);
 
                         cell.setValueString(str);
                         cell.setCellType("string");
@@ -502,7 +579,7 @@ public class TableGenerator {
             } else if (value instanceof Boolean || datatype.equals(XSD.xboolean.getURI())) {
 
                 //check what patterns are possible and select one
-                BooleanRendering boolRender = selectPattern("BooleanRendering", BooleanRendering.class, pConfig, setup, cell, table);
+                BooleanRendering boolRender = selectPattern(PatternKey.BooleanRendering, BooleanRendering.class, column, cell, table, rnd);
 
                 switch (boolRender) {
 
@@ -511,12 +588,12 @@ public class TableGenerator {
                         cell.setValueBoolean((boolean) value);
                         cell.setCellType("boolean");
 
-                        String format = selectPattern("BooleanNativeDataFormats", String.class, pConfig, setup, cell, table);
+                        String format = selectPattern(PatternKey.BooleanNativeDataFormats, String.class, column, cell, table, rnd);
                         cell.setDataFormat(format);
                         break;
 
                     case Symbol:
-                        String symbol = booleanToString((boolean) value, pConfig, setup, cell, table);
+                        String symbol = booleanToString((boolean) value, column, plan, cell, table, rnd);
 
                         cell.setCellType("string");
                         cell.setValueString(symbol);
@@ -526,9 +603,9 @@ public class TableGenerator {
                         //select a number
                         double number;
                         if ((boolean) value) {
-                            number = selectPattern("BooleanTrueNumbers", Double.class, pConfig, setup, cell, table);
+                            number = selectPattern(PatternKey.BooleanTrueNumbers, Double.class, column, cell, table, rnd);
                         } else {
-                            number = selectPattern("BooleanFalseNumbers", Double.class, pConfig, setup, cell, table);
+                            number = selectPattern(PatternKey.BooleanFalseNumbers, Double.class, column, cell, table, rnd);
                         }
                         cell.setCellType("numeric");
                         cell.setValueNumeric(number);
@@ -549,7 +626,7 @@ public class TableGenerator {
                 XSDDateTime dateTime = (XSDDateTime) value;
 
                 if(datatype.equals(XSD.date.getURI())) {
-                    DateRendering dateRendering = selectPattern("DateRendering", DateRendering.class, pConfig, setup, cell, table);
+                    DateRendering dateRendering = selectPattern(PatternKey.DateRendering, DateRendering.class, column, cell, table, rnd);
                     
                     switch (dateRendering) {
                         case Numeric: {
@@ -560,7 +637,7 @@ public class TableGenerator {
                             cell.setCellType("numeric");
                             cell.setValueNumeric(dateValue);
 
-                            String format = selectPattern("DateDataFormats", String.class, pConfig, setup, cell, table);
+                            String format = selectPattern(PatternKey.DateDataFormats, String.class, column, cell, table, rnd);
                             cell.setDataFormat(format);
                             break;
                         }
@@ -570,7 +647,7 @@ public class TableGenerator {
                                     dateTime.getMonths(),
                                     dateTime.getDays()
                             );
-                            String format = selectPattern("DateStringFormats", String.class, pConfig, setup, cell, table);
+                            String format = selectPattern(PatternKey.DateStringFormats, String.class, column, cell, table, rnd);
                             DateTimeFormatter dtf = DateTimeFormatter.ofPattern(format);
                             String date = ldt.format(dtf);
                             cell.setCellType("string");
@@ -580,7 +657,7 @@ public class TableGenerator {
                     }
                     
                 } else if(datatype.equals(XSD.dateTime.getURI())) {
-                    DateTimeRendering dateTimeRendering = selectPattern("DateTimeRendering", DateTimeRendering.class, pConfig, setup, cell, table);
+                    DateTimeRendering dateTimeRendering = selectPattern(PatternKey.DateTimeRendering, DateTimeRendering.class, column, cell, table, rnd);
                     
                     switch (dateTimeRendering) {
                         case Numeric: {
@@ -592,7 +669,7 @@ public class TableGenerator {
                             cell.setCellType("numeric");
                             cell.setValueNumeric(dateValue + timeValue);
 
-                            String format = selectPattern("DateTimeDataFormats", String.class, pConfig, setup, cell, table);
+                            String format = selectPattern(PatternKey.DateTimeDataFormats, String.class, column, cell, table, rnd);
                             cell.setDataFormat(format);
                             break;
                         }
@@ -605,7 +682,7 @@ public class TableGenerator {
                                     dateTime.getMinutes(),
                                     dateTime.getFullSeconds()
                             );
-                            String format = selectPattern("DateTimeStringFormats", String.class, pConfig, setup, cell, table);
+                            String format = selectPattern(PatternKey.DateTimeStringFormats, String.class, column, cell, table, rnd);
                             DateTimeFormatter dtf = DateTimeFormatter.ofPattern(format);
                             String date = ldt.format(dtf);
                             cell.setCellType("string");
@@ -626,7 +703,7 @@ public class TableGenerator {
             //how to refer to it
             Resource res = object.asResource();
 
-            objectIsResource(res, pConfig, model, setup, cell, table, s, p, object);
+            objectIsResource(res, column, index, plan, cell, table, s, p, object, rnd);
             
             return true;
         }
@@ -634,8 +711,8 @@ public class TableGenerator {
         return false;
     }
 
-    private void objectIsResource(Resource res, PropertyConfig pConfig, Model model, Setup setup, ExcelCell cell, ExcelTable table, Resource s, Property p, RDFNode object) {
-        List<Resource> types = SemanticUtility.objects(model, res, RDF.type);
+    private void objectIsResource(Resource res, ColumnPlan column, SubjectIndex index, TablePlan plan, ExcelCell cell, ExcelTable table, Resource s, Property p, RDFNode object, Random rnd) {
+        List<Resource> types = index.resources(res, RDF.type);
 
         //also type provenance
         for(Resource type : types) {
@@ -644,16 +721,16 @@ public class TableGenerator {
         
         //type based property selection
         for(Resource type : types) {
-            String key = type.getURI() + "." + Setup.LABEL_PROPERTIES;
-            if(setup.containsKey(key)) {
+            Setup.Choice choice = plan.getTypeLabelProperties(type);
+            if(choice != null) {
                 
-                List<Property> propertyList = (List<Property>) setup.getByDistribution(key);
+                List<Property> propertyList = (List<Property>) choice.sample(rnd);
                 
                 StringJoiner sj = new StringJoiner(" ");
                 
                 for(Property labelProp : propertyList) {
                     
-                    RDFNode label = SemanticUtility.rdfnode(model, res, labelProp);
+                    RDFNode label = index.object(res, labelProp);
                     
                     if(label != null) {
                         sj.add(label.asLiteral().getLexicalForm());
@@ -672,7 +749,7 @@ public class TableGenerator {
                 }
                 
                 //provenance
-                table.putUsedPattern(cell, key, array);
+                table.putUsedPattern(cell, choice.getKey(), array);
                 table.addStatement(cell, s, p, object);
                 
                 //return so that the below code is not executed
@@ -684,18 +761,18 @@ public class TableGenerator {
         
         //use label literal if possible to refer to it
         //what label do we use to refer to the resource
-        int labelPropertyIterMax = (int) setup.getOrDefault("LabelPropertyIterMax", 100);
+        int labelPropertyIterMax = plan.getLabelPropertyIterMax();
         int labelPropertyIter = 0;
         Property labelProperty;
         do {
             //we select one
-            labelProperty = selectPattern(Setup.LABEL_PROPERTIES, Property.class, pConfig, setup, cell, table);
+            labelProperty = selectPattern(PatternKey.LabelProperties, Property.class, column, cell, table, rnd);
 
             //a safety net: we stop after max iterations
             labelPropertyIter++;
 
             //loop until we find a labelProperty that has this object
-        } while (!model.contains(res, labelProperty, (RDFNode) null) && labelPropertyIter < labelPropertyIterMax);
+        } while (!index.contains(res, labelProperty) && labelPropertyIter < labelPropertyIterMax);
 
         //the possible labels
         List<Literal> labels = new ArrayList<>();
@@ -720,17 +797,13 @@ public class TableGenerator {
             
         } else {
             //collect all the labels using the label property
-            for (Statement stmt : SemanticUtility.iterable(model.listStatements(res, labelProperty, (RDFNode) null))) {
-                if (stmt.getObject().isLiteral()) {
-                    labels.add(stmt.getLiteral());
-                }
-            }
+            labels.addAll(index.literals(res, labelProperty));
         }
 
         Literal label;
         if (labels.size() > 1) {
             //there could be many, so pick one with a strategy
-            LabelPickStrategy labelPickStrategy = selectPattern("LabelPickStrategy", LabelPickStrategy.class, pConfig, setup, cell, table);
+            LabelPickStrategy labelPickStrategy = selectPattern(PatternKey.LabelPickStrategy, LabelPickStrategy.class, column, cell, table, rnd);
 
             switch (labelPickStrategy) {
                 case Alphabetical:
@@ -781,7 +854,9 @@ public class TableGenerator {
         }
     }
 
-    private boolean putMultipleObjects(Resource s, PropertyConfig pConfig, Map<Property, List<RDFNode>> property2objects, RdfsAnalyzer rdfAnalyzer, ExcelCell mergedCell, ExcelTable table, Setup setup) {
+    private boolean putMultipleObjects(Resource s, ColumnPlan column, Map<Property, List<RDFNode>> property2objects, RdfsAnalyzer rdfAnalyzer, ExcelCell mergedCell, ExcelTable table, TablePlan plan, Random rnd) {
+        PropertyConfig pConfig = column.getPropertyConfig();
+
         //multiple objects
         //different ways to write multiple objects in one cell
 
@@ -804,7 +879,7 @@ public class TableGenerator {
                     Map<Property, List<RDFNode>> tmpProperty2objects = new HashMap<>();
                     tmpProperty2objects.put(prop, Arrays.asList(object));
                     
-                    putObject(s, new PropertyConfig(prop), tmpProperty2objects, rdfAnalyzer, tmpCell, table, setup);
+                    putObject(s, column.forProperty(prop), tmpProperty2objects, rdfAnalyzer, tmpCell, table, plan, rnd);
                     
                     cells.add(tmpCell);
                     
@@ -858,7 +933,7 @@ public class TableGenerator {
             /*
             for (int i = 0; i < cells.size(); i++) {
                 boolean objectDuplicate = false;
-                for (Statement stmt : table.getCellProvMap().get(cells.get(i)).getStatements()) {
+                for (Statement stmt : table.getProvenance(cells.get(i)).getStatements()) {
                     //we use the subject of the cells provenance
                     if(objectSet.contains(stmt.getSubject())) {
                         objectDuplicate = true;
@@ -882,7 +957,7 @@ public class TableGenerator {
             tmpCells = cells;
         }
         
-        Collections.shuffle(tmpCells, setup.getOrThrow(Setup.RANDOM, Random.class));
+        Collections.shuffle(tmpCells, rnd);
         
         //a merged cell will always be a string cell
         //because in a string we can represent every information
@@ -893,17 +968,17 @@ public class TableGenerator {
         //for native numeric, boolean we need a string representation of it
         //use toString(cell, ...) for this
         //what merge strategy do we follow
-        MergeCellStrategy mergeStrategy = selectPattern("MergeCellStrategy", MergeCellStrategy.class, pConfig, setup, mergedCell, table);
+        MergeCellStrategy mergeStrategy = selectPattern(PatternKey.MergeCellStrategy, MergeCellStrategy.class, column, mergedCell, table, rnd);
         
         boolean richTextIsUsed = false;
         
         switch (mergeStrategy) {
             case Delimiter:
-                String delimiter = selectPattern("MergeCellDelimiters", String.class, pConfig, setup, mergedCell, table);
+                String delimiter = selectPattern(PatternKey.MergeCellDelimiters, String.class, column, mergedCell, table, rnd);
                 for (int i = 0; i < tmpCells.size(); i++) {
                     
                     //this str can be rich text
-                    String str = toString(tmpCells.get(i), pConfig, table, setup);
+                    String str = toString(tmpCells.get(i), column, table, plan, rnd);
                     //then use the right merge type if rich text is used in at least one tmpCell
                     richTextIsUsed |= tmpCells.get(i).getCellType().equals("string") && tmpCells.get(i).getValueRichText() != null;
                     
@@ -927,17 +1002,11 @@ public class TableGenerator {
 
                             for(Property p : plist) {
 
-                                String key = p.getURI() + ".PartialFormattingIndicatesRelations";
-                                if(setup.containsKey(key)) {
-                                    String formatting = setup.getOrThrow(key, String.class);
-                                    
-                                    table.putUsedPattern(mergedCell, key, formatting);
+                                TablePlan.PartialFormatting formatting = plan.getPartialFormatting(p);
+                                if(formatting != null) {
+                                    table.putUsedPattern(mergedCell, formatting.getKey(), formatting.getFormatting());
 
-                                    if(!formatting.contains("|")) {
-                                        throw new RuntimeException("put a '|' in the formatting of " + key);
-                                    }
-
-                                    openCloseTags = formatting.split("\\|");
+                                    openCloseTags = formatting.getOpenCloseTags();
                                     break;
                                 }
                             }
@@ -993,36 +1062,28 @@ public class TableGenerator {
         //use the provenance of the single cells
         //use cells variable here to have them all (not touched by isDistinctObjects)
         for (ExcelCell cell : cells) {
-            Provenance prov = table.getCellProvMap().get(cell);
-            
-            for (Statement stmt : prov.getStatements()) {
-                table.addStatement(mergedCell, stmt.getSubject(), stmt.getPredicate(), stmt.getObject());
-            }
-            
-            for(Entry<String, Object> usedPattern : prov.getUsedPatterns().entrySet()) {
-                table.putUsedPattern(mergedCell, usedPattern.getKey(), usedPattern.getValue());
-            }
+            table.copyProvenance(cell, mergedCell);
         }
 
         return true;
     }
 
-    private String toString(ExcelCell cell, PropertyConfig pConfig, ExcelTable table, Setup setup) {
+    private String toString(ExcelCell cell, ColumnPlan column, ExcelTable table, TablePlan plan, Random rnd) {
         if (cell.getCellType().equals("string")) {
             if(cell.getValueRichText() != null) {
                 return cell.getValueRichText();
             }
             return cell.getValueString();
         } else if (cell.getCellType().equals("numeric")) {
-            return numberToString(cell.getValueNumeric(), pConfig, setup, cell, table);
+            return numberToString(cell.getValueNumeric(), column, plan, cell, table, rnd);
         } else if (cell.getCellType().equals("boolean")) {
-            return booleanToString(cell.getValueBoolean(), pConfig, setup, cell, table);
+            return booleanToString(cell.getValueBoolean(), column, plan, cell, table, rnd);
         } else {
             throw new RuntimeException("no toString implemented for " + cell.getCellType());
         }
     }
     
-    private String numberToString(Number number, PropertyConfig pConfig, Setup setup, ExcelCell cell, ExcelTable table) {
+    private String numberToString(Number number, ColumnPlan column, TablePlan plan, ExcelCell cell, ExcelTable table, Random rnd) {
         
         //if there is a data format attached to it, use this
         if(cell.getDataFormat() != null) {
@@ -1031,7 +1092,7 @@ public class TableGenerator {
             return formatted;
         }
         
-        NumberStringFormats nrFormat = selectPattern("NumberStringFormats", NumberStringFormats.class, pConfig, setup, cell, table);
+        NumberStringFormats nrFormat = selectPattern(PatternKey.NumberStringFormats, NumberStringFormats.class, column, cell, table, rnd);
         
         String str = null;
         switch (nrFormat) {
@@ -1042,7 +1103,7 @@ public class TableGenerator {
                     str = String.valueOf(number);
                 } else {
                     str = String.format(
-                            (Locale) setup.getOrDefault("locale", Locale.ENGLISH), 
+                            plan.getLocale(), 
                             "%s",
                             number.doubleValue()
                     );
@@ -1057,7 +1118,7 @@ public class TableGenerator {
         return str;
     }
     
-    private String booleanToString(boolean value, PropertyConfig pConfig, Setup setup, ExcelCell cell, ExcelTable table) {
+    private String booleanToString(boolean value, ColumnPlan column, TablePlan plan, ExcelCell cell, ExcelTable table, Random rnd) {
         //if there is a data format attached to it, use this
         if(cell.getDataFormat() != null) {
             DataFormatter dataFormatter = new DataFormatter();
@@ -1068,17 +1129,17 @@ public class TableGenerator {
         //select a symbol
         String symbol;
         if (value) {
-            symbol = (String) selectPattern("BooleanTrueSymbols", String.class, pConfig, setup, cell, table);
+            symbol = (String) selectPattern(PatternKey.BooleanTrueSymbols, String.class, column, cell, table, rnd);
         } else {
-            symbol = (String) selectPattern("BooleanFalseSymbols", String.class, pConfig, setup, cell, table);
+            symbol = (String) selectPattern(PatternKey.BooleanFalseSymbols, String.class, column, cell, table, rnd);
         }
         return symbol;
     }
 
-    private boolean putNoObject(Resource s, PropertyConfig pConfig, ExcelCell cell, ExcelTable table, Setup setup) {
+    private boolean putNoObject(Resource s, ColumnPlan column, ExcelCell cell, ExcelTable table, TablePlan plan, Random rnd) {
         
         //an empty cell could be expressed in different ways
-        EmptyCellRendering emptyCellRendering = selectPattern("EmptyCellRendering", EmptyCellRendering.class, pConfig, setup, cell, table);
+        EmptyCellRendering emptyCellRendering = selectPattern(PatternKey.EmptyCellRendering, EmptyCellRendering.class, column, cell, table, rnd);
 
         //we do not need to save a provenance because there is no statement that is meant here
         //it is just empty and does not have any valuable knowledge for us
@@ -1095,9 +1156,8 @@ public class TableGenerator {
 
             case BlankString:
                 //a blank string that indicates emptiness
-                List<String> wss = selectPattern("BlankStringWhitespaces", List.class, pConfig, setup, cell, table);
-                int len = selectPattern("BlankStringLengths", Integer.class, pConfig, setup, cell, table);
-                Random rnd = setup.getSingleOrThrow("random", Random.class);
+                List<String> wss = selectPattern(PatternKey.BlankStringWhitespaces, List.class, column, cell, table, rnd);
+                int len = selectPattern(PatternKey.BlankStringLengths, Integer.class, column, cell, table, rnd);
                 StringBuilder sb = new StringBuilder();
                 for (int i = 0; i < len; i++) {
                     sb.append(wss.get(rnd.nextInt(wss.size())));
@@ -1114,14 +1174,14 @@ public class TableGenerator {
 
             case Symbol:
                 //a symbol that indicates emptiness
-                String symbol = selectPattern("EmptyCellSymbols", String.class, pConfig, setup, cell, table);
+                String symbol = selectPattern(PatternKey.EmptyCellSymbols, String.class, column, cell, table, rnd);
                 cell.setCellType("string");
                 cell.setValueString(symbol);
                 return true;
 
             case Numeric:
                 //a number that indicates emptiness
-                double number = selectPattern("EmptyCellNumbers", Double.class, pConfig, setup, cell, table);
+                double number = selectPattern(PatternKey.EmptyCellNumbers, Double.class, column, cell, table, rnd);
                 cell.setCellType("numeric");
                 cell.setValueNumeric(number);
                 return true;
@@ -1139,34 +1199,17 @@ public class TableGenerator {
 
     //select a pattern from a possible list
     //if it is a list, try to distibute the values uniformly
-    //use Property p to check if there is a special <p>.<pattern> setup for it
-    private <T> T selectPattern(String patternName, Class<T> type, PropertyConfig pConfig, Setup setup, ExcelCell cell, ExcelTable table) {
+    //the column plan already resolved if there is a special <p>.<pattern> setup for it
+    private <T> T selectPattern(PatternKey pattern, Class<T> type, ColumnPlan column, ExcelCell cell, ExcelTable table, Random rnd) {
         
-        //prefer that there could be a special pattern to propery association
-        String patternKey = patternName;
-        if(pConfig != null) {
-            //try to use the property uri to find a specific pattern configuration
-            if(!pConfig.isMulti()) {
-                if(setup.containsKey(pConfig.getProperty().getURI() + "." + patternName)) {
-                    patternKey = pConfig.getProperty().getURI() + "." + patternName;
-                }
-            }
-            //use this to create a temp uri that can be used for example if you have multiple properties in the
-            //property config. this why you can refer to it with one uri.
-            if(pConfig.hasUri()) {
-                if(setup.containsKey(pConfig.getUri() + "." + patternName)) {
-                    patternKey = pConfig.getUri() + "." + patternName;
-                }
-            }
-        }
-
-        T obj = (T) setup.getByDistribution(patternKey);
+        Setup.Choice choice = column.getChoice(pattern);
+        T obj = (T) choice.sample(rnd);
         
         if(obj == null) {
-            throw new RuntimeException("no configuration for pattern key " + patternKey);
+            throw new RuntimeException("no configuration for pattern key " + choice.getKey());
         }
 
-        table.putUsedPattern(cell, patternName, obj);
+        table.putUsedPattern(cell, pattern.name(), obj);
         return obj;
             
             
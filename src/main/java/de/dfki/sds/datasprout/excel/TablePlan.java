@@ -0,0 +1,223 @@
+package de.dfki.sds.datasprout.excel;
+
+import de.dfki.sds.datasprout.Setup;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * A setup compiled for the generation of one table.
+ * The keys which were looked up (and concatenated) per cell are resolved once:
+ * a column plan per property config, the partial formattings per property,
+ * the label properties per type and the property value colors per predicate.
+ * A plan is used by one thread only.
+ */
+public class TablePlan {
+
+    private static final String PARTIAL_FORMATTING = ".PartialFormattingIndicatesRelations";
+    private static final String FOREGROUND_COLOR = ".ForegroundColor";
+    private static final String BACKGROUND_COLOR = ".BackgroundColor";
+
+    private Setup setup;
+
+    private ColumnPlan[] columns;
+
+    //null if the setup has no LabelProperties
+    private Set<Property> labelProperties;
+    private int labelPropertyIterMax;
+    private Locale locale;
+
+    //<type-uri>.LabelProperties
+    private Map<String, Setup.Choice> typeLabelProperties;
+
+    //<property-uri>.PartialFormattingIndicatesRelations
+    private Map<String, PartialFormatting> partialFormattings;
+
+    //<property-uri>.<object>.ForegroundColor and .BackgroundColor keys, grouped per predicate when needed
+    private List<String> colorKeys;
+    private Map<Property, Map<String, PropertyValueColor>> predicate2colors;
+
+    public TablePlan(Setup setup, List<PropertyConfig> propertyConfigs) {
+        this.setup = setup;
+
+        columns = new ColumnPlan[propertyConfigs.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new ColumnPlan(setup, propertyConfigs.get(i));
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Property> list = (List<Property>) setup.get(Setup.LABEL_PROPERTIES);
+        if (list != null) {
+            labelProperties = new HashSet<>(list);
+        }
+        labelPropertyIterMax = (int) setup.getOrDefault("LabelPropertyIterMax", 100);
+        locale = (Locale) setup.getOrDefault("locale", Locale.ENGLISH);
+
+        typeLabelProperties = new HashMap<>();
+        partialFormattings = new HashMap<>();
+        colorKeys = new ArrayList<>();
+        predicate2colors = new HashMap<>();
+
+        String labelPropertiesSuffix = "." + Setup.LABEL_PROPERTIES;
+        for (Entry<String, Object> e : setup.entrySet()) {
+            String key = e.getKey();
+            if (key.endsWith(labelPropertiesSuffix)) {
+                typeLabelProperties.put(prefix(key, labelPropertiesSuffix), setup.getChoice(key));
+
+            } else if (key.endsWith(PARTIAL_FORMATTING)) {
+                partialFormattings.put(prefix(key, PARTIAL_FORMATTING), new PartialFormatting(key, (String) e.getValue()));
+
+            } else if (key.endsWith(FOREGROUND_COLOR) || key.endsWith(BACKGROUND_COLOR)) {
+                colorKeys.add(key);
+            }
+        }
+    }
+
+    private static String prefix(String key, String suffix) {
+        return key.substring(0, key.length() - suffix.length());
+    }
+
+    public ColumnPlan getColumn(int i) {
+        return columns[i];
+    }
+
+    public boolean isLabelProperty(Property p) {
+        return labelProperties != null && labelProperties.contains(p);
+    }
+
+    public int getLabelPropertyIterMax() {
+        return labelPropertyIterMax;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * The choice of the &lt;type-uri&gt;.LabelProperties key.
+     * @param type
+     * @return null if the setup has no such key
+     */
+    public Setup.Choice getTypeLabelProperties(Resource type) {
+        return typeLabelProperties.get(type.getURI());
+    }
+
+    /**
+     * The &lt;property-uri&gt;.PartialFormattingIndicatesRelations formatting.
+     * @param property
+     * @return null if the setup has no such key
+     */
+    public PartialFormatting getPartialFormatting(Property property) {
+        return partialFormattings.get(property.getURI());
+    }
+
+    /**
+     * The colors of &lt;property-uri&gt;.&lt;object&gt;.ForegroundColor
+     * and .BackgroundColor.
+     * @param predicate
+     * @param object
+     * @return null if the setup has no color for it
+     */
+    public PropertyValueColor getPropertyValueColor(Property predicate, RDFNode object) {
+        if (colorKeys.isEmpty()) {
+            return null;
+        }
+        Map<String, PropertyValueColor> colors = predicate2colors.computeIfAbsent(predicate, this::colors);
+        if (colors.isEmpty()) {
+            return null;
+        }
+        return colors.get(object.toString());
+    }
+
+    //object (as string) to colors of the predicate
+    private Map<String, PropertyValueColor> colors(Property predicate) {
+        Map<String, PropertyValueColor> colors = new HashMap<>();
+        String predicatePrefix = predicate.getURI() + ".";
+        for (String key : colorKeys) {
+            if (!key.startsWith(predicatePrefix)) {
+                continue;
+            }
+            boolean foreground = key.endsWith(FOREGROUND_COLOR);
+            String object = key.substring(predicatePrefix.length(), key.length() - (foreground ? FOREGROUND_COLOR : BACKGROUND_COLOR).length());
+            PropertyValueColor color = colors.computeIfAbsent(object, o -> new PropertyValueColor());
+            if (foreground) {
+                color.foregroundKey = key;
+                color.foreground = (Color) setup.get(key);
+            } else {
+                color.backgroundKey = key;
+                color.background = (Color) setup.get(key);
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Open and close tags of the pattern Partial Formatting Indicates Relations.
+     */
+    public static class PartialFormatting {
+
+        private String key;
+        private String formatting;
+        //null if the formatting has no '|'
+        private String[] openCloseTags;
+
+        private PartialFormatting(String key, String formatting) {
+            this.key = key;
+            this.formatting = formatting;
+            if (formatting.contains("|")) {
+                openCloseTags = formatting.split("\\|");
+            }
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getFormatting() {
+            return formatting;
+        }
+
+        public String[] getOpenCloseTags() {
+            if (openCloseTags == null) {
+                throw new RuntimeException("put a '|' in the formatting of " + key);
+            }
+            return openCloseTags;
+        }
+    }
+
+    /**
+     * Font and background color of the pattern Property Value as Color.
+     */
+    public static class PropertyValueColor {
+
+        private String foregroundKey;
+        private Color foreground;
+        private String backgroundKey;
+        private Color background;
+
+        public String getForegroundKey() {
+            return foregroundKey;
+        }
+
+        public Color getForeground() {
+            return foreground;
+        }
+
+        public String getBackgroundKey() {
+            return backgroundKey;
+        }
+
+        public Color getBackground() {
+            return background;
+        }
+    }
+}
@@ -8,7 +8,8 @@ import de.dfki.sds.datasprout.excelgen.ExcelGeneratorSheetConfig;
 import de.dfki.sds.datasprout.excelgen.ExcelGeneratorTableConfig;
 import de.dfki.sds.datasprout.excelgen.ExcelGeneratorWorkbookConfig;
 import de.dfki.sds.datasprout.utils.JsonUtility;
-import de.dfki.sds.datasprout.utils.SemanticUtility;
+import de.dfki.sds.datasprout.utils.PerformanceRecorder;
+import de.dfki.sds.datasprout.utils.StatementFormatter;
 import de.dfki.sds.datasprout.vocab.CSVW;
 import de.dfki.sds.datasprout.vocab.PROV;
 import de.dfki.sds.datasprout.vocab.SS;
@@ -29,6 +30,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.zip.GZIPOutputStream;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
@@ -47,6 +53,13 @@ import org.json.JSONObject;
  */
 public class WorkbookCreator {
 
+    //rough heap usage of a drawn plain cell (XSSF cell, style reference, provenance output)
+    private static final long BYTES_PER_CELL = 1024;
+    //a font created for a rich text style or a font color costs about 3 plain cells
+    private static final int FONT_CELLS = 3;
+    //a provenance comment (comment, anchor, shape in the drawing) costs about 6 plain cells
+    private static final int COMMENT_CELLS = 6;
+
     //creates per workbook a folder and puts there
     //the workbook (as messy data container)
     //expected.ttl (expected triples to extract from the workbook)
@@ -77,235 +90,420 @@ public class WorkbookCreator {
 
         int maxDigits = String.valueOf(workbookSheetTables.size() - 1).length();
 
+        int parallelism = Math.min(options.getWorkbookParallelism(), workbookSheetTables.size());
+        if (parallelism <= 1) {
+            for (int i = 0; i < workbookSheetTables.size(); i++) {
+                File workbookFolder = createWorkbook(dstFolder, i, workbookSheetTables, maxDigits, options, options.getGenerationSummary());
+
+                //e.g. to stream the workbook folder while the next one is generated
+                if (options.getWorkbookListener() != null) {
+                    options.getWorkbookListener().accept(workbookFolder);
+                }
+            }
+            return;
+        }
+
+        //the workbooks are independent now, so they are created in parallel
+        //every workbook gets its own copy of the summary, the listener is called in workbook order
+        //a workbook needs memory for its cells, fonts and comments until it is saved,
+        //the limiter allows only a certain number of (weighted) cells at the same time
+        int cellLimit = getWorkbookCellLimit(options);
+        int[] cellCosts = new int[workbookSheetTables.size()];
+        int maxCellCost = 1;
+        for (int i = 0; i < cellCosts.length; i++) {
+            cellCosts[i] = Math.max(1, Math.min(cellLimit, getCellCost(workbookSheetTables.get(i), options)));
+            maxCellCost = Math.max(maxCellCost, cellCosts[i]);
+        }
+        //as a fallback, not more workbooks than the largest one fits in the limit
+        parallelism = Math.max(1, Math.min(parallelism, cellLimit / maxCellCost));
+        Semaphore limiter = new Semaphore(cellLimit);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        List<JSONObject> summaries = new ArrayList<>();
+        try {
+            List<Future<File>> futures = new ArrayList<>();
+            for (int i = 0; i < workbookSheetTables.size(); i++) {
+                int workbookIndex = i;
+                int permits = cellCosts[i];
+                JSONObject summary = JsonUtility.copy(options.getGenerationSummary());
+                summaries.add(summary);
+
+                futures.add(executor.submit(() -> {
+                    limiter.acquire(permits);
+                    try {
+                        return createWorkbook(dstFolder, workbookIndex, workbookSheetTables, maxDigits, options, summary);
+                    } finally {
+                        limiter.release(permits);
+                    }
+                }));
+            }
+
+            for (Future<File> future : futures) {
+                File workbookFolder = future.get();
+                if (options.getWorkbookListener() != null) {
+                    options.getWorkbookListener().accept(workbookFolder);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //like the sequential case: the summary has the pattern usage of the last workbook
+        JSONObject last = summaries.get(summaries.size() - 1);
+        if (last.has("patternUsagePerSheet")) {
+            options.getGenerationSummary().put("patternUsagePerSheet", last.get("patternUsagePerSheet"));
+        }
+    }
+
+    //creates the workbook with index i and its provenance files in its folder
+    private File createWorkbook(File dstFolder, int i, List<List<List<ExcelTable>>> workbookSheetTables, int maxDigits, ExcelSproutOptions options, JSONObject generationSummary) {
         Map<List<ExcelTable>, ExcelGeneratorSheetConfig> sheetConfigMap = new HashMap<>();
 
-        //now we use the ExcelGenerator to generate the workbooks
         ExcelGenerator excelGenerator = new ExcelGenerator();
-        for (int i = 0; i < workbookSheetTables.size(); i++) {
 
-            List<List<ExcelTable>> sheets = workbookSheetTables.get(i);
+        List<List<ExcelTable>> sheets = workbookSheetTables.get(i);
 
-            //create a config for this workbook
-            ExcelGeneratorWorkbookConfig workbookConf = new ExcelGeneratorWorkbookConfig();
-            //TODO configurable
-            workbookConf.setFileName("workbook.xlsx");
+        //create a config for this workbook
+        ExcelGeneratorWorkbookConfig workbookConf = new ExcelGeneratorWorkbookConfig();
+        //TODO configurable
+        workbookConf.setFileName("workbook.xlsx");
+        workbookConf.setStreaming(options.isStreamingWorkbooks());
+        workbookConf.setRowAccessWindowSize(options.getStreamingRowWindow());
 
-            for (List<ExcelTable> sheet : sheets) {
-                ExcelGeneratorSheetConfig sheetConf = new ExcelGeneratorSheetConfig();
-                sheetConfigMap.put(sheet, sheetConf);
+        for (List<ExcelTable> sheet : sheets) {
+            ExcelGeneratorSheetConfig sheetConf = new ExcelGeneratorSheetConfig();
+            sheetConfigMap.put(sheet, sheetConf);
 
-                StringBuilder sheetNameSB = new StringBuilder();
+            StringBuilder sheetNameSB = new StringBuilder();
 
-                //TODO a second table in the sheet means we maybe have to move the offset
-                //      so that it will not overlap
-                for (int k = 0; k < sheet.size(); k++) {
-                    ExcelTable excelTable = sheet.get(k);
+            //TODO a second table in the sheet means we maybe have to move the offset
+            //      so that it will not overlap
+            for (int k = 0; k < sheet.size(); k++) {
+                ExcelTable excelTable = sheet.get(k);
 
-                    ExcelGeneratorTableConfig tableConf = new ExcelGeneratorTableConfig();
+                ExcelGeneratorTableConfig tableConf = new ExcelGeneratorTableConfig();
 
-                    //TODO maybe make a getSingleOrDefault method
-                    Point offset = (Point) excelTable.getSetup().getOrDefault("offset", new Point(0, 0));
-                    tableConf.setOffset(offset);
+                //TODO maybe make a getSingleOrDefault method
+                Point offset = (Point) excelTable.getSetup().getOrDefault("offset", new Point(0, 0));
+                tableConf.setOffset(offset);
 
-                    //draw the ExcelCell matrix from ExcelTable
-                    tableConf.setStaticCellDrawer(d -> {
-                        //it uses the tableConf offset
-                        d.exceltable(excelTable, options);
-                    });
+                //draw the ExcelCell matrix from ExcelTable
+                tableConf.setStaticCellDrawer(d -> {
+                    //it uses the tableConf offset
+                    d.exceltable(excelTable, options);
+                });
 
-                    sheetConf.getTableConfigs().add(tableConf);
+                sheetConf.getTableConfigs().add(tableConf);
 
-                    //TODO if only one table with one class: add provenance sheetname -> insts a class. (for all insts)
-                    ClassConfig classConfig = excelTable.getSetup().getOrThrow("classes", ClassConfig.class);
-                    if (classConfig.hasLabel()) {
-                        sheetNameSB.append(classConfig.getLabel());
-                    } else {
-                        throw new RuntimeException("ClassConfig should give a label to name the sheet");
-                    }
+                //TODO if only one table with one class: add provenance sheetname -> insts a class. (for all insts)
+                ClassConfig classConfig = excelTable.getSetup().getOrThrow("classes", ClassConfig.class);
+                if (classConfig.hasLabel()) {
+                    sheetNameSB.append(classConfig.getLabel());
+                } else {
+                    throw new RuntimeException("ClassConfig should give a label to name the sheet");
+                }
 
-                    //in one sheet multiple tables could be existing
-                    if (k != sheet.size() - 1) {
-                        sheetNameSB.append(" & ");
-                    }
+                //in one sheet multiple tables could be existing
+                if (k != sheet.size() - 1) {
+                    sheetNameSB.append(" & ");
                 }
+            }
 
-                //sheet name comes from table content
-                sheetConf.setSheetName(sheetNameSB.toString());
+            //sheet name comes from table content
+            sheetConf.setSheetName(sheetNameSB.toString());
 
-                workbookConf.getSheetConfigs().add(sheetConf);
+            workbookConf.getSheetConfigs().add(sheetConf);
 
-            }//per sheet
+        }//per sheet
 
-            ExcelGeneratorResult result = excelGenerator.generate(null, workbookConf);
+        PerformanceRecorder recorder = options.getPerformanceRecorder();
+        
+        ExcelGeneratorResult result;
+        recorder.begin("drawWorkbook");
+        try {
+            result = excelGenerator.generate(null, workbookConf);
+        } finally {
+            recorder.end();
+        }
 
-            //System.out.println("save workbook " + i);
-            //no extra folder when only one workbook
-            File workbookFolder = workbookSheetTables.size() == 1 ? dstFolder : new File(dstFolder, String.format("%0" + maxDigits + "d", i));
+        //System.out.println("save workbook " + i);
+        //no extra folder when only one workbook
+        File workbookFolder = workbookSheetTables.size() == 1 ? dstFolder : new File(dstFolder, String.format("%0" + maxDigits + "d", i));
+        recorder.begin("saveWorkbook");
+        try {
             result.saveExcel(workbookFolder);
+        } finally {
+            recorder.end();
+        }
+        recorder.addOutput("saveWorkbook", new File(workbookFolder, workbookConf.getFileName()));
+
+        recorder.begin("writeProvenance");
+        try {
+            writeProvenance(workbookFolder, sheets, sheetConfigMap, options);
+        } finally {
+            recorder.end();
+        }
+        recorder.addOutput("writeProvenance", new File(workbookFolder, "expected.ttl.gz"));
+        recorder.addOutput("writeProvenance", new File(workbookFolder, "provenance.ttl.gz"));
+        recorder.addOutput("writeProvenance", new File(workbookFolder, "provenance.csv.gz"));
+
+        if (options.isWriteGenerationSummaryJson()) {
+            writeSummary(workbookFolder, sheets, sheetConfigMap, options, generationSummary);
+        }
 
-            //write provenance =================================================
-            Model expectedModel = null;
-            Model provenanceModel = null;
-            CSVPrinter provenanceCSV = null;
+        return workbookFolder;
+    }
 
+    //expected and provenance files of a workbook
+    private void writeProvenance(File workbookFolder, List<List<ExcelTable>> sheets, Map<List<ExcelTable>, ExcelGeneratorSheetConfig> sheetConfigMap, ExcelSproutOptions options) {
+        //write provenance =================================================
+        Model expectedModel = null;
+        Model provenanceModel = null;
+        ProvenanceStreamWriter provenanceStream = null;
+        CSVPrinter provenanceCSV = null;
+        StatementFormatter statementFormatter = null;
+
+        PrefixMapping expectedPrefixes = PrefixMapping.Factory.create();
+        expectedPrefixes.setNsPrefixes(options.getPrefixMapping());
+        expectedPrefixes.setNsPrefixes(PrefixMapping.Standard);
+
+        PrefixMapping provenancePrefixes = PrefixMapping.Factory.create();
+        provenancePrefixes.setNsPrefixes(options.getPrefixMapping());
+        provenancePrefixes.setNsPrefix("prov", PROV.NS);
+        provenancePrefixes.setNsPrefix("csvw", CSVW.NS);
+        provenancePrefixes.setNsPrefix("ss", SS.NS);
+        provenancePrefixes.setNsPrefixes(PrefixMapping.Standard);
+
+        if (options.isStreamingProvenance()) {
+            //the statements are written while the cells are visited, no models in memory
+            provenanceStream = new ProvenanceStreamWriter(
+                    options.isWriteExpectedModel() ? new File(workbookFolder, "expected.ttl.gz") : null,
+                    expectedPrefixes,
+                    options.isWriteProvenanceModel() ? new File(workbookFolder, "provenance.ttl.gz") : null,
+                    provenancePrefixes
+            );
+        } else {
             if (options.isWriteExpectedModel()) {
                 expectedModel = ModelFactory.createDefaultModel();
-                expectedModel.setNsPrefixes(options.getPrefixMapping());
-                expectedModel.setNsPrefixes(PrefixMapping.Standard);
+                expectedModel.setNsPrefixes(expectedPrefixes);
             }
             if (options.isWriteProvenanceModel()) {
                 provenanceModel = ModelFactory.createDefaultModel();
-                provenanceModel.setNsPrefixes(options.getPrefixMapping());
-                provenanceModel.setNsPrefix("prov", PROV.NS);
-                provenanceModel.setNsPrefix("csvw", CSVW.NS);
-                provenanceModel.setNsPrefix("ss", SS.NS);
-                provenanceModel.setNsPrefixes(PrefixMapping.Standard);
+                provenanceModel.setNsPrefixes(provenancePrefixes);
             }
-            if (options.isWriteProvenanceCSV()) {
-                try {
-                    provenanceCSV = CSVFormat.DEFAULT.print(
-                            new OutputStreamWriter(
-                                    new GZIPOutputStream(
-                                            new FileOutputStream(
-                                                    new File(workbookFolder, "provenance.csv.gz")
-                                            ))));
-                    csvProvenanceHeader(provenanceCSV);
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
+        }
+        if (options.isWriteProvenanceCSV()) {
+            try {
+                provenanceCSV = CSVFormat.DEFAULT.print(
+                        new OutputStreamWriter(
+                                new GZIPOutputStream(
+                                        new FileOutputStream(
+                                                new File(workbookFolder, "provenance.csv.gz")
+                                        ))));
+                csvProvenanceHeader(provenanceCSV);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
             }
+            statementFormatter = new StatementFormatter(provenancePrefixes);
+        }
 
-            //used in rdfProvenance for fast lookup reified statements
-            Map<Statement, Resource> stmt2res = new HashMap<>();
+        //used in rdfProvenance for fast lookup reified statements
+        Map<Statement, Resource> stmt2res = new HashMap<>();
 
-            //need here sheetname for provenance
-            for (List<ExcelTable> sheet : sheets) {
+        //need here sheetname for provenance
+        for (List<ExcelTable> sheet : sheets) {
 
-                ExcelGeneratorSheetConfig sheetConfig = sheetConfigMap.get(sheet);
+            ExcelGeneratorSheetConfig sheetConfig = sheetConfigMap.get(sheet);
 
-                for (ExcelTable table : sheet) {
+            for (ExcelTable table : sheet) {
 
-                    for (Entry<ExcelCell, Provenance> cell2prov : table.getCellProvMap().entrySet()) {
+                ProvenanceStore provenanceStore = table.getProvenanceStore();
 
-                        ExcelCell cell = cell2prov.getKey();
-                        Provenance prov = cell2prov.getValue();
+                for (ExcelCell cell : provenanceStore.getCells()) {
 
-                        if (cell.getAddress() == null) {
-                            //this was a temporary cell created for a merge 
-                            //in TableGenerator putMultipleObjects method
-                            continue;
-                        }
+                    if (cell.getAddress() == null) {
+                        //this was a temporary cell created for a merge 
+                        //in TableGenerator putMultipleObjects method
+                        continue;
+                    }
 
-                        if (prov.getStatements().isEmpty()) {
-                            //no provenance information for this cell
-                            continue;
-                        }
+                    if (provenanceStore.getStatementCount(cell) == 0) {
+                        //no provenance information for this cell
+                        continue;
+                    }
 
-                        if (options.isWriteExpectedModel()) {
-                            expectedModel.add(prov.getStatements());
-                        }
-                        if (options.isWriteProvenanceModel()) {
-                            rdfProvenance(cell, sheetConfig.getSheetName(), prov, stmt2res, provenanceModel);
-                        }
-                        if (options.isWriteProvenanceCSV()) {
-                            csvProvenance(cell, sheetConfig.getSheetName(), prov, provenanceCSV, provenanceModel);
-                        }
+                    //the statements are created for this cell only
+                    Provenance prov = provenanceStore.getProvenance(cell);
+
+                    if (provenanceStream != null) {
+                        provenanceStream.cell(cell, sheetConfig.getSheetName(), prov.getStatements());
+                    }
+                    if (expectedModel != null) {
+                        expectedModel.add(prov.getStatements());
+                    }
+                    if (provenanceModel != null) {
+                        rdfProvenance(cell, sheetConfig.getSheetName(), prov, stmt2res, provenanceModel);
+                    }
+                    if (options.isWriteProvenanceCSV()) {
+                        csvProvenance(cell, sheetConfig.getSheetName(), prov, provenanceCSV, statementFormatter);
                     }
                 }
             }
+        }
 
-            //write to files
-            if (options.isWriteExpectedModel()) {
-                File file = new File(workbookFolder, "expected.ttl.gz");
-                try (OutputStream os = file.getName().endsWith("gz") ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file)) {
-                    expectedModel.write(os, "TTL");
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
+        //write to files
+        if (provenanceStream != null) {
+            provenanceStream.close();
+        }
+        if (expectedModel != null) {
+            File file = new File(workbookFolder, "expected.ttl.gz");
+            try (OutputStream os = file.getName().endsWith("gz") ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file)) {
+                expectedModel.write(os, "TTL");
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
             }
-            if (options.isWriteProvenanceModel()) {
-                File file = new File(workbookFolder, "provenance.ttl.gz");
-                try (OutputStream os = file.getName().endsWith("gz") ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file)) {
-                    provenanceModel.write(os, "TTL");
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
+        }
+        if (provenanceModel != null) {
+            File file = new File(workbookFolder, "provenance.ttl.gz");
+            try (OutputStream os = file.getName().endsWith("gz") ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file)) {
+                provenanceModel.write(os, "TTL");
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
             }
-            if (options.isWriteProvenanceCSV()) {
-                try {
-                    provenanceCSV.close();
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
+        }
+        if (options.isWriteProvenanceCSV()) {
+            try {
+                provenanceCSV.close();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
             }
+        }
+    }
 
-            if (options.isWriteGenerationSummaryJson()) {
-
-                //key is sheet name
-                JSONObject perSheetPatternUsage = new JSONObject();
-                JsonUtility.forceLinkedHashMap(perSheetPatternUsage);
-
-                for (List<ExcelTable> sheet : sheets) {
-
-                    ExcelGeneratorSheetConfig sheetConfig = sheetConfigMap.get(sheet);
-
-                    //count how often
-                    Map<String, Map<Object, Integer>> pattern2value2count = new HashMap<>();
-                    for (ExcelTable tbl : sheet) {
-                        for (Entry<ExcelCell, Provenance> entry : tbl.getCellProvMap().entrySet()) {
-
-                            //skip the ones with no prov and no address (temp cells)
-                            if (entry.getKey().getAddress() == null || entry.getValue().getStatements().isEmpty()) {
-                                continue;
-                            }
-
-                            for (Entry<String, Object> e : entry.getValue().getUsedPatterns().entrySet()) {
-                                
-                                Object val = e.getValue();
-                                if(val instanceof JSONArray) {
-                                    //because json array hash is always different
-                                    val = val.toString();
-                                }
-                                
-                                Map<Object, Integer> value2count = pattern2value2count.computeIfAbsent(e.getKey(), k -> new HashMap<>());
-                                value2count.put(val, value2count.getOrDefault(val, 0) + 1);
-                            }
-                        }
+    //summary.json with the pattern usage per sheet and the performance so far
+    private void writeSummary(File workbookFolder, List<List<ExcelTable>> sheets, Map<List<ExcelTable>, ExcelGeneratorSheetConfig> sheetConfigMap, ExcelSproutOptions options, JSONObject generationSummary) {
+        //key is sheet name
+        JSONObject perSheetPatternUsage = new JSONObject();
+        JsonUtility.forceLinkedHashMap(perSheetPatternUsage);
+
+        for (List<ExcelTable> sheet : sheets) {
+
+            ExcelGeneratorSheetConfig sheetConfig = sheetConfigMap.get(sheet);
+
+            //count how often
+            Map<String, Map<Object, Integer>> pattern2value2count = new HashMap<>();
+            for (ExcelTable tbl : sheet) {
+                ProvenanceStore provenanceStore = tbl.getProvenanceStore();
+                for (ExcelCell cell : provenanceStore.getCells()) {
+
+                    //skip the ones with no prov and no address (temp cells)
+                    if (cell.getAddress() == null || provenanceStore.getStatementCount(cell) == 0) {
+                        continue;
                     }
 
-                    JSONObject patternUsage = new JSONObject();
-                    JsonUtility.forceLinkedHashMap(patternUsage);
-
-                    List<Entry<String, Map<Object, Integer>>> pattern2value2countList = new ArrayList<>(pattern2value2count.entrySet());
-                    pattern2value2countList.sort((a,b) -> a.getKey().compareTo(b.getKey()));
-                    
-                    for (Entry<String, Map<Object, Integer>> pattern2value2countEntry : pattern2value2countList) {
-                        JSONArray array = new JSONArray();
-
-                        for (Entry<Object, Integer> e : pattern2value2countEntry.getValue().entrySet()) {
-                            JSONObject v2c = new JSONObject();
-                            JsonUtility.forceLinkedHashMap(v2c);
-                            v2c.put("value", e.getKey());
-                            v2c.put("count", e.getValue());
-                            array.put(v2c);
+                    for (Entry<String, Object> e : provenanceStore.getUsedPatterns(cell).entrySet()) {
+                        
+                        Object val = e.getValue();
+                        if(val instanceof JSONArray) {
+                            //because json array hash is always different
+                            val = val.toString();
                         }
-
-                        patternUsage.put(pattern2value2countEntry.getKey(), array);
+                        
+                        Map<Object, Integer> value2count = pattern2value2count.computeIfAbsent(e.getKey(), k -> new HashMap<>());
+                        value2count.put(val, value2count.getOrDefault(val, 0) + 1);
                     }
+                }
+            }
 
-                    perSheetPatternUsage.put(sheetConfig.getSheetName(), patternUsage);
+            JSONObject patternUsage = new JSONObject();
+            JsonUtility.forceLinkedHashMap(patternUsage);
+
+            List<Entry<String, Map<Object, Integer>>> pattern2value2countList = new ArrayList<>(pattern2value2count.entrySet());
+            pattern2value2countList.sort((a,b) -> a.getKey().compareTo(b.getKey()));
+            
+            for (Entry<String, Map<Object, Integer>> pattern2value2countEntry : pattern2value2countList) {
+                JSONArray array = new JSONArray();
+
+                for (Entry<Object, Integer> e : pattern2value2countEntry.getValue().entrySet()) {
+                    JSONObject v2c = new JSONObject();
+                    JsonUtility.forceLinkedHashMap(v2c);
+                    v2c.put("value", e.getKey());
+                    v2c.put("count", e.getValue());
+                    array.put(v2c);
                 }
-                options.getGenerationSummary().put("patternUsagePerSheet", perSheetPatternUsage);
 
-                File file = new File(workbookFolder, "summary.json");
-                try {
-                    FileUtils.writeStringToFile(file, options.getGenerationSummary().toString(2), StandardCharsets.UTF_8);
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
+                patternUsage.put(pattern2value2countEntry.getKey(), array);
+            }
+
+            perSheetPatternUsage.put(sheetConfig.getSheetName(), patternUsage);
+        }
+        generationSummary.put("patternUsagePerSheet", perSheetPatternUsage);
+        generationSummary.put("performance", options.getPerformanceRecorder().toJSON());
+
+        File file = new File(workbookFolder, "summary.json");
+        try {
+            FileUtils.writeStringToFile(file, generationSummary.toString(2), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    //the configured limit or an estimate based on the free heap (with a quarter kept for
+    //saving the workbooks and the rest of the process)
+    private int getWorkbookCellLimit(ExcelSproutOptions options) {
+        if (options.getWorkbookCellLimit() > 0) {
+            return options.getWorkbookCellLimit();
+        }
+        //the garbage of the table generation is not free heap otherwise
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        long cells = free / 4 * 3 / BYTES_PER_CELL;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, cells));
+    }
+
+    //the cells of the workbook weighted by what the drawer creates for them:
+    //a font per rich text style and per font color, a comment per cell with provenance
+    private int getCellCost(List<List<ExcelTable>> sheets, ExcelSproutOptions options) {
+        long cost = 0;
+        for (List<ExcelTable> sheet : sheets) {
+            for (ExcelTable table : sheet) {
+                for (ExcelCell[] row : table.getData()) {
+                    for (ExcelCell cell : row) {
+                        cost++;
+                        if (cell == null) {
+                            continue;
+                        }
+                        if (cell.getValueRichText() != null) {
+                            cost += FONT_CELLS * getFontCount(cell.getValueRichText());
+                        }
+                        if (cell.getFontColor() != null) {
+                            cost += FONT_CELLS;
+                        }
+                        if (options.isProvenanceAsCellComment()) {
+                            cost += COMMENT_CELLS;
+                        }
+                    }
                 }
             }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, cost);
+    }
 
-        }//per workbook
+    //a closing tag per style (FontStyle.parse), without parsing the rich text
+    private int getFontCount(String richText) {
+        int count = 0;
+        for (int i = richText.indexOf("</"); i >= 0; i = richText.indexOf("</", i + 2)) {
+            count++;
+        }
+        return count;
     }
 
     private List<List<ExcelTable>> getWorkbookClusters(List<ExcelTable> tables, Random rnd) {
@@ -372,10 +570,7 @@ public class WorkbookCreator {
         );
     }
 
-    private void csvProvenance(ExcelCell excelCell, String sheetName, Provenance provenance, CSVPrinter provenanceCSV, PrefixMapping prefixMapping) {
-        Model provModel = provenance.getModel();
-        provModel.setNsPrefixes(prefixMapping);
-
+    private void csvProvenance(ExcelCell excelCell, String sheetName, Provenance provenance, CSVPrinter provenanceCSV, StatementFormatter statementFormatter) {
         try {
             provenanceCSV.printRecord(
                     excelCell.getId(),
@@ -386,7 +581,8 @@ public class WorkbookCreator {
                     //cell.getColumnIndex(), //"x",
                     //cell.getRowIndex(), //"y",
                     //excelCell.toJSON().toString(), //"content", too much
-                    SemanticUtility.toTTL(provModel, false)//, //"statements",
+                    //printed directly from the formatter's buffer
+                    statementFormatter.format(provenance.getStatements())//, //"statements",
             //provenance.getUsedPatterns().toString() //"patterns"
             );
         } catch (IOException ex) {
@@ -6,7 +6,8 @@ import java.awt.Point;
 import java.util.List;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 /**
@@ -33,11 +34,17 @@ public class ExcelGenerator {
         
         for(ExcelGeneratorWorkbookConfig workbookConfig : configs) {
             
-            XSSFWorkbook workbook = new XSSFWorkbook();
+            //a streaming workbook needs the rows in ascending order, the drawers do this
+            Workbook workbook;
+            if(workbookConfig.isStreaming()) {
+                workbook = new StreamingWorkbook(workbookConfig.getRowAccessWindowSize());
+            } else {
+                workbook = new XSSFWorkbook();
+            }
             
             for(ExcelGeneratorSheetConfig sheetConfig : workbookConfig.getSheetConfigs()) {
                 
-                XSSFSheet sheet = workbook.createSheet(sheetConfig.getSheetName());
+                Sheet sheet = workbook.createSheet(sheetConfig.getSheetName());
                 
                 for(ExcelGeneratorTableConfig tableConfig : sheetConfig.getTableConfigs()) {
                     
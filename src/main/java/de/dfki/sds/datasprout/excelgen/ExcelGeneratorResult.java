@@ -6,14 +6,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 /**
  * 
  */
 public class ExcelGeneratorResult { 
     
-    private List<XSSFWorkbook> workbooks;
+    private List<Workbook> workbooks;
     private List<String> fileNames;
     
     
@@ -22,11 +23,11 @@ public class ExcelGeneratorResult {
         fileNames = new ArrayList<>();
     }
     
-    public List<XSSFWorkbook> getWorkbooks() {
+    public List<Workbook> getWorkbooks() {
         return workbooks;
     }
 
-    public void setWorkbooks(List<XSSFWorkbook> workbooks) {
+    public void setWorkbooks(List<Workbook> workbooks) {
         this.workbooks = workbooks;
     }
 
@@ -41,12 +42,17 @@ public class ExcelGeneratorResult {
     public void saveExcel(File folder) {
         folder.mkdirs();
         int index = 0;
-        for(XSSFWorkbook workbook : workbooks) {
+        for(Workbook workbook : workbooks) {
             File wbFile = new File(folder, fileNames.get(index));
             try(FileOutputStream fos = new FileOutputStream(wbFile)) {
                 workbook.write(fos);
             } catch(IOException e) {
                 throw new RuntimeException(e);
+            } finally {
+                //a streaming workbook can be written only once, remove its temp files
+                if(workbook instanceof SXSSFWorkbook) {
+                    ((SXSSFWorkbook) workbook).dispose();
+                }
             }
             index++;
         }
@@ -4,7 +4,7 @@ import de.dfki.sds.datasprout.Provenance;
 import de.dfki.sds.datasprout.excel.ExcelSproutOptions;
 import de.dfki.sds.datasprout.excel.ExcelTable;
 import de.dfki.sds.datasprout.excelgen.FontStyle.FontStyleParseResult;
-import de.dfki.sds.datasprout.utils.SemanticUtility;
+import de.dfki.sds.datasprout.utils.StatementFormatter;
 import de.dfki.sds.hephaistos.storage.excel.ExcelCell;
 import java.awt.Point;
 import java.time.LocalDate;
@@ -27,13 +27,15 @@ import org.apache.poi.ss.usermodel.Drawing;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.RichTextString;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.IndexedColorMap;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 /**
@@ -42,8 +44,10 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 public class ExcelGeneratorTableDrawer {
 
     private String workbookFileName;
-    private XSSFWorkbook workbook;
-    private XSSFSheet sheet;
+    //a XSSFWorkbook or a streaming one (SXSSF)
+    private Workbook workbook;
+    private Sheet sheet;
+    private IndexedColorMap colorMap;
     private Point offset;
     private Model abox;
     private Model provenanceModel;
@@ -62,6 +66,9 @@ public class ExcelGeneratorTableDrawer {
     
     //used in rdfProvenance
     private Map<Statement, Resource> stmt2res = new HashMap<>();
+
+    //renders the provenance cell comments, created on first use
+    private StatementFormatter statementFormatter;
     
     //IllegalStateException: The maximum number of Cell Styles was exceeded. 
     //You can define up to 64000 style in a .xlsx Workbook
@@ -70,7 +77,7 @@ public class ExcelGeneratorTableDrawer {
     //the hash is a string that contains relevant information of styles that could be used
     private Map<String, CellStyle> hash2cellStyle;
 
-    /*package*/ ExcelGeneratorTableDrawer(String workbookFileName, XSSFWorkbook workbook, XSSFSheet sheet, Point offset, Model abox, 
+    /*package*/ ExcelGeneratorTableDrawer(String workbookFileName, Workbook workbook, Sheet sheet, Point offset, Model abox, 
             //maybe deprecated:
             Model provenanceModel, CSVPrinter provenanceCSV, Model expectedModel) {
         this.workbookFileName = workbookFileName;
@@ -82,6 +89,9 @@ public class ExcelGeneratorTableDrawer {
         
         creationHelper = workbook.getCreationHelper();
         
+        XSSFWorkbook xssfWorkbook = workbook instanceof SXSSFWorkbook ? ((SXSSFWorkbook) workbook).getXSSFWorkbook() : (XSSFWorkbook) workbook;
+        colorMap = xssfWorkbook.getStylesSource().getIndexedColors();
+        
         
         //deprecated
         this.expectedModel = expectedModel;
@@ -110,7 +120,7 @@ public class ExcelGeneratorTableDrawer {
 
             CellStyle cellStyle = workbook.createCellStyle();
 
-            XSSFFont font = workbook.createFont();
+            XSSFFont font = (XSSFFont) workbook.createFont();
             style.applyTo(font);
             cellStyle.setFont(font);
 
@@ -136,7 +146,7 @@ public class ExcelGeneratorTableDrawer {
             RichTextString rts = new XSSFRichTextString(text);
 
             for (FontStyle fsit : styles) {
-                XSSFFont font = workbook.createFont();
+                XSSFFont font = (XSSFFont) workbook.createFont();
                 font.setFontHeightInPoints(defaultFontHeightInPoints);
                 font.setFontName(defaultFontName);
                 fsit.applyTo(font);
@@ -193,6 +203,8 @@ public class ExcelGeneratorTableDrawer {
         Comment comment = drawing.createCellComment(anchor);
         comment.setString(creationHelper.createRichTextString(commentText));
         comment.setAuthor(author);
+        //the comment has the address of the anchor, XSSF moves it to the cell but SXSSF does not
+        comment.setAddress(cell.getRowIndex(), cell.getColumnIndex());
 
         cell.setCellComment(comment);
     }
@@ -227,7 +239,7 @@ public class ExcelGeneratorTableDrawer {
                     RichTextString rts = new XSSFRichTextString(result.getText());
 
                     for (FontStyle fsit : result.getStyles()) {
-                        XSSFFont font = workbook.createFont();
+                        XSSFFont font = (XSSFFont) workbook.createFont();
                         //TODO we may pass this also
                         font.setFontHeightInPoints(defaultFontHeightInPoints);
                         font.setFontName(defaultFontName);
@@ -262,7 +274,6 @@ public class ExcelGeneratorTableDrawer {
         }
         
         if(excelCell.getBackgroundColor() != null) {
-            IndexedColorMap colorMap = workbook.getStylesSource().getIndexedColors();
             XSSFColor color = new XSSFColor(excelCell.getBackgroundColor(), colorMap);
             cell.getCellStyle().setFillPattern(FillPatternType.SOLID_FOREGROUND);
             ((XSSFCellStyle) cell.getCellStyle()).setFillForegroundColor(color);
@@ -275,7 +286,7 @@ public class ExcelGeneratorTableDrawer {
             FontStyle fs = new FontStyle();
             fs.setColor(excelCell.getFontColor());
             
-            XSSFFont font = workbook.createFont();
+            XSSFFont font = (XSSFFont) workbook.createFont();
             fs.applyTo(font);
             
             XSSFCellStyle xssfCellStyle = (XSSFCellStyle) cell.getCellStyle();
@@ -294,10 +305,13 @@ public class ExcelGeneratorTableDrawer {
         if (options.isProvenanceAsCellComment()) {
             //use prefixed
             //but do not put it in the comment here because of loading time
-            Model model = provenance.getModel();
-            model.setNsPrefixes(options.getPrefixMapping());
-            model.setNsPrefixes(PrefixMapping.Standard);
-            comment(cell, "Provenance", SemanticUtility.toTTL(model, false));
+            if (statementFormatter == null) {
+                PrefixMapping prefixMapping = PrefixMapping.Factory.create();
+                prefixMapping.setNsPrefixes(options.getPrefixMapping());
+                prefixMapping.setNsPrefixes(PrefixMapping.Standard);
+                statementFormatter = new StatementFormatter(prefixMapping);
+            }
+            comment(cell, "Provenance", statementFormatter.format(provenance.getStatements()).toString());
         }
     }
 
@@ -308,7 +322,8 @@ public class ExcelGeneratorTableDrawer {
 
                 ExcelCell cell = table.getData()[i][j];
 
-                Provenance prov = table.getCellProvMap().get(cell);
+                //only needed for the comments, otherwise no statements are created
+                Provenance prov = options.isProvenanceAsCellComment() ? table.getProvenance(cell) : null;
 
                 excelcell(cell, j, i, prov, options);
             }
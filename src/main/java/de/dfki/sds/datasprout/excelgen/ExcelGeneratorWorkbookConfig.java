@@ -11,6 +11,10 @@ public class ExcelGeneratorWorkbookConfig {
     
     private List<ExcelGeneratorSheetConfig> sheetConfigs;
     private String fileName;
+    
+    //streaming (SXSSF) keeps only rowAccessWindowSize rows of a sheet in memory
+    private boolean streaming;
+    private int rowAccessWindowSize = 100;
 
     public ExcelGeneratorWorkbookConfig() {
         sheetConfigs = new ArrayList<>();
@@ -31,5 +35,21 @@ public class ExcelGeneratorWorkbookConfig {
     public void setFileName(String fileName) {
         this.fileName = fileName;
     }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public int getRowAccessWindowSize() {
+        return rowAccessWindowSize;
+    }
+
+    public void setRowAccessWindowSize(int rowAccessWindowSize) {
+        this.rowAccessWindowSize = rowAccessWindowSize;
+    }
     
 }
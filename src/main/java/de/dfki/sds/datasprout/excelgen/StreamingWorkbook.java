@@ -0,0 +1,83 @@
+package de.dfki.sds.datasprout.excelgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.streaming.SheetDataWriter;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+
+/**
+ * A SXSSF workbook: only a window of rows is kept in memory, older rows are
+ * flushed to a temp file. Thus rows have to be drawn in ascending order.
+ * SXSSF writes plain inline strings and drops the formatting runs of rich text,
+ * so rich text is written to the shared strings table of the workbook instead
+ * (only those strings are kept in memory).
+ * Call dispose() after writing to delete the temp files.
+ */
+public class StreamingWorkbook extends SXSSFWorkbook {
+
+    public StreamingWorkbook(int rowAccessWindowSize) {
+        super(rowAccessWindowSize);
+    }
+
+    @Override
+    protected SheetDataWriter createSheetDataWriter() throws IOException {
+        return new RichTextSheetDataWriter(getXSSFWorkbook().getSharedStringSource());
+    }
+
+    private static class RichTextSheetDataWriter extends SheetDataWriter {
+
+        private SharedStringsTable sharedStrings;
+
+        //set by createWriter which is called in the super constructor (so no initializer here)
+        private Writer writer;
+
+        public RichTextSheetDataWriter(SharedStringsTable sharedStrings) throws IOException {
+            super();
+            this.sharedStrings = sharedStrings;
+        }
+
+        @Override
+        public Writer createWriter(File fd) throws IOException {
+            writer = super.createWriter(fd);
+            return writer;
+        }
+
+        @Override
+        public void writeCell(int columnIndex, Cell cell) throws IOException {
+            if (cell == null || cell.getCellType() != CellType.STRING) {
+                super.writeCell(columnIndex, cell);
+                return;
+            }
+
+            RichTextString rts = cell.getRichStringCellValue();
+            if (!(rts instanceof XSSFRichTextString) || !((XSSFRichTextString) rts).hasFormatting()) {
+                super.writeCell(columnIndex, cell);
+                return;
+            }
+
+            //same as SheetDataWriter does with a shared strings table
+            int index = sharedStrings.addSharedStringItem(rts);
+
+            writer.write("<c r=\"");
+            writer.write(new CellReference(cell.getRowIndex(), columnIndex).formatAsString());
+            writer.write("\"");
+            CellStyle cellStyle = cell.getCellStyle();
+            if (cellStyle.getIndex() != 0) {
+                writer.write(" s=\"");
+                writer.write(Integer.toString(cellStyle.getIndex() & 0xffff));
+                writer.write("\"");
+            }
+            writer.write(" t=\"s\"><v>");
+            writer.write(Integer.toString(index));
+            writer.write("</v></c>");
+        }
+    }
+}
@@ -10,6 +10,10 @@ public class Dataset {
     private String name;
     private File file;
     private String cite;
+    
+    //optional: the dataset is bulk loaded once into this TDB2 store and read from disk
+    private File tdb2Folder;
+    //null means the default graph
     private String tdb2GraphUri;
 
     public Dataset(String name, File file) {
@@ -55,4 +59,29 @@ public class Dataset {
         return file;
     }
 
+    public boolean isTdb2() {
+        return tdb2Folder != null;
+    }
+
+    public File getTdb2Folder() {
+        return tdb2Folder;
+    }
+
+    /**
+     * Runs the generation against a local TDB2 store instead of an in-memory model.
+     * The file is bulk loaded if the graph in the store is empty.
+     * @param tdb2Folder null for an in-memory model
+     */
+    public void setTdb2Folder(File tdb2Folder) {
+        this.tdb2Folder = tdb2Folder;
+    }
+
+    public String getTdb2GraphUri() {
+        return tdb2GraphUri;
+    }
+
+    public void setTdb2GraphUri(String tdb2GraphUri) {
+        this.tdb2GraphUri = tdb2GraphUri;
+    }
+
 }
@@ -0,0 +1,103 @@
+package de.dfki.sds.datasprout.utils;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * A random which can derive child randoms by a path, for example
+ * seed → workbook → setup → row → column.
+ * A child only depends on the seed of its parent and the path, not on how many
+ * numbers were taken from the parent. Thus every part can be generated
+ * independently (e.g. in parallel) with the same result.
+ * The numbers come from a SplittableRandom (SplitMix64).
+ * It extends Random so that it can be used with Collections.shuffle and the like.
+ * Like SplittableRandom it is not thread-safe.
+ */
+public class HierarchicalRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private SplittableRandom splittableRandom;
+
+    public HierarchicalRandom(long seed) {
+        super(seed);
+        this.seed = seed;
+        this.splittableRandom = new SplittableRandom(seed);
+    }
+
+    /**
+     * A random for the given path below this one.
+     * @param path e.g. row and column
+     * @return
+     */
+    public HierarchicalRandom child(long... path) {
+        return new HierarchicalRandom(derive(seed, path));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * The seed of a child in the given path.
+     * @param seed
+     * @param path
+     * @return
+     */
+    public static long derive(long seed, long... path) {
+        long s = seed;
+        for (long p : path) {
+            s = mix(s + GOLDEN_GAMMA * (mix(p) | 1));
+        }
+        return s;
+    }
+
+    //finalizer of SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        //called by the constructor of Random before the fields are set
+        if (splittableRandom != null) {
+            this.seed = seed;
+            this.splittableRandom = new SplittableRandom(seed);
+        }
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (splittableRandom.nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public int nextInt() {
+        return splittableRandom.nextInt();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return splittableRandom.nextInt(bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return splittableRandom.nextLong();
+    }
+
+    @Override
+    public double nextDouble() {
+        return splittableRandom.nextDouble();
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return splittableRandom.nextBoolean();
+    }
+}
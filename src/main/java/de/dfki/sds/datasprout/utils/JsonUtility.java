@@ -21,4 +21,14 @@ public class JsonUtility {
         }
     }
     
+    //a shallow copy which keeps the key order
+    public static JSONObject copy(JSONObject json) {
+        JSONObject copy = new JSONObject();
+        forceLinkedHashMap(copy);
+        for (String key : json.keySet()) {
+            copy.put(key, json.get(key));
+        }
+        return copy;
+    }
+    
 }
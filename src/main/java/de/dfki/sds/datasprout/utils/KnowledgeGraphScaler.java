@@ -0,0 +1,364 @@
+package de.dfki.sds.datasprout.utils;
+
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer.Cardinality;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * Generates a synthetic graph which is structurally similar to an analyzed one,
+ * but has scaleFactor times its instances.
+ * The statistics come from the RdfsAnalyzer: instances are grouped by their types
+ * (instance2types), every synthetic instance copies the shape of a randomly drawn
+ * instance of its group (its properties and the number of their values).
+ * Literal values are drawn from the values of the property (so datatypes and languages stay),
+ * references point to random synthetic instances of the types of the original object.
+ * Properties whose values have a single subject (domain cardinality SINGLE)
+ * get unique references, strings and numbers; other resources are copied
+ * with a suffixed URI (and their statements).
+ * Statements about non-instances (e.g. the schema) are copied once.
+ * The triples are streamed, only the analyzed graph is in memory.
+ */
+public class KnowledgeGraphScaler {
+
+    private RdfsAnalyzer rdfsAnalyzer;
+
+    private double scaleFactor = 10;
+    private long seed;
+
+    //statistics of the last scale
+    private long triples;
+    private long millis;
+
+    /**
+     * @param rdfsAnalyzer the analysis of the graph to scale
+     */
+    public KnowledgeGraphScaler(RdfsAnalyzer rdfsAnalyzer) {
+        this.rdfsAnalyzer = rdfsAnalyzer;
+    }
+
+    /**
+     * Writes the synthetic graph as N-Triples.
+     * @param file
+     * @return triples
+     */
+    public long write(File file) {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            long count = write(out);
+            System.out.println(file.getName() + " written with " + count + " triples in " + millis + " ms (" + getTriplesPerSecond() + " triples/s)");
+            return count;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Writes the synthetic graph as N-Triples.
+     * @param out
+     * @return triples
+     */
+    public long write(OutputStream out) {
+        StreamRDF stream = StreamRDFWriter.getWriterStream(out, RDFFormat.NTRIPLES_UTF8, null);
+        stream.start();
+        try {
+            return scale(stream);
+        } finally {
+            stream.finish();
+        }
+    }
+
+    /**
+     * Sends the triples of the synthetic graph to the stream, e.g. StreamRDFLib.graph for an in-memory model.
+     * The stream is not started or finished.
+     * @param stream
+     * @return triples
+     */
+    public long scale(StreamRDF stream) {
+        long begin = System.currentTimeMillis();
+        triples = 0;
+
+        Random rnd = new Random(seed);
+        Map<Resource, Set<Resource>> instance2types = rdfsAnalyzer.getInstance2types();
+
+        //instances grouped by their types, in a stable order
+        Map<Set<Resource>, Group> groups = new LinkedHashMap<>();
+        List<Resource> instances = new ArrayList<>(instance2types.keySet());
+        instances.sort(Comparator.comparing(Resource::toString));
+        for (Resource instance : instances) {
+            Set<Resource> types = new TreeSet<>(Comparator.comparing(Resource::toString));
+            types.addAll(instance2types.get(instance));
+            groups.computeIfAbsent(types, t -> new Group(groups.size(), t)).templates.add(instance);
+        }
+        for (Group group : groups.values()) {
+            group.size = Math.max(1, Math.round(group.templates.size() * scaleFactor));
+            group.prefix = namespace(group.templates.get(0)) + "scaled-" + group.id + "-" + localName(group.types.iterator().next()) + "-";
+        }
+        Map<Resource, Group> instance2group = new HashMap<>();
+        for (Group group : groups.values()) {
+            for (Resource template : group.templates) {
+                instance2group.put(template, group);
+            }
+        }
+
+        //the literal values of the properties
+        Map<Property, List<Literal>> property2literals = new HashMap<>();
+        for (Resource instance : instances) {
+            for (Statement stmt : rdfsAnalyzer.getSubjectIndex().statements(instance)) {
+                if (stmt.getObject().isLiteral()) {
+                    property2literals.computeIfAbsent(stmt.getPredicate(), p -> new ArrayList<>()).add(stmt.getLiteral());
+                }
+            }
+        }
+
+        //everything which is not about an instance, e.g. the schema
+        StmtIterator iter = rdfsAnalyzer.getModel().listStatements();
+        try {
+            while (iter.hasNext()) {
+                Statement stmt = iter.next();
+                if (!instance2group.containsKey(stmt.getSubject())) {
+                    emit(stmt.asTriple(), stream);
+                }
+            }
+        } finally {
+            iter.close();
+        }
+
+        Scaling scaling = new Scaling(rnd, instance2group, property2literals, stream);
+        for (Group group : groups.values()) {
+            for (long i = 0; i < group.size; i++) {
+                Node subject = group.node(i);
+                //every template is copied scaleFactor times, so the distributions stay
+                Resource template = group.templates.get((int) (i % group.templates.size()));
+
+                for (Statement stmt : rdfsAnalyzer.getSubjectIndex().statements(template)) {
+                    emit(Triple.create(subject, stmt.getPredicate().asNode(), scaling.object(stmt)), stream);
+                }
+            }
+        }
+
+        millis = System.currentTimeMillis() - begin;
+        return triples;
+    }
+
+    private void emit(Triple triple, StreamRDF stream) {
+        stream.triple(triple);
+        triples++;
+    }
+
+    //strings get a suffix, numbers are shifted by the span of the values, other values stay
+    private static Node unique(Literal literal, long counter, BigDecimal span) {
+        if (counter == 0) {
+            return literal.asNode();
+        }
+        String datatype = literal.getDatatypeURI();
+        if (datatype == null || datatype.equals(XSDDatatype.XSDstring.getURI()) || datatype.equals(RDF.langString.getURI())) {
+            String lexical = literal.getLexicalForm() + " " + counter;
+            if (!literal.getLanguage().isEmpty()) {
+                return NodeFactory.createLiteral(lexical, literal.getLanguage());
+            }
+            return NodeFactory.createLiteral(lexical);
+        }
+        if (isInteger(literal) || isDecimal(literal)) {
+            //the values are distinct in the original graph, thus value + counter * span is distinct too
+            BigDecimal value = new BigDecimal(literal.getLexicalForm().trim()).add(span.multiply(BigDecimal.valueOf(counter)));
+            String lexical = isInteger(literal) ? value.toBigInteger().toString() : value.toPlainString();
+            return NodeFactory.createLiteral(lexical, literal.getDatatype());
+        }
+        return literal.asNode();
+    }
+
+    //max - min + 1 of the numbers
+    private static BigDecimal span(List<Literal> literals) {
+        BigDecimal min = null;
+        BigDecimal max = null;
+        for (Literal literal : literals) {
+            if (isInteger(literal) || isDecimal(literal)) {
+                BigDecimal value = new BigDecimal(literal.getLexicalForm().trim());
+                min = min == null || value.compareTo(min) < 0 ? value : min;
+                max = max == null || value.compareTo(max) > 0 ? value : max;
+            }
+        }
+        return min == null ? BigDecimal.ONE : max.subtract(min).add(BigDecimal.ONE);
+    }
+
+    private static boolean isInteger(Literal literal) {
+        return literal.getDatatypeURI() != null && literal.getDatatypeURI().startsWith(XSDDatatype.XSD)
+                && literal.getLexicalForm().trim().matches("[+-]?[0-9]+");
+    }
+
+    private static boolean isDecimal(Literal literal) {
+        return XSDDatatype.XSDdecimal.getURI().equals(literal.getDatatypeURI())
+                && literal.getLexicalForm().trim().matches("[+-]?[0-9]*\\.?[0-9]+");
+    }
+
+    private static String localName(Resource type) {
+        String localName = type.getLocalName();
+        return localName == null || localName.isEmpty() ? "Instance" : localName;
+    }
+
+    private static String namespace(Resource instance) {
+        String uri = instance.getURI();
+        int i = Math.max(uri.lastIndexOf('/'), uri.lastIndexOf('#'));
+        return i < 0 ? "urn:datasprout:" : uri.substring(0, i + 1);
+    }
+
+    //the state of one scale
+    private class Scaling {
+
+        private Random rnd;
+        private Map<Resource, Group> instance2group;
+        private Map<Property, List<Literal>> property2literals;
+        private StreamRDF stream;
+
+        //next unique value per property (domain cardinality SINGLE)
+        private Map<Property, long[]> counters = new HashMap<>();
+        private Map<Property, BigDecimal> spans = new HashMap<>();
+
+        Scaling(Random rnd, Map<Resource, Group> instance2group, Map<Property, List<Literal>> property2literals, StreamRDF stream) {
+            this.rnd = rnd;
+            this.instance2group = instance2group;
+            this.property2literals = property2literals;
+            this.stream = stream;
+        }
+
+        //the synthetic object of a statement of a template
+        private Node object(Statement stmt) {
+            return object(stmt, new HashMap<>());
+        }
+
+        //copies: the resources copied for this object so far, a cycle refers to the copy (instead of copying again)
+        private Node object(Statement stmt, Map<Resource, Node> copies) {
+            Property p = stmt.getPredicate();
+            RDFNode o = stmt.getObject();
+            if (p.equals(RDF.type)) {
+                //types stay, even if they are instances too
+                return o.asNode();
+            }
+            boolean unique = rdfsAnalyzer.getDomainCardinality().get(p) == Cardinality.SINGLE;
+
+            if (o.isLiteral()) {
+                List<Literal> literals = property2literals.get(p);
+                if (literals == null) {
+                    return o.asNode();
+                }
+                Literal literal = literals.get(rnd.nextInt(literals.size()));
+                return unique ? unique(literal, next(p), spans.computeIfAbsent(p, k -> span(literals))) : literal.asNode();
+
+            } else if (instance2group.containsKey(o.asResource())) {
+                Group target = instance2group.get(o.asResource());
+                long index = unique ? target.next(p) % target.size : (long) (rnd.nextDouble() * target.size);
+                return target.node(index);
+
+            } else if (unique && o.isURIResource()) {
+                //a copy of the resource together with its statements (e.g. an rdf:Bag)
+                Node copy = copies.get(o.asResource());
+                if (copy != null) {
+                    return copy;
+                }
+                long counter = next(p);
+                if (counter == 0) {
+                    return o.asNode();
+                }
+                copy = NodeFactory.createURI(o.asResource().getURI() + "-" + counter);
+                //registered before its statements are copied, which may refer to it again
+                copies.put(o.asResource(), copy);
+                for (Statement copied : rdfsAnalyzer.getSubjectIndex().statements(o.asResource())) {
+                    emit(Triple.create(copy, copied.getPredicate().asNode(), object(copied, copies)), stream);
+                }
+                return copy;
+            }
+
+            //classes and dangling resources are shared
+            return o.asNode();
+        }
+
+        private long next(Property p) {
+            return counters.computeIfAbsent(p, k -> new long[1])[0]++;
+        }
+    }
+
+    //instances with the same types
+    private static class Group {
+
+        private int id;
+        private Set<Resource> types;
+        private List<Resource> templates;
+        private long size;
+        //of the synthetic URIs
+        private String prefix;
+        //next unique reference per property (domain cardinality SINGLE)
+        private Map<Property, long[]> counters = new HashMap<>();
+
+        Group(int id, Set<Resource> types) {
+            this.id = id;
+            this.types = types;
+            this.templates = new ArrayList<>();
+        }
+
+        private long next(Property p) {
+            return counters.computeIfAbsent(p, k -> new long[1])[0]++;
+        }
+
+        private Node node(long index) {
+            return NodeFactory.createURI(prefix + index);
+        }
+    }
+
+    public double getScaleFactor() {
+        return scaleFactor;
+    }
+
+    /**
+     * @param scaleFactor synthetic instances per original instance, e.g. 10, 100, 1000
+     */
+    public void setScaleFactor(double scaleFactor) {
+        this.scaleFactor = scaleFactor;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getTriples() {
+        return triples;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public long getTriplesPerSecond() {
+        return millis == 0 ? triples : triples * 1000 / millis;
+    }
+}
@@ -0,0 +1,232 @@
+package de.dfki.sds.datasprout.utils;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Loads a dataset file into a model.
+ * N-Triples and N-Quads (.nt, .nq) are line based, thus the file is split into
+ * line-aligned chunks which are memory-mapped and parsed in parallel.
+ * The triples are inserted into the graph in file order (chunk by chunk), so the
+ * model is the same as the one of a sequential parse.
+ * Blank node labels are used as given, so that a label means the same node in all chunks.
+ * The quads of an N-Quads file are all loaded into the model (the graph names are dropped).
+ * Other formats (e.g. Turtle) are parsed sequentially, like before.
+ */
+public class ParallelRdfLoader {
+
+    private int parallelism;
+
+    //bytes per parsed chunk
+    private int chunkSize = 32 * 1024 * 1024;
+
+    //statistics of the last load
+    private long triples;
+    private long millis;
+
+    public ParallelRdfLoader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelRdfLoader(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public Model load(File file) {
+        long begin = System.currentTimeMillis();
+
+        Model model;
+        Lang lang = lineBasedLang(file);
+        if (lang == null) {
+            try (FileReader reader = new FileReader(file)) {
+                model = ModelFactory.createDefaultModel().read(reader, null, "TTL");
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        } else {
+            model = ModelFactory.createDefaultModel();
+            loadLines(file, lang, model.getGraph());
+        }
+
+        triples = model.size();
+        millis = System.currentTimeMillis() - begin;
+        System.out.println(file.getName() + " loaded with " + triples + " statements in " + millis + " ms (" + getTriplesPerSecond() + " triples/s)");
+        return model;
+    }
+
+    //null if not line based
+    private static Lang lineBasedLang(File file) {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".nt")) {
+            return Lang.NTRIPLES;
+        } else if (name.endsWith(".nq")) {
+            return Lang.NQUADS;
+        }
+        return null;
+    }
+
+    private void loadLines(File file, Lang lang, Graph graph) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+
+            List<long[]> chunks = chunks(raf);
+
+            //at most two chunks per thread wait for their insertion, this limits the memory
+            Deque<Future<List<Triple>>> pending = new ArrayDeque<>();
+            for (long[] chunk : chunks) {
+                if (pending.size() >= 2 * parallelism) {
+                    insert(pending.poll(), graph);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                pending.add(executor.submit(() -> parse(buffer, lang, file, chunk[0])));
+            }
+            while (!pending.isEmpty()) {
+                insert(pending.poll(), graph);
+            }
+
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //[start, end) byte offsets, a chunk ends after a line break
+    private List<long[]> chunks(RandomAccessFile raf) throws IOException {
+        long length = raf.length();
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < length) {
+            long end = Math.min(length, start + chunkSize);
+            if (end < length) {
+                raf.seek(end);
+                int b;
+                while ((b = raf.read()) != -1 && b != '\n') {
+                    //to the end of the line
+                }
+                end = raf.getFilePointer();
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static List<Triple> parse(ByteBuffer buffer, Lang lang, File file, long offset) {
+        List<Triple> result = new ArrayList<>();
+        try {
+            RDFParser.create()
+                    .source(new ByteBufferInputStream(buffer))
+                    .lang(lang)
+                    .labelToNode(LabelToNode.createUseLabelAsGiven())
+                    .parse(new StreamRDFBase() {
+                        @Override
+                        public void triple(Triple triple) {
+                            result.add(triple);
+                        }
+
+                        @Override
+                        public void quad(Quad quad) {
+                            result.add(quad.asTriple());
+                        }
+                    });
+        } catch (RiotException ex) {
+            throw new RuntimeException("parse error in " + file + " in the chunk at byte " + offset + " (line numbers are relative to the chunk)", ex);
+        }
+        return result;
+    }
+
+    private static void insert(Future<List<Triple>> future, Graph graph) {
+        try {
+            GraphUtil.add(graph, future.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return statements in the model of the last load
+     */
+    public long getTriples() {
+        return triples;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public long getTriplesPerSecond() {
+        return millis == 0 ? triples : triples * 1000 / millis;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package de.dfki.sds.datasprout.utils;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.json.JSONObject;
+
+/**
+ * Records the cost of the stages of a generation: wall time, CPU time and
+ * allocated bytes of the thread (ThreadMXBean) and the sizes of written files.
+ * A stage is measured between begin and end on the same thread, a stage which
+ * begins inside another one is not counted for the outer one (exclusive times).
+ * Measurements of a stage are summed, also the ones of parallel threads,
+ * so the wall time of a parallel stage is the sum of its measurements.
+ * The recorder is thread-safe.
+ */
+public class PerformanceRecorder {
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    //in order of the first begin
+    private final Map<String, Stage> stages;
+
+    //the begun stages of a thread, the last one is measured
+    private final ThreadLocal<Deque<Frame>> frames = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public PerformanceRecorder() {
+        stages = new LinkedHashMap<>();
+    }
+
+    /**
+     * A recorder which starts with the recorded stages of this one,
+     * e.g. the load and analysis of a dataset for each of its modes.
+     * @return
+     */
+    public synchronized PerformanceRecorder copy() {
+        PerformanceRecorder copy = new PerformanceRecorder();
+        for (Entry<String, Stage> e : stages.entrySet()) {
+            copy.stages.put(e.getKey(), e.getValue().copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Begins a stage on the calling thread, always call end in a finally block.
+     * @param stage
+     */
+    public void begin(String stage) {
+        synchronized (this) {
+            stages.computeIfAbsent(stage, s -> new Stage());
+        }
+        Deque<Frame> deque = frames.get();
+        Frame now = new Frame(stage);
+        if (!deque.isEmpty()) {
+            //the outer stage pauses
+            add(deque.peek(), now, false);
+        }
+        deque.push(now);
+    }
+
+    /**
+     * Ends the last begun stage of the calling thread.
+     */
+    public void end() {
+        Deque<Frame> deque = frames.get();
+        Frame frame = deque.pop();
+        Frame now = new Frame(frame.stage);
+        add(frame, now, true);
+        if (!deque.isEmpty()) {
+            //the outer stage continues
+            deque.peek().restart(now);
+        }
+    }
+
+    /**
+     * Adds the size of a written file to the output of a stage.
+     * @param stage
+     * @param file ignored if it does not exist
+     */
+    public void addOutput(String stage, File file) {
+        if (file != null && file.isFile()) {
+            addOutput(stage, file.length());
+        }
+    }
+
+    public synchronized void addOutput(String stage, long bytes) {
+        stages.computeIfAbsent(stage, s -> new Stage()).outputBytes += bytes;
+    }
+
+    private synchronized void add(Frame from, Frame to, boolean finished) {
+        Stage stage = stages.get(from.stage);
+        stage.wallNanos += to.wall - from.wall;
+        from.measuredWall += to.wall - from.wall;
+        if (from.cpu >= 0 && to.cpu >= 0) {
+            stage.cpuNanos += to.cpu - from.cpu;
+        } else {
+            stage.cpuSupported = false;
+        }
+        if (from.allocated >= 0 && to.allocated >= 0) {
+            stage.allocatedBytes += to.allocated - from.allocated;
+        } else {
+            stage.allocatedSupported = false;
+        }
+        if (finished) {
+            stage.count++;
+            stage.maxWallNanos = Math.max(stage.maxWallNanos, from.measuredWall);
+        }
+    }
+
+    /**
+     * Per stage: count, wallMillis, maxWallMillis (slowest measurement), cpuMillis,
+     * allocatedBytes and outputBytes (if files were written).
+     * @return
+     */
+    public synchronized JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        JsonUtility.forceLinkedHashMap(json);
+        for (Entry<String, Stage> e : stages.entrySet()) {
+            Stage stage = e.getValue();
+
+            JSONObject stageJson = new JSONObject();
+            JsonUtility.forceLinkedHashMap(stageJson);
+            stageJson.put("count", stage.count);
+            stageJson.put("wallMillis", stage.wallNanos / 1000000);
+            stageJson.put("maxWallMillis", stage.maxWallNanos / 1000000);
+            if (stage.cpuSupported) {
+                stageJson.put("cpuMillis", stage.cpuNanos / 1000000);
+            }
+            if (stage.allocatedSupported) {
+                stageJson.put("allocatedBytes", stage.allocatedBytes);
+            }
+            if (stage.outputBytes > 0) {
+                stageJson.put("outputBytes", stage.outputBytes);
+            }
+            json.put(e.getKey(), stageJson);
+        }
+        return json;
+    }
+
+    //-1 if not supported by the JVM
+    private static long cpuTime() {
+        if (!THREAD_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+        return THREAD_BEAN.getCurrentThreadCpuTime();
+    }
+
+    //-1 if not supported by the JVM
+    private static long allocatedBytes() {
+        if (!(THREAD_BEAN instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static class Stage {
+
+        private long count;
+        private long wallNanos;
+        private long maxWallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+        private long outputBytes;
+        private boolean cpuSupported = true;
+        private boolean allocatedSupported = true;
+
+        private Stage copy() {
+            Stage copy = new Stage();
+            copy.count = count;
+            copy.wallNanos = wallNanos;
+            copy.maxWallNanos = maxWallNanos;
+            copy.cpuNanos = cpuNanos;
+            copy.allocatedBytes = allocatedBytes;
+            copy.outputBytes = outputBytes;
+            copy.cpuSupported = cpuSupported;
+            copy.allocatedSupported = allocatedSupported;
+            return copy;
+        }
+    }
+
+    //the counters of the thread when a stage (re)started
+    private static class Frame {
+
+        private String stage;
+        private long wall;
+        private long cpu;
+        private long allocated;
+
+        //wall time of this measurement so far (it is paused by inner stages)
+        private long measuredWall;
+
+        Frame(String stage) {
+            this.stage = stage;
+            this.wall = System.nanoTime();
+            this.cpu = cpuTime();
+            this.allocated = allocatedBytes();
+        }
+
+        private void restart(Frame now) {
+            wall = now.wall;
+            cpu = now.cpu;
+            allocated = now.allocated;
+        }
+    }
+}
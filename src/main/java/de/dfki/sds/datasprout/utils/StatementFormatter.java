@@ -0,0 +1,112 @@
+package de.dfki.sds.datasprout.utils;
+
+import java.util.List;
+import org.apache.jena.atlas.io.IndentedLineBuffer;
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.out.NodeFormatter;
+import org.apache.jena.riot.out.NodeFormatterTTL;
+import org.apache.jena.riot.out.NodeToLabel;
+import org.apache.jena.riot.system.PrefixMapFactory;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * Renders a few statements (e.g. the provenance of a cell) as prefixed Turtle
+ * without the @prefix header, like SemanticUtility.toTTL(model, false) but
+ * without creating a model and running the Turtle writer.
+ * Statements are grouped by subject and predicate in the order of the list,
+ * duplicates are skipped.
+ * The buffer is reused, so a formatter is used by one thread only.
+ */
+public class StatementFormatter {
+
+    private static final Node RDF_TYPE = RDF.type.asNode();
+
+    private NodeFormatter nodeFormatter;
+    private IndentedLineBuffer buffer;
+
+    public StatementFormatter(PrefixMapping prefixMapping) {
+        nodeFormatter = new NodeFormatterTTL(null, PrefixMapFactory.create(prefixMapping), NodeToLabel.createBNodeByLabelEncoded());
+        buffer = new IndentedLineBuffer();
+    }
+
+    /**
+     * The Turtle of the statements.
+     * @param statements
+     * @return a buffer that is overwritten by the next call (use toString() to keep it)
+     */
+    public CharSequence format(List<Statement> statements) {
+        buffer.clear();
+
+        int n = statements.size();
+        boolean[] done = new boolean[n];
+
+        for (int i = 0; i < n; i++) {
+            if (done[i]) {
+                continue;
+            }
+            Node s = statements.get(i).getSubject().asNode();
+
+            if (buffer.getBuffer().length() > 0) {
+                buffer.print('\n');
+            }
+            nodeFormatter.format(buffer, s);
+
+            boolean firstPredicate = true;
+            for (int j = i; j < n; j++) {
+                if (done[j] || !statements.get(j).getSubject().asNode().equals(s)) {
+                    continue;
+                }
+                Node p = statements.get(j).getPredicate().asNode();
+
+                if (!firstPredicate) {
+                    buffer.print(" ;\n   ");
+                }
+                firstPredicate = false;
+                buffer.print(' ');
+                if (p.equals(RDF_TYPE)) {
+                    buffer.print('a');
+                } else {
+                    nodeFormatter.format(buffer, p);
+                }
+
+                boolean firstObject = true;
+                for (int k = j; k < n; k++) {
+                    if (done[k]) {
+                        continue;
+                    }
+                    Statement stmt = statements.get(k);
+                    if (!stmt.getSubject().asNode().equals(s) || !stmt.getPredicate().asNode().equals(p)) {
+                        continue;
+                    }
+                    done[k] = true;
+                    Node o = stmt.getObject().asNode();
+                    if (written(statements, j, k, s, p, o)) {
+                        continue;
+                    }
+
+                    buffer.print(firstObject ? " " : " , ");
+                    firstObject = false;
+                    nodeFormatter.format(buffer, o);
+                }
+            }
+            buffer.print(" .");
+        }
+
+        return buffer.getBuffer();
+    }
+
+    //true if (s, p, o) is already at an index in [from, to)
+    private static boolean written(List<Statement> statements, int from, int to, Node s, Node p, Node o) {
+        for (int m = from; m < to; m++) {
+            Statement stmt = statements.get(m);
+            if (stmt.getObject().asNode().equals(o)
+                    && stmt.getPredicate().asNode().equals(p)
+                    && stmt.getSubject().asNode().equals(s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
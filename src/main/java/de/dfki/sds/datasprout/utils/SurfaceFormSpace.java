@@ -0,0 +1,147 @@
+package de.dfki.sds.datasprout.utils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * All permutations of all subsets (with at least two elements) of a list,
+ * e.g. the orders of label properties for the "Multiple Surface Forms" pattern.
+ * The order is the one of SetUtility.subsetsAsList (masks ascending) and
+ * ListUtility.generatePerm per subset, but nothing is materialized:
+ * the permutation of an index is computed (get(long)).
+ * The size grows like e * n!, thus there is getSize() (long) and
+ * size() throws when the space does not fit in an int.
+ *
+ * @param <T>
+ */
+public class SurfaceFormSpace<T> extends AbstractList<List<T>> {
+
+    //sum of k! for k <= 20 still fits in a long
+    public static final int MAX_ELEMENTS = 20;
+
+    private List<T> elements;
+
+    //weight[m][c]: permutations of all subsets of m remaining elements when c elements are already chosen
+    private long[][] weight;
+
+    private long size;
+
+    public SurfaceFormSpace(List<T> elements) {
+        if (elements.size() > MAX_ELEMENTS) {
+            throw new RuntimeException("the surface form space of " + elements.size() + " elements has more than " + Long.MAX_VALUE + " permutations, at most " + MAX_ELEMENTS + " elements are supported");
+        }
+        this.elements = new ArrayList<>(elements);
+
+        int n = this.elements.size();
+        long[] factorial = new long[n + 1];
+        factorial[0] = 1;
+        for (int k = 1; k <= n; k++) {
+            factorial[k] = factorial[k - 1] * k;
+        }
+
+        //weight[0][c] is the subset with c elements itself, weight[m][c] = weight[m-1][c] + weight[m-1][c+1]
+        weight = new long[n + 1][n + 1];
+        for (int c = 0; c <= n; c++) {
+            weight[0][c] = c <= 1 ? 0 : factorial[c];
+        }
+        for (int m = 1; m <= n; m++) {
+            for (int c = 0; c + m <= n; c++) {
+                weight[m][c] = weight[m - 1][c] + weight[m - 1][c + 1];
+            }
+        }
+        size = weight[n][0];
+    }
+
+    /**
+     * @return number of permutations
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public int size() {
+        if (size > Integer.MAX_VALUE) {
+            throw new RuntimeException("the surface form space has " + size + " permutations, use getSize() and get(long)");
+        }
+        return (int) size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public List<T> get(int index) {
+        return get((long) index);
+    }
+
+    /**
+     * The permutation at the index without materializing the ones before.
+     * @param index
+     * @return a new list
+     */
+    public List<T> get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " of " + size + " permutations");
+        }
+
+        //the subset: masks are ascending, so the highest element is decided first
+        //(all masks without it come before the ones with it)
+        int n = elements.size();
+        boolean[] chosen = new boolean[n];
+        int c = 0;
+        for (int b = n - 1; b >= 0; b--) {
+            long without = weight[b][c];
+            if (index >= without) {
+                index -= without;
+                chosen[b] = true;
+                c++;
+            }
+        }
+        List<T> subset = new ArrayList<>(c);
+        for (int j = 0; j < n; j++) {
+            if (chosen[j]) {
+                subset.add(elements.get(j));
+            }
+        }
+
+        //the permutation: generatePerm inserts the first element into each
+        //permutation of the rest at every position
+        int k = subset.size();
+        int[] position = new int[k];
+        for (int i = 0; i < k; i++) {
+            position[i] = (int) (index % (k - i));
+            index /= (k - i);
+        }
+        List<T> result = new ArrayList<>(k);
+        for (int i = k - 1; i >= 0; i--) {
+            result.add(position[i], subset.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * A uniformly drawn permutation, one nextDouble() of the random
+     * (the same draw as Setup.Choice.sample with a uniform distribution).
+     * @param rnd
+     * @return
+     */
+    public List<T> sample(Random rnd) {
+        long index = (long) (rnd.nextDouble() * size);
+        return get(Math.min(index, size - 1));
+    }
+
+    public List<T> getElements() {
+        return elements;
+    }
+
+    //reports the size instead of listing all permutations
+    @Override
+    public String toString() {
+        return "SurfaceFormSpace" + elements + " with " + size + " permutations";
+    }
+}
@@ -0,0 +1,179 @@
+package de.dfki.sds.datasprout.utils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+
+/**
+ * A local TDB2 store for knowledge graphs which do not fit in the heap.
+ * A file is bulk loaded once into a graph of the store (the TDB2 parallel loader).
+ * Blank nodes are skolemized while loading (uuid: URIs like the RdfsAnalyzer does),
+ * thus the analysis does not write and the generation runs in one read transaction.
+ * Transactions of TDB2 belong to a thread: the model may only be used by
+ * the thread which called beginRead.
+ * A completed load is marked by a triple in a graph of its own (see isLoaded),
+ * so that an interrupted load is dropped and loaded again.
+ */
+public class Tdb2Store implements AutoCloseable {
+
+    //the graph of the completion markers: <graph> <loadedFrom> "path|lastModified|length"
+    private static final Node MARKER_GRAPH = NodeFactory.createURI("urn:datasprout:tdb2:loaded");
+    private static final Node LOADED_FROM = NodeFactory.createURI("urn:datasprout:tdb2:loadedFrom");
+    //the marker subject of the default graph
+    private static final Node DEFAULT_GRAPH = NodeFactory.createURI("urn:datasprout:tdb2:default");
+
+    private File folder;
+    private org.apache.jena.query.Dataset dataset;
+
+    public Tdb2Store(File folder) {
+        this.folder = folder;
+        folder.mkdirs();
+        dataset = TDB2Factory.connectDataset(folder.getPath());
+    }
+
+    /**
+     * @param file the source of the graph
+     * @param graphUri null for the default graph
+     * @return true if a load of the graph from the file, as it is now, completed
+     * (a graph without the marker is partial, one with another marker is of a changed or other file)
+     */
+    public boolean isLoaded(File file, String graphUri) {
+        return Txn.calculateRead(dataset, () -> dataset.asDatasetGraph().contains(MARKER_GRAPH, markerSubject(graphUri), LOADED_FROM, source(file)));
+    }
+
+    /**
+     * Bulk loads the file into the graph (in its own write transaction).
+     * Statements of a former load (partial or of another file) are dropped first.
+     * The graph is marked as loaded when the load completed.
+     * @param file any RDF syntax, the graph names of quads are dropped
+     * @param graphUri null for the default graph
+     * @return loaded triples
+     */
+    public long bulkLoad(File file, String graphUri) {
+        long begin = System.currentTimeMillis();
+
+        drop(graphUri);
+
+        DataLoader loader;
+        if (graphUri == null) {
+            loader = LoaderFactory.parallelLoader(dataset.asDatasetGraph(), (fmt, args) -> System.out.println(String.format(fmt, args)));
+        } else {
+            loader = LoaderFactory.parallelLoader(dataset.asDatasetGraph(), NodeFactory.createURI(graphUri), (fmt, args) -> System.out.println(String.format(fmt, args)));
+        }
+
+        loader.startBulk();
+        try {
+            RDFDataMgr.parse(new Skolemizer(loader.stream()), file.getPath());
+            loader.finishBulk();
+        } catch (RuntimeException ex) {
+            loader.finishException(ex);
+            throw new RuntimeException("bulk load of " + file + " into " + folder + " failed", ex);
+        }
+
+        Txn.executeWrite(dataset, () -> {
+            dataset.asDatasetGraph().add(MARKER_GRAPH, markerSubject(graphUri), LOADED_FROM, source(file));
+        });
+
+        long triples = loader.countTriples();
+        long millis = System.currentTimeMillis() - begin;
+        System.out.println(file.getName() + " bulk loaded with " + triples + " triples in " + millis + " ms (" + (millis == 0 ? triples : triples * 1000 / millis) + " triples/s)");
+        return triples;
+    }
+
+    /**
+     * Removes the statements and the marker of the graph, e.g. of a partial load.
+     * @param graphUri null for the default graph
+     */
+    public void drop(String graphUri) {
+        Txn.executeWrite(dataset, () -> {
+            DatasetGraph dsg = dataset.asDatasetGraph();
+            dsg.deleteAny(MARKER_GRAPH, markerSubject(graphUri), LOADED_FROM, Node.ANY);
+            dsg.deleteAny(graphUri == null ? Quad.defaultGraphIRI : NodeFactory.createURI(graphUri), Node.ANY, Node.ANY, Node.ANY);
+        });
+    }
+
+    //changes when the file is replaced or edited
+    private static Node source(File file) {
+        return NodeFactory.createLiteral(file.getAbsolutePath() + "|" + file.lastModified() + "|" + file.length());
+    }
+
+    private static Node markerSubject(String graphUri) {
+        return graphUri == null ? DEFAULT_GRAPH : NodeFactory.createURI(graphUri);
+    }
+
+    /**
+     * Begins a read transaction of the calling thread.
+     */
+    public void beginRead() {
+        dataset.begin(ReadWrite.READ);
+    }
+
+    public void end() {
+        dataset.end();
+    }
+
+    /**
+     * The model of the graph, only usable in a transaction.
+     * @param graphUri null for the default graph
+     * @return
+     */
+    public Model getModel(String graphUri) {
+        return graphUri == null ? dataset.getDefaultModel() : dataset.getNamedModel(graphUri);
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    @Override
+    public void close() {
+        dataset.close();
+    }
+
+    //blank nodes to uuid: URIs, quads to triples
+    private static class Skolemizer extends StreamRDFWrapper {
+
+        Skolemizer(StreamRDF other) {
+            super(other);
+        }
+
+        @Override
+        public void triple(Triple triple) {
+            super.triple(skolemize(triple));
+        }
+
+        @Override
+        public void quad(Quad quad) {
+            super.triple(skolemize(quad.asTriple()));
+        }
+
+        private static Triple skolemize(Triple triple) {
+            if (!triple.getSubject().isBlank() && !triple.getObject().isBlank()) {
+                return triple;
+            }
+            return Triple.create(skolemize(triple.getSubject()), triple.getPredicate(), skolemize(triple.getObject()));
+        }
+
+        //the label of a parsed blank node is unique, so the same label gets the same URI
+        private static Node skolemize(Node node) {
+            if (!node.isBlank()) {
+                return node;
+            }
+            return NodeFactory.createURI("uuid:" + UUID.nameUUIDFromBytes(node.getBlankNodeLabel().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package de.dfki.sds.datasprout.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the files of a folder as a zip to a stream while they are generated.
+ * The stream is opened when the first file is added, so that a caller can
+ * still send something else (e.g. an error page) if nothing was added yet.
+ * Entry names are relative to the root folder.
+ */
+public class ZipStreamer {
+
+    public interface Target {
+        OutputStream open() throws IOException;
+    }
+
+    private File root;
+    private Target target;
+
+    private ZipOutputStream zip;
+
+    //relative paths of files already in the zip
+    private Set<String> added;
+
+    private long bytes;
+
+    public ZipStreamer(File root, Target target) {
+        this.root = root;
+        this.target = target;
+        added = new HashSet<>();
+    }
+
+    /**
+     * Adds all files in the folder (recursively) which were not added before.
+     * @param folder a folder in the root folder
+     */
+    public synchronized void addFolder(File folder) {
+        try {
+            for (File file : listFiles(folder)) {
+                addFile(file);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void addFile(File file) throws IOException {
+        String name = root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+        if (!added.add(name)) {
+            return;
+        }
+
+        ZipOutputStream zos = open();
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(file.lastModified());
+        zos.putNextEntry(entry);
+        bytes += Files.copy(file.toPath(), zos);
+        zos.closeEntry();
+        zos.flush();
+    }
+
+    /**
+     * Adds a file with the given text, e.g. to report an error after the stream was opened.
+     * @param name
+     * @param text
+     */
+    public synchronized void addText(String name, String text) {
+        try {
+            ZipOutputStream zos = open();
+            zos.putNextEntry(new ZipEntry(name));
+            byte[] data = text.getBytes(StandardCharsets.UTF_8);
+            zos.write(data);
+            bytes += data.length;
+            zos.closeEntry();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Adds the files of the root folder which were not added before.
+     */
+    public synchronized void addRemaining() {
+        addFolder(root);
+    }
+
+    /**
+     * Adds the remaining files of the root folder and closes the zip.
+     */
+    public synchronized void finish() {
+        addRemaining();
+        try {
+            open().close();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Closes the stream without adding the remaining files, e.g. when the generation failed.
+     */
+    public synchronized void abort() {
+        if (zip != null) {
+            try {
+                zip.close();
+            } catch (IOException ex) {
+                //ignore, the result is not used anyway
+            }
+        }
+    }
+
+    public synchronized boolean isOpened() {
+        return zip != null;
+    }
+
+    //uncompressed bytes written so far
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private ZipOutputStream open() throws IOException {
+        if (zip == null) {
+            zip = new ZipOutputStream(target.open());
+        }
+        return zip;
+    }
+
+    //sorted to have a stable order in the zip
+    private static List<File> listFiles(File folder) {
+        List<File> files = new ArrayList<>();
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return files;
+        }
+        List<File> sorted = new ArrayList<>();
+        Collections.addAll(sorted, children);
+        Collections.sort(sorted);
+        for (File child : sorted) {
+            if (child.isDirectory()) {
+                files.addAll(listFiles(child));
+            } else {
+                files.add(child);
+            }
+        }
+        return files;
+    }
+}
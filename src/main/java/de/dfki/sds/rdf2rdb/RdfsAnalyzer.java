@@ -5,18 +5,32 @@ import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import static java.util.stream.Collectors.toSet;
 import org.apache.jena.datatypes.xsd.XSDDateTime;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.AnonId;
 import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.listeners.StatementListener;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelChangedListener;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
@@ -24,6 +38,7 @@ import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.util.iterator.ExtendedIterator;
 import org.apache.jena.vocabulary.OWL;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
@@ -139,6 +154,33 @@ public class RdfsAnalyzer {
 
     }
 
+    //what the analysis needs to know about the statements of an instance
+    private static class InstanceFacts {
+
+        private List<Resource> subjectTypes = Collections.emptyList();
+        private List<StatementFacts> statements = new ArrayList<>();
+    }
+
+    private static class StatementFacts {
+
+        private Statement statement;
+        private boolean blank;
+
+        //literal object
+        private Resource range;
+        private boolean lang;
+        private StorageClass storageClass;
+        private Function<Literal, Object> specialParser;
+
+        //resource object
+        private boolean dangling;
+        private List<Resource> objectTypes = Collections.emptyList();
+
+        private StatementFacts(Statement statement) {
+            this.statement = statement;
+        }
+    }
+
     private Model model;
     private long size;
     private Set<Resource> types;
@@ -206,6 +248,37 @@ public class RdfsAnalyzer {
 
     private long analyzedStatementsCount = 0;
 
+    //instances whose statements are read at once (in parallel), then merged
+    private static final int INSTANCE_CHUNK = 4096;
+
+    //threads used by analyze, 1 means sequential
+    private int parallelism = 1;
+
+    //built on first use, dropped when the model changes (add, remove)
+    private volatile SubjectIndex subjectIndex;
+
+    //false: the subject index is a view which queries the model, e.g. for a disk-backed model
+    private boolean indexed = true;
+
+    //properties with a cardinality defined by hand (addProperty), updates do not change them
+    private Set<Property> manualCardinalityProperties = new HashSet<>();
+
+    //domains and ranges defined by hand (addPropertyDomain, addPropertyRange), kept when a property is analyzed again
+    private Map<Property, Set<Resource>> manualPropertyDomains = new HashMap<>();
+    private Map<Property, Set<Resource>> manualPropertyRanges = new HashMap<>();
+
+    //pending after an update (add, remove), applied on the next get (refresh)
+    private volatile boolean outdated;
+    private Set<Property> outdatedProperties = new LinkedHashSet<>();
+    private Set<Resource> danglingCandidates = new HashSet<>();
+    private boolean analyzedStatementsCountOutdated;
+
+    //(type, text, statement) of the warnings, so that an update does not warn twice, built on first use
+    private Set<List<Object>> warningKeys;
+
+    //registered by listen()
+    private ModelChangedListener listener;
+
     public RdfsAnalyzer() {
         types = new HashSet<>();
         analyzedStatements = ModelFactory.createDefaultModel();
@@ -252,6 +325,8 @@ public class RdfsAnalyzer {
 
     public RdfsAnalyzer analyze(Model model) {
         this.model = model;
+        this.subjectIndex = null;
+        clearOutdated();
 
         skolemize();
 
@@ -261,6 +336,12 @@ public class RdfsAnalyzer {
         //TODO subPropertyOf
         types = new HashSet<>();
 
+        //the rdf:type objects of every subject (collected in the T-Box pass), 
+        //so that inferring domains and ranges needs no query per statement
+        Map<Resource, List<Resource>> subject2types = new HashMap<>();
+
+        Function<Resource, List<Resource>> typesOf = res -> subject2types.getOrDefault(res, Collections.emptyList());
+
         //explicit T-Box
         for (Statement stmt : toIterable(model.listStatements(null, RDF.type, (RDFNode) null))) {
             //analyzedStatements.add(stmt);
@@ -271,6 +352,8 @@ public class RdfsAnalyzer {
                 continue;
             }
 
+            subject2types.computeIfAbsent(stmt.getSubject(), subj -> new ArrayList<>()).add(stmt.getObject().asResource());
+
             if (stmt.getObject().asResource().equals(RDFS.Class)) {
                 explicitClasses.add(stmt.getSubject());
             } else if (stmt.getObject().asResource().equals(RDF.Property)) {
@@ -333,151 +416,252 @@ public class RdfsAnalyzer {
         //Map<Resource, Set<RDFNode>> prop2ranges = new HashMap<>();
         //for each type we collect instances and their properties
         //everything that does not have a type will be not visited here
-        for (Resource type : types) {
+        ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        try {
+            for (Resource type : types) {
+
+                //explicit properties also (they is maybe no assertion triple)
+                for (Statement domainStmt : toIterable(model.listStatements(null, RDFS.domain, type))) {
+                    analyzeDomainStatement(type, domainStmt);
+                }
 
-            //explicit properties also (they is maybe no assertion triple)
-            for (Statement domainStmt : toIterable(model.listStatements(null, RDFS.domain, type))) {
-                Property pred = ResourceFactory.createProperty(domainStmt.getSubject().getURI());
+                //the statements of the instances are read in parallel (instanceFacts),
+                //the results are merged in instance order, so the outcome does not depend on the parallelism
+                List<Statement> instStmts = model.listStatements(null, RDF.type, type).toList();
+                for (int from = 0; from < instStmts.size(); from += INSTANCE_CHUNK) {
+                    List<Statement> chunk = instStmts.subList(from, Math.min(from + INSTANCE_CHUNK, instStmts.size()));
 
-                Set<Property> propsOfType = type2prop.computeIfAbsent(type, t -> new HashSet<>());
-                propsOfType.add(pred);
+                    List<InstanceFacts> facts = map(chunk, instStmt -> instanceFacts(instStmt, typesOf), executor);
 
-                Set<Resource> propDom = propertyDomains.computeIfAbsent(pred, p -> new HashSet<>());
-                Set<Resource> propRng = propertyRanges.computeIfAbsent(pred, p -> new HashSet<>());
+                    for (int k = 0; k < chunk.size(); k++) {
+                        analyzeInstance(type, chunk.get(k), facts.get(k));
+                    }
+                }
+            }
 
-                propDom.add(type);
+            cardinalityAnalysis(executor);
 
-                for (Statement rangeStmt : toIterable(model.listStatements(pred, RDFS.range, (RDFNode) null))) {
-                    propRng.add(rangeStmt.getResource());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
 
-                    if (rangeStmt.getResource().getURI().startsWith(XSD.NS)) {
-                        literalProperties.add(pred);
+        multiCardinalityProperties();
 
-                        //only pred is used in given statement
-                        StorageClass storageClass = getStorageClassFromDatatype(rangeStmt.getResource().getURI(), ResourceFactory.createStatement(RDF.nil, pred, RDF.nil));
+        //untypedAnalysis();
+        //multiTypeCleanup();
+        
+        return this;
+    }
 
-                        property2storageClass.put(pred, storageClass);
-                        storageClass2properties.computeIfAbsent(storageClass, sc -> new HashSet<>()).add(pred);
+    //a property with the type as rdfs:domain
+    private void analyzeDomainStatement(Resource type, Statement domainStmt) {
+        Property pred = ResourceFactory.createProperty(domainStmt.getSubject().getURI());
 
-                    } else {
-                        resourceProperties.add(pred);
-                    }
-                }
+        Set<Property> propsOfType = type2prop.computeIfAbsent(type, t -> new HashSet<>());
+        propsOfType.add(pred);
+
+        Set<Resource> propDom = propertyDomains.computeIfAbsent(pred, p -> new HashSet<>());
+        Set<Resource> propRng = propertyRanges.computeIfAbsent(pred, p -> new HashSet<>());
+
+        propDom.add(type);
+
+        for (Statement rangeStmt : toIterable(model.listStatements(pred, RDFS.range, (RDFNode) null))) {
+            propRng.add(rangeStmt.getResource());
+
+            if (rangeStmt.getResource().getURI().startsWith(XSD.NS)) {
+                literalProperties.add(pred);
+
+                //only pred is used in given statement
+                StorageClass storageClass = getStorageClassFromDatatype(rangeStmt.getResource().getURI(), ResourceFactory.createStatement(RDF.nil, pred, RDF.nil));
+
+                property2storageClass.put(pred, storageClass);
+                storageClass2properties.computeIfAbsent(storageClass, sc -> new HashSet<>()).add(pred);
+
+            } else {
+                resourceProperties.add(pred);
             }
+        }
+    }
 
-            for (Statement instStmt : toIterable(model.listStatements(null, RDF.type, type))) {
-                //analyzedStatements.add(instStmt);
-                analyzedStatementsCount++;
+    //reads the statements of an instance without changing the analyzer
+    private InstanceFacts instanceFacts(Statement instStmt, Function<Resource, List<Resource>> typesOf) {
+        InstanceFacts facts = new InstanceFacts();
+        if (instStmt.getSubject().isAnon()) {
+            return facts;
+        }
 
-                if (instStmt.getSubject().isAnon()) {
-                    blankNodeStatements.add(instStmt);
-                    continue;
-                }
+        facts.subjectTypes = typesOf.apply(instStmt.getSubject());
 
-                //for multi type check
-                //can also be used to find all typed resources
-                instance2types.computeIfAbsent(instStmt.getSubject(), s -> new HashSet<>()).add(type);
-                type2instances.computeIfAbsent(type, t -> new HashSet<>()).add(instStmt.getSubject());
+        for (Statement propStmt : toIterable(model.listStatements(instStmt.getSubject(), null, (RDFNode) null))) {
+            facts.statements.add(statementFacts(propStmt, typesOf));
+        }
+        return facts;
+    }
 
-                for (Statement propStmt : toIterable(model.listStatements(instStmt.getSubject(), null, (RDFNode) null))) {
-                    //analyzedStatements.add(propStmt);
-                    analyzedStatementsCount++;
+    private StatementFacts statementFacts(Statement propStmt, Function<Resource, List<Resource>> typesOf) {
+        StatementFacts stmtFacts = new StatementFacts(propStmt);
 
-                    if (propStmt.getPredicate().isAnon() || propStmt.getObject().isAnon()) {
-                        blankNodeStatements.add(propStmt);
-                        continue;
-                    }
+        if (propStmt.getPredicate().isAnon() || propStmt.getObject().isAnon()) {
+            stmtFacts.blank = true;
 
-                    Property pred = propStmt.getPredicate();
+        } else if (propStmt.getObject().isLiteral()) {
+            Literal lit = propStmt.getObject().asLiteral();
 
-                    //infer property's domains and ranges
-                    Set<Resource> propDom = propertyDomains.computeIfAbsent(pred, p -> new HashSet<>());
-                    Set<Resource> propRng = propertyRanges.computeIfAbsent(pred, p -> new HashSet<>());
+            String dt = lit.getDatatypeURI();
+            stmtFacts.range = dt != null ? ResourceFactory.createResource(dt) : RDFS.Literal;
+            stmtFacts.lang = lit.getLanguage() != null && !lit.getLanguage().isEmpty();
+            stmtFacts.storageClass = storageClass(lit);
+            stmtFacts.specialParser = specialParser(lit);
 
-                    Set<Property> propsOfType = type2prop.computeIfAbsent(type, t -> new HashSet<>());
-                    propsOfType.add(pred);
+        } else if (propStmt.getObject().isResource()) {
+            Resource obj = propStmt.getObject().asResource();
 
-                    //inferred domain
-                    for (Statement stmt : toIterable(model.listStatements(propStmt.getSubject(), RDF.type, (RDFNode) null))) {
-                        propDom.add(stmt.getObject().asResource());
-                    }
+            stmtFacts.dangling = !types.contains(obj) && !model.contains(obj, null);
+            stmtFacts.objectTypes = typesOf.apply(obj);
+        }
+        return stmtFacts;
+    }
 
-                    //Cardinality ==============================================
-                    //infer the cardinality for later 1:1, 1:n, n:1, n:m
-                    //cardinality(pred, propStmt, prop2domains, prop2ranges);
-                    //Object ===================================================
-                    //infer property's type by looking at the object
-                    if (propStmt.getObject().isLiteral()) {
-
-                        Literal lit = propStmt.getObject().asLiteral();
-
-                        String dt = propStmt.getObject().asLiteral().getDatatypeURI();
-                        if (dt != null) {
-                            propRng.add(ResourceFactory.createResource(dt));
-                        } else {
-                            propRng.add(RDFS.Literal);
-                        }
-
-                        boolean hasLang = lit.getLanguage() != null && !lit.getLanguage().isEmpty();
-
-                        if (hasLang) {
-                            langStringProperties.add(pred);
-                        }
-
-                        if (resourceProperties.contains(pred)) {
-                            warn("statement's property has resource and literal object", propStmt);
-                        } else {
-                            literalProperties.add(pred);
-                        }
-
-                        //storage class
-                        StorageClass storageClass = inferStorageClass(propStmt);
-                        if (property2storageClass.containsKey(pred)) {
-                            StorageClass expected = property2storageClass.get(pred);
-                            if (expected != storageClass) {
-                                warn("property's literal's storageClass was expected to be " + expected + ", but was inferred to " + storageClass, propStmt);
-                            }
-                        }
-                        property2storageClass.put(pred, storageClass);
-                        storageClass2properties.computeIfAbsent(storageClass, sc -> new HashSet<>()).add(pred);
-
-                    } else if (propStmt.getObject().isResource()) {
-
-                        if (literalProperties.contains(pred)) {
-                            warn("statement's property has literal and resource object", propStmt);
-                        } else {
-                            resourceProperties.add(pred);
-                        }
-
-                        Resource obj = propStmt.getObject().asResource();
-
-                        if (!types.contains(obj) && !model.contains(propStmt.getObject().asResource(), null)) {
-                            danglingResources.add(propStmt.getObject().asResource());
-                            danglingResourceProperties.add(pred);
-                            //because column contains link
-                            property2storageClass.put(pred, StorageClass.INTEGER); //update: this is changed to TEXT when table inserts are made
-                        }
-
-                        //inferred range
-                        for (Statement stmt : toIterable(model.listStatements(obj, RDF.type, (RDFNode) null))) {
-                            propRng.add(stmt.getObject().asResource());
-                        }
+    //merges the facts of an instance of the type into the analysis
+    private void analyzeInstance(Resource type, Statement instStmt, InstanceFacts facts) {
+        //analyzedStatements.add(instStmt);
+        analyzedStatementsCount++;
 
-                    } else {
-                        warn("statement's object is neither literal nor resource", propStmt);
-                    }
+        if (instStmt.getSubject().isAnon()) {
+            blankNodeStatements.add(instStmt);
+            return;
+        }
+
+        //for multi type check
+        //can also be used to find all typed resources
+        instance2types.computeIfAbsent(instStmt.getSubject(), s -> new HashSet<>()).add(type);
+        type2instances.computeIfAbsent(type, t -> new HashSet<>()).add(instStmt.getSubject());
+
+        for (StatementFacts stmtFacts : facts.statements) {
+            //analyzedStatements.add(propStmt);
+            analyzedStatementsCount++;
+
+            analyzeStatement(type, facts.subjectTypes, stmtFacts);
+        }
+    }
+
+    //merges the facts of a statement of an instance of the type into the analysis
+    private void analyzeStatement(Resource type, List<Resource> subjectTypes, StatementFacts stmtFacts) {
+        Statement propStmt = stmtFacts.statement;
+
+        if (stmtFacts.blank) {
+            blankNodeStatements.add(propStmt);
+            return;
+        }
+
+        Property pred = propStmt.getPredicate();
+
+        //infer property's domains and ranges
+        Set<Resource> propDom = propertyDomains.computeIfAbsent(pred, p -> new HashSet<>());
+        Set<Resource> propRng = propertyRanges.computeIfAbsent(pred, p -> new HashSet<>());
+
+        Set<Property> propsOfType = type2prop.computeIfAbsent(type, t -> new HashSet<>());
+        propsOfType.add(pred);
+
+        //inferred domain
+        propDom.addAll(subjectTypes);
+
+        //Object ===================================================
+        //infer property's type by looking at the object
+        if (propStmt.getObject().isLiteral()) {
+
+            propRng.add(stmtFacts.range);
+
+            if (stmtFacts.lang) {
+                langStringProperties.add(pred);
+            }
+
+            if (resourceProperties.contains(pred)) {
+                warn(type, "statement's property has resource and literal object", propStmt);
+            } else {
+                literalProperties.add(pred);
+            }
+
+            //storage class
+            if (stmtFacts.specialParser != null) {
+                specialParseProperties.put(pred, stmtFacts.specialParser);
+            }
+            StorageClass storageClass = stmtFacts.storageClass;
+            if (property2storageClass.containsKey(pred)) {
+                StorageClass expected = property2storageClass.get(pred);
+                if (expected != storageClass) {
+                    warn(type, "property's literal's storageClass was expected to be " + expected + ", but was inferred to " + storageClass, propStmt);
                 }
             }
+            property2storageClass.put(pred, storageClass);
+            storageClass2properties.computeIfAbsent(storageClass, sc -> new HashSet<>()).add(pred);
+
+        } else if (propStmt.getObject().isResource()) {
+
+            if (literalProperties.contains(pred)) {
+                warn(type, "statement's property has literal and resource object", propStmt);
+            } else {
+                resourceProperties.add(pred);
+            }
+
+            if (stmtFacts.dangling) {
+                danglingResources.add(propStmt.getObject().asResource());
+                danglingResourceProperties.add(pred);
+                //because column contains link
+                property2storageClass.put(pred, StorageClass.INTEGER); //update: this is changed to TEXT when table inserts are made
+            }
+
+            //inferred range
+            propRng.addAll(stmtFacts.objectTypes);
+
+        } else {
+            warn(type, "statement's object is neither literal nor resource", propStmt);
         }
+    }
 
-        cardinalityAnalysis();
+    //applies the function to every item, with an executor in parallel partitions,
+    //the results are in the order of the items
+    private <T, R> List<R> map(List<T> items, Function<T, R> function, ExecutorService executor) {
+        if (executor == null || items.size() < 2) {
+            List<R> result = new ArrayList<>(items.size());
+            for (T item : items) {
+                result.add(function.apply(item));
+            }
+            return result;
+        }
 
-        multiCardinalityProperties();
+        //more partitions than threads to balance uneven items
+        int partitions = Math.min(items.size(), parallelism * 4);
+        List<Future<List<R>>> futures = new ArrayList<>();
+        for (int k = 0; k < partitions; k++) {
+            int from = (int) ((long) k * items.size() / partitions);
+            int to = (int) ((long) (k + 1) * items.size() / partitions);
+            futures.add(executor.submit(() -> {
+                List<R> part = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    part.add(function.apply(items.get(i)));
+                }
+                return part;
+            }));
+        }
 
-        //untypedAnalysis();
-        //multiTypeCleanup();
-        
-        return this;
+        List<R> result = new ArrayList<>(items.size());
+        try {
+            for (Future<List<R>> future : futures) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+        return result;
     }
 
     private Iterable<Statement> toIterable(StmtIterator iter) {
@@ -582,8 +766,11 @@ public class RdfsAnalyzer {
             toBeAdded.add(toBeReplaced[0].asResource(), toBeReplaced[1].as(Property.class), toBeReplaced[2]);
         }
 
-        model.remove(toBeRemoved);
-        model.add(toBeAdded);
+        //no write without blank nodes, so a model in a read transaction can be analyzed
+        if (!toBeRemoved.isEmpty()) {
+            model.remove(toBeRemoved);
+            model.add(toBeAdded);
+        }
 
         skolemizedBlankNodes.addAll(id2res.keySet());
     }
@@ -591,19 +778,624 @@ public class RdfsAnalyzer {
     //use this to define the cardinality by hand
     public void addProperty(Property property, Cardinality domainCard, Cardinality rangeCard) {
         explicitProperties.add(property);
+        manualCardinalityProperties.add(property);
         
         domainCardinality.put(property, domainCard);
         rangeCardinality.put(property, rangeCard);
         
-        multiCardinalityProperty(property);
+        multiCardinalityProperty(property, !getMultiTypedInstances().isEmpty());
     }
     
     public void addPropertyDomain(Property property, Resource domain) {
         propertyDomains.computeIfAbsent(property, p -> new HashSet<>()).add(domain);
+        manualPropertyDomains.computeIfAbsent(property, p -> new HashSet<>()).add(domain);
     }
     
     public void addPropertyRange(Property property, Resource range) {
         propertyRanges.computeIfAbsent(property, p -> new HashSet<>()).add(range);
+        manualPropertyRanges.computeIfAbsent(property, p -> new HashSet<>()).add(range);
+    }
+
+    //-------------------------------------------
+    //incremental updates
+
+    /**
+     * Adds the statement to the model and updates the analysis, instead of analyzing the whole model again.
+     * This way a small patch can be applied to an analyzed knowledge graph.
+     * Add and remove are symmetric: afterwards the analysis is the one of a fresh analyze
+     * of the changed model (see differences). The rdf:type statements and the instance maps
+     * are updated right away, the other properties of the change are analyzed again
+     * (like in analyze, but only their statements) on the next get, so a patch is applied at once.
+     * The subject index is rebuilt on next use.
+     * The analyzer is not thread-safe: do not update while it is used, e.g. by a table generation.
+     * @param stmt
+     */
+    public void add(Statement stmt) {
+        if (model.contains(stmt)) {
+            return;
+        }
+        model.add(stmt);
+        //else the listener did it
+        if (listener == null) {
+            added(stmt);
+        }
+    }
+
+    /**
+     * Removes the statement from the model and updates the analysis.
+     * Removing an rdf:type statement analyzes the rdf:type statements of all instances again.
+     * @param stmt
+     * @see #add(org.apache.jena.rdf.model.Statement) 
+     */
+    public void remove(Statement stmt) {
+        if (!model.contains(stmt)) {
+            return;
+        }
+        model.remove(stmt);
+        if (listener == null) {
+            removed(stmt);
+        }
+    }
+
+    /**
+     * Registers a listener at the analyzed model, so that every change of the model 
+     * (e.g. model.add(patch)) updates the analysis like add and remove do.
+     */
+    public void listen() {
+        if (listener != null) {
+            return;
+        }
+        listener = new StatementListener() {
+            @Override
+            public void addedStatement(Statement stmt) {
+                added(stmt);
+            }
+
+            @Override
+            public void removedStatement(Statement stmt) {
+                removed(stmt);
+            }
+        };
+        model.register(listener);
+    }
+
+    public void unlisten() {
+        if (listener == null) {
+            return;
+        }
+        model.unregister(listener);
+        listener = null;
+    }
+
+    //the statement is already in the model
+    //the graph also notifies statements that were already there, thus every update is idempotent
+    private void added(Statement stmt) {
+        changed();
+
+        if (stmt.getSubject().isAnon() || stmt.getPredicate().isAnon() || stmt.getObject().isAnon()) {
+            blankNodeStatements.add(stmt);
+            return;
+        }
+
+        Resource subject = stmt.getSubject();
+        Property pred = stmt.getPredicate();
+
+        //it is described now, the object maybe referred by an instance
+        danglingCandidates.add(subject);
+        if (stmt.getObject().isURIResource()) {
+            danglingCandidates.add(stmt.getResource());
+        }
+
+        if (pred.equals(RDF.type) && stmt.getObject().isURIResource()) {
+            Resource type = stmt.getResource();
+
+            if (type.equals(RDFS.Class)) {
+                if (!isFilteredType(subject)) {
+                    explicitClasses.add(subject);
+                    typeChanged(subject);
+                }
+            } else if (type.equals(RDF.Property)) {
+                explicitProperties.add(subject.as(Property.class));
+                outdatedProperties.add(subject.as(Property.class));
+            } else if (type.equals(RDFS.Datatype)) {
+                explicitDatatypes.add(subject);
+            } else if (type.equals(RDF.List) || type.equals(RDF.Bag)) {
+                explicitContainers.add(subject);
+            }
+
+            if (!isFilteredType(type)) {
+                instance2types.computeIfAbsent(subject, s -> new HashSet<>()).add(type);
+                type2instances.computeIfAbsent(type, t -> new HashSet<>()).add(subject);
+            }
+            typeChanged(type);
+
+            //the rdf:type statements of the subject and the ones referring to it are analyzed for its types now
+            //(the new type is a domain or range of them), the other properties on the next get
+            for (Statement typeStmt : toIterable(model.listStatements(subject, RDF.type, (RDFNode) null))) {
+                addedInstanceStatement(typeStmt);
+            }
+            for (Statement refStmt : toIterable(model.listStatements(null, RDF.type, subject))) {
+                addedInstanceStatement(refStmt);
+            }
+            instanceChanged(subject, false);
+
+        } else {
+            schemaChanged(stmt);
+            outdatedProperties.add(pred);
+        }
+
+        addedCardinality(stmt);
+    }
+
+    //the statement is already removed from the model
+    private void removed(Statement stmt) {
+        changed();
+
+        if (stmt.getSubject().isAnon() || stmt.getPredicate().isAnon() || stmt.getObject().isAnon()) {
+            blankNodeStatements.remove(stmt);
+            return;
+        }
+
+        Resource subject = stmt.getSubject();
+        Property pred = stmt.getPredicate();
+
+        //maybe not described or not referred by an instance anymore
+        danglingCandidates.add(subject);
+        if (stmt.getObject().isURIResource()) {
+            danglingCandidates.add(stmt.getResource());
+        }
+
+        if (pred.equals(RDF.type) && stmt.getObject().isURIResource()) {
+            Resource type = stmt.getResource();
+
+            //the listener is also notified about statements which were not in the model
+            if (type.equals(RDFS.Class)) {
+                if (!model.contains(subject, RDF.type, RDFS.Class)) {
+                    explicitClasses.remove(subject);
+                }
+                typeChanged(subject);
+            } else if (type.equals(RDF.Property)) {
+                //unless defined by hand (addProperty)
+                if (!model.contains(subject, RDF.type, RDF.Property) && !manualCardinalityProperties.contains(subject.as(Property.class))) {
+                    explicitProperties.remove(subject.as(Property.class));
+                }
+                outdatedProperties.add(subject.as(Property.class));
+            } else if (type.equals(RDFS.Datatype)) {
+                if (!model.contains(subject, RDF.type, RDFS.Datatype)) {
+                    explicitDatatypes.remove(subject);
+                }
+            } else if (type.equals(RDF.List) || type.equals(RDF.Bag)) {
+                if (!model.contains(subject, RDF.type, RDF.List) && !model.contains(subject, RDF.type, RDF.Bag)) {
+                    explicitContainers.remove(subject);
+                }
+            }
+
+            Set<Resource> subjectInstanceTypes = instance2types.get(subject);
+            if (subjectInstanceTypes != null && subjectInstanceTypes.remove(type)) {
+                if (subjectInstanceTypes.isEmpty()) {
+                    instance2types.remove(subject);
+                }
+                Set<Resource> instances = type2instances.get(type);
+                instances.remove(subject);
+                if (instances.isEmpty()) {
+                    type2instances.remove(type);
+                }
+            }
+            typeChanged(type);
+
+            instanceChanged(subject, true);
+
+        } else {
+            schemaChanged(stmt);
+            outdatedProperties.add(pred);
+        }
+
+        removedCardinality(stmt);
+    }
+
+    private void clearOutdated() {
+        outdatedProperties.clear();
+        danglingCandidates.clear();
+        analyzedStatementsCountOutdated = false;
+        outdated = false;
+    }
+
+    private void changed() {
+        subjectIndex = null;
+        size = model.size();
+        analyzedStatementsCountOutdated = true;
+        outdated = true;
+    }
+
+    //the type is in types if it has an instance or is an explicit class (like in analyze)
+    private void typeChanged(Resource type) {
+        boolean isType = !isFilteredType(type) && (explicitClasses.contains(type) || type2instances.containsKey(type));
+        if (isType) {
+            types.add(type);
+        } else if (types.remove(type)) {
+            type2prop.remove(type);
+        }
+        //a type is not dangling
+        danglingCandidates.add(type);
+
+        //the domains and ranges from the schema depend on the type and its instances
+        for (Statement domainStmt : toIterable(model.listStatements(null, RDFS.domain, type))) {
+            schemaChanged(domainStmt);
+        }
+        for (Statement rangeStmt : toIterable(model.listStatements(null, RDFS.range, type))) {
+            schemaChanged(rangeStmt);
+        }
+    }
+
+    //the types of the subject changed, so its properties (domain) and the ones referring to it (range)
+    private void instanceChanged(Resource subject, boolean typeRemoved) {
+        if (typeRemoved) {
+            outdatedProperties.add(RDF.type);
+        }
+        for (Statement propStmt : toIterable(model.listStatements(subject, null, (RDFNode) null))) {
+            if (!propStmt.getPredicate().equals(RDF.type)) {
+                outdatedProperties.add(propStmt.getPredicate());
+            }
+            //maybe (not) referred by an instance anymore
+            if (propStmt.getObject().isURIResource()) {
+                danglingCandidates.add(propStmt.getResource());
+            }
+        }
+        for (Statement refStmt : toIterable(model.listStatements(null, null, subject))) {
+            if (!refStmt.getPredicate().equals(RDF.type)) {
+                outdatedProperties.add(refStmt.getPredicate());
+            }
+        }
+    }
+
+    //an rdfs:domain or rdfs:range statement changes the analysis of its property
+    private void schemaChanged(Statement stmt) {
+        if ((stmt.getPredicate().equals(RDFS.domain) || stmt.getPredicate().equals(RDFS.range)) && stmt.getSubject().isURIResource()) {
+            outdatedProperties.add(stmt.getSubject().as(Property.class));
+        }
+    }
+
+    //like in analyze: the statement is analyzed for every (not filtered) type of its subject
+    private void addedInstanceStatement(Statement propStmt) {
+        Set<Resource> subjectInstanceTypes = instance2types.get(propStmt.getSubject());
+        if (subjectInstanceTypes == null) {
+            return;
+        }
+
+        List<Resource> subjectTypes = typesOf(propStmt.getSubject());
+        StatementFacts stmtFacts = statementFacts(propStmt, this::typesOf);
+        for (Resource type : subjectInstanceTypes) {
+            analyzeStatement(type, subjectTypes, stmtFacts);
+        }
+    }
+
+    //like the explicit domains and ranges in analyze
+    private void addedExplicitProperty(Property prop) {
+        if (!explicitProperties.contains(prop)) {
+            return;
+        }
+        for (Statement domainStmt : toIterable(model.listStatements(prop, RDFS.domain, (RDFNode) null))) {
+            propertyDomains.computeIfAbsent(prop, p -> new HashSet<>()).add(domainStmt.getObject().asResource());
+        }
+        for (Statement rangeStmt : toIterable(model.listStatements(prop, RDFS.range, (RDFNode) null))) {
+            propertyRanges.computeIfAbsent(prop, p -> new HashSet<>()).add(rangeStmt.getObject().asResource());
+        }
+    }
+
+    private void addedCardinality(Statement stmt) {
+        Property pred = stmt.getPredicate();
+        if (manualCardinalityProperties.contains(pred)) {
+            return;
+        }
+
+        if (!domainCardinality.containsKey(pred)) {
+            domainCardinality.put(pred, Cardinality.SINGLE);
+        }
+        if (!rangeCardinality.containsKey(pred)) {
+            rangeCardinality.put(pred, Cardinality.SINGLE);
+        }
+
+        //only the triples of the new statement's subject and object can change it
+        Graph graph = model.getGraph();
+        Node p = pred.asNode();
+        if (rangeCardinality.get(pred) != Cardinality.MULTI && hasMoreThanOne(graph.find(stmt.getSubject().asNode(), p, Node.ANY))) {
+            rangeCardinality.put(pred, Cardinality.MULTI);
+        }
+        if (domainCardinality.get(pred) != Cardinality.MULTI && hasMoreThanOne(graph.find(Node.ANY, p, stmt.getObject().asNode()))) {
+            domainCardinality.put(pred, Cardinality.MULTI);
+        }
+    }
+
+    private static boolean hasMoreThanOne(ExtendedIterator<Triple> iter) {
+        try {
+            if (!iter.hasNext()) {
+                return false;
+            }
+            iter.next();
+            return iter.hasNext();
+        } finally {
+            iter.close();
+        }
+    }
+
+    //a MULTI can be gone anywhere in the predicate's triples, so the predicate is checked again
+    //unless the subject (object) of the removed statement still has more than one object (subject)
+    private void removedCardinality(Statement stmt) {
+        Property pred = stmt.getPredicate();
+        if (manualCardinalityProperties.contains(pred)) {
+            return;
+        }
+
+        Graph graph = model.getGraph();
+        Node p = pred.asNode();
+        if (!graph.contains(Node.ANY, p, Node.ANY)) {
+            domainCardinality.remove(pred);
+            rangeCardinality.remove(pred);
+            return;
+        }
+
+        boolean rangeMulti = rangeCardinality.get(pred) == Cardinality.MULTI;
+        boolean domainMulti = domainCardinality.get(pred) == Cardinality.MULTI;
+        boolean rangeKept = !rangeMulti || hasMoreThanOne(graph.find(stmt.getSubject().asNode(), p, Node.ANY));
+        boolean domainKept = !domainMulti || hasMoreThanOne(graph.find(Node.ANY, p, stmt.getObject().asNode()));
+        if (rangeKept && domainKept) {
+            return;
+        }
+
+        boolean[] multi = predicateCardinality(graph, p);
+        rangeCardinality.put(pred, multi[0] ? Cardinality.MULTI : Cardinality.SINGLE);
+        domainCardinality.put(pred, multi[1] ? Cardinality.MULTI : Cardinality.SINGLE);
+    }
+
+    //the rdf:type objects of the resource in the model
+    private List<Resource> typesOf(Resource resource) {
+        List<Resource> result = new ArrayList<>();
+        for (Statement stmt : toIterable(model.listStatements(resource, RDF.type, (RDFNode) null))) {
+            if (stmt.getObject().isResource()) {
+                result.add(stmt.getObject().asResource());
+            }
+        }
+        return result;
+    }
+
+    private boolean isFilteredType(Resource type) {
+        if (type.isAnon()) {
+            return true;
+        }
+        for (String ns : filterTypesWithNamespaces) {
+            if (type.getURI().startsWith(ns)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //applies the pending updates, called by the getters
+    private void refresh() {
+        if (!outdated) {
+            return;
+        }
+        synchronized (this) {
+            if (!outdated) {
+                return;
+            }
+
+            //a resource which is (not) dangling anymore changes the properties referring to it
+            for (Resource res : danglingCandidates) {
+                boolean dangling = isDangling(res);
+                if (dangling == danglingResources.contains(res)) {
+                    continue;
+                }
+                if (dangling) {
+                    danglingResources.add(res);
+                } else {
+                    danglingResources.remove(res);
+                }
+                for (Statement refStmt : toIterable(model.listStatements(null, null, res))) {
+                    outdatedProperties.add(refStmt.getPredicate());
+                }
+            }
+            danglingCandidates.clear();
+
+            for (Property prop : outdatedProperties) {
+                reanalyzeProperty(prop);
+            }
+            outdatedProperties.clear();
+
+            multiCardProperties.clear();
+            domainlessMultiCardProperties.clear();
+            rangelessMultiCardProperties.clear();
+            multiCardinalityProperties();
+
+            if (analyzedStatementsCountOutdated) {
+                analyzedStatementsCount = countAnalyzedStatements();
+                analyzedStatementsCountOutdated = false;
+            }
+
+            outdated = false;
+        }
+    }
+
+    //like analyzeStatement decides it: referred by an instance, not a type and not described
+    private boolean isDangling(Resource res) {
+        if (res.isAnon() || types.contains(res) || model.contains(res, null)) {
+            return false;
+        }
+        StmtIterator iter = model.listStatements(null, null, res);
+        try {
+            while (iter.hasNext()) {
+                Statement refStmt = iter.next();
+                if (!refStmt.getPredicate().isAnon() && instance2types.containsKey(refStmt.getSubject())) {
+                    return true;
+                }
+            }
+        } finally {
+            iter.close();
+        }
+        return false;
+    }
+
+    //forgets what is known about the property and analyzes its statements like analyze does,
+    //in the same order (types, instances of a type, statements of an instance)
+    private void reanalyzeProperty(Property prop) {
+        Iterator<Entry<Resource, Set<Property>>> typeIter = type2prop.entrySet().iterator();
+        while (typeIter.hasNext()) {
+            Set<Property> props = typeIter.next().getValue();
+            if (props.remove(prop) && props.isEmpty()) {
+                typeIter.remove();
+            }
+        }
+        Iterator<Entry<StorageClass, Set<Property>>> storageIter = storageClass2properties.entrySet().iterator();
+        while (storageIter.hasNext()) {
+            Set<Property> props = storageIter.next().getValue();
+            if (props.remove(prop) && props.isEmpty()) {
+                storageIter.remove();
+            }
+        }
+        propertyDomains.remove(prop);
+        propertyRanges.remove(prop);
+        literalProperties.remove(prop);
+        resourceProperties.remove(prop);
+        langStringProperties.remove(prop);
+        property2storageClass.remove(prop);
+        specialParseProperties.remove(prop);
+        danglingResourceProperties.remove(prop);
+        warnings.removeIf(w -> w.getRelatedStatement() != null && w.getRelatedStatement().getPredicate().equals(prop));
+        warningKeys().removeIf(key -> ((Statement) key.get(2)).getPredicate().equals(prop));
+
+        addedExplicitProperty(prop);
+        for (Resource domain : manualPropertyDomains.getOrDefault(prop, Collections.emptySet())) {
+            propertyDomains.computeIfAbsent(prop, p -> new HashSet<>()).add(domain);
+        }
+        for (Resource range : manualPropertyRanges.getOrDefault(prop, Collections.emptySet())) {
+            propertyRanges.computeIfAbsent(prop, p -> new HashSet<>()).add(range);
+        }
+
+        //the instances using the property and their types
+        Set<Resource> subjects = new HashSet<>();
+        Set<Resource> subjectInstanceTypes = new HashSet<>();
+        for (Statement propStmt : toIterable(model.listStatements(null, prop, (RDFNode) null))) {
+            if (subjects.add(propStmt.getSubject())) {
+                subjectInstanceTypes.addAll(instance2types.getOrDefault(propStmt.getSubject(), Collections.emptySet()));
+            }
+        }
+
+        for (Resource type : types) {
+            for (Statement domainStmt : toIterable(model.listStatements(prop, RDFS.domain, type))) {
+                analyzeDomainStatement(type, domainStmt);
+            }
+            if (!subjectInstanceTypes.contains(type)) {
+                continue;
+            }
+            for (Statement instStmt : toIterable(model.listStatements(null, RDF.type, type))) {
+                Resource instance = instStmt.getSubject();
+                if (instance.isAnon() || !subjects.contains(instance)) {
+                    continue;
+                }
+                List<Resource> subjectTypes = typesOf(instance);
+                for (Statement propStmt : toIterable(model.listStatements(instance, prop, (RDFNode) null))) {
+                    analyzeStatement(type, subjectTypes, statementFacts(propStmt, this::typesOf));
+                }
+            }
+        }
+    }
+
+    //the statements counted by analyze
+    private long countAnalyzedStatements() {
+        long count = model.listStatements(null, RDF.type, (RDFNode) null).toList().size();
+        for (Property prop : explicitProperties) {
+            count += model.listStatements(prop, RDFS.domain, (RDFNode) null).toList().size();
+            count += model.listStatements(prop, RDFS.range, (RDFNode) null).toList().size();
+        }
+        Graph graph = model.getGraph();
+        for (Resource type : types) {
+            for (Statement instStmt : toIterable(model.listStatements(null, RDF.type, type))) {
+                count++;
+                if (instStmt.getSubject().isAnon()) {
+                    continue;
+                }
+                ExtendedIterator<Triple> iter = graph.find(instStmt.getSubject().asNode(), Node.ANY, Node.ANY);
+                try {
+                    while (iter.hasNext()) {
+                        iter.next();
+                        count++;
+                    }
+                } finally {
+                    iter.close();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The differences of the analysis to the one of another analyzer, e.g. an updated analyzer
+     * (add, remove) and a fresh analyze of the same model. Warnings and multi cardinality properties
+     * are compared without their order.
+     * @param other
+     * @return an empty list if they are the same
+     */
+    public List<String> differences(RdfsAnalyzer other) {
+        List<String> differences = new ArrayList<>();
+        difference(differences, "size", getSize(), other.getSize());
+        difference(differences, "analyzedStatementsCount", getAnalyzedStatementsCount(), other.getAnalyzedStatementsCount());
+        difference(differences, "types", getTypes(), other.getTypes());
+        difference(differences, "type2prop", getType2prop(), other.getType2prop());
+        difference(differences, "instance2types", getInstance2types(), other.getInstance2types());
+        difference(differences, "type2instances", getType2instances(), other.getType2instances());
+        difference(differences, "literalProperties", getLiteralProperties(), other.getLiteralProperties());
+        difference(differences, "resourceProperties", getResourceProperties(), other.getResourceProperties());
+        difference(differences, "langStringProperties", getLangStringProperties(), other.getLangStringProperties());
+        difference(differences, "propertyDomains", getPropertyDomains(), other.getPropertyDomains());
+        difference(differences, "propertyRanges", getPropertyRanges(), other.getPropertyRanges());
+        difference(differences, "danglingResources", getDanglingResources(), other.getDanglingResources());
+        difference(differences, "danglingResourceProperties", getDanglingResourceProperties(), other.getDanglingResourceProperties());
+        difference(differences, "propertyStorageClass", getPropertyStorageClass(), other.getPropertyStorageClass());
+        difference(differences, "storageClassProperties", getStorageClassProperties(), other.getStorageClassProperties());
+        difference(differences, "specialParseProperties", parserNames(), other.parserNames());
+        difference(differences, "domainCardinality", getDomainCardinality(), other.getDomainCardinality());
+        difference(differences, "rangeCardinality", getRangeCardinality(), other.getRangeCardinality());
+        difference(differences, "explicitClasses", getExplicitClasses(), other.getExplicitClasses());
+        difference(differences, "explicitProperties", getExplicitProperties(), other.getExplicitProperties());
+        difference(differences, "explicitDatatypes", getExplicitDatatypes(), other.getExplicitDatatypes());
+        difference(differences, "explicitContainers", getExplicitContainers(), other.getExplicitContainers());
+        difference(differences, "domainlessMultiCardProperties", getDomainlessMultiCardProperties(), other.getDomainlessMultiCardProperties());
+        difference(differences, "rangelessMultiCardProperties", getRangelessMultiCardProperties(), other.getRangelessMultiCardProperties());
+        difference(differences, "multiCardProperties", multiCardNames(), other.multiCardNames());
+        difference(differences, "warnings", warningNames(), other.warningNames());
+        return differences;
+    }
+
+    private static void difference(List<String> differences, String name, Object a, Object b) {
+        if (!a.equals(b)) {
+            differences.add(name + ": " + a + " <> " + b);
+        }
+    }
+
+    private Map<Property, String> parserNames() {
+        Map<Property, String> names = new HashMap<>();
+        for (Entry<Property, Function<Literal, Object>> e : getSpecialParseProperties().entrySet()) {
+            names.put(e.getKey(), getParserName(e.getValue()));
+        }
+        return names;
+    }
+
+    private List<String> multiCardNames() {
+        List<String> names = new ArrayList<>();
+        for (MultiCardinalityProperty mcp : getMultiCardProperties()) {
+            names.add(mcp.getDomain() + " " + mcp.getProperty() + " " + mcp.getRange());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private List<String> warningNames() {
+        List<String> names = new ArrayList<>();
+        for (Warning warning : getWarnings()) {
+            names.add(warning.getText() + " " + warning.getRelatedStatement());
+        }
+        Collections.sort(names);
+        return names;
     }
 
     private void multiCardinalityProperties() {
@@ -611,13 +1403,13 @@ public class RdfsAnalyzer {
         props.addAll(domainCardinality.keySet());
         props.addAll(rangeCardinality.keySet());
 
+        boolean hasMultiTypeInstances = !getMultiTypedInstances().isEmpty();
         for (Property prop : props) {
-            multiCardinalityProperty(prop);
+            multiCardinalityProperty(prop, hasMultiTypeInstances);
         }
     }
 
-    private void multiCardinalityProperty(Property prop) {
-        boolean hasMultiTypeInstances = !getMultiTypedInstances().isEmpty();
+    private void multiCardinalityProperty(Property prop, boolean hasMultiTypeInstances) {
 
         //no n:m table for rdf:type
         //if multi type instance we need a nm_type relation to see the type
@@ -714,13 +1506,16 @@ public class RdfsAnalyzer {
         }
     }
 
-    private void cardinalityAnalysis() {
-        Map<Property, Map<Resource, Set<RDFNode>>> p2s2os = new HashMap<>();
-        Map<Property, Map<RDFNode, Set<Resource>>> p2o2ss = new HashMap<>();
+    private void cardinalityAnalysis(ExecutorService executor) {
+        Graph graph = model.getGraph();
 
-        for (Statement stmt : toIterable(model.listStatements())) {
+        //predicates are independent, so they are analyzed in parallel
+        List<Node> predicates = GraphUtil.listPredicates(graph, Node.ANY, Node.ANY).toList();
+        List<boolean[]> multis = map(predicates, p -> predicateCardinality(graph, p), executor);
 
-            Property pred = stmt.getPredicate();
+        for (int i = 0; i < predicates.size(); i++) {
+            Property pred = model.asRDFNode(predicates.get(i)).as(Property.class);
+            boolean[] multi = multis.get(i);
 
             if (!domainCardinality.containsKey(pred)) {
                 domainCardinality.put(pred, Cardinality.SINGLE);
@@ -729,28 +1524,40 @@ public class RdfsAnalyzer {
                 rangeCardinality.put(pred, Cardinality.SINGLE);
             }
 
-            if (rangeCardinality.get(pred) != Cardinality.MULTI) {
-                Map<Resource, Set<RDFNode>> s2os = p2s2os.computeIfAbsent(pred, p -> new HashMap<>());
-                Set<RDFNode> os = s2os.computeIfAbsent(stmt.getSubject(), s -> new HashSet<>());
-                os.add(stmt.getObject());
-                if (os.size() > 1) {
-                    rangeCardinality.put(pred, Cardinality.MULTI);
-                    //System.out.println(pred + " range multi");
-                    p2s2os.remove(pred);
-                }
+            if (multi[0]) {
+                rangeCardinality.put(pred, Cardinality.MULTI);
+            }
+            if (multi[1]) {
+                domainCardinality.put(pred, Cardinality.MULTI);
             }
+        }
+    }
 
-            if (domainCardinality.get(pred) != Cardinality.MULTI) {
-                Map<RDFNode, Set<Resource>> o2ss = p2o2ss.computeIfAbsent(pred, p -> new HashMap<>());
-                Set<Resource> ss = o2ss.computeIfAbsent(stmt.getObject(), s -> new HashSet<>());
-                ss.add(stmt.getSubject());
-                if (ss.size() > 1) {
-                    domainCardinality.put(pred, Cardinality.MULTI);
-                    //System.out.println(pred + " domain multi");
-                    p2o2ss.remove(pred);
+    //[0]: a subject has more than one object (range multi)
+    //[1]: an object has more than one subject (domain multi)
+    //a graph has no duplicate triples, thus a second triple of the same subject has another object (and vice versa)
+    private static boolean[] predicateCardinality(Graph graph, Node predicate) {
+        boolean[] multi = new boolean[2];
+        Set<Node> subjects = new HashSet<>();
+        Set<Node> objects = new HashSet<>();
+
+        ExtendedIterator<Triple> iter = graph.find(Node.ANY, predicate, Node.ANY);
+        try {
+            while (iter.hasNext() && !(multi[0] && multi[1])) {
+                Triple t = iter.next();
+                if (!multi[0] && !subjects.add(t.getSubject())) {
+                    multi[0] = true;
+                    subjects = null;
+                }
+                if (!multi[1] && !objects.add(t.getObject())) {
+                    multi[1] = true;
+                    objects = null;
                 }
             }
+        } finally {
+            iter.close();
         }
+        return multi;
     }
 
     //TODO necessary?
@@ -798,47 +1605,65 @@ public class RdfsAnalyzer {
         }
     }
 
-    private StorageClass inferStorageClass(Statement stmt) {
-        Literal l = stmt.getLiteral();
-
+    //without side effects, so that it can be called in parallel
+    private StorageClass storageClass(Literal l) {
         String lexical = l.getLexicalForm();
         String dt = l.getDatatypeURI();
 
         if (dt != null) {
             //integer because we will use millis
-            return getStorageClassFromDatatype(dt, stmt);
+            return storageClassFromDatatype(dt);
         } else {
             //check via parsing
+            if (lexical.equalsIgnoreCase("true") || lexical.equalsIgnoreCase("false")) {
+                return StorageClass.INTEGER;
+            }
             try {
-                if (!(lexical.equalsIgnoreCase("true") || lexical.equalsIgnoreCase("false"))) {
-                    throw new Exception();
-                }
-                //special literal bool to int converter
-                specialParseProperties.put(stmt.getPredicate(), boolParser);
+                Long.parseLong(lexical);
                 return StorageClass.INTEGER;
-            } catch (Exception e1) {
+            } catch (Exception e2) {
                 try {
-                    Long.parseLong(lexical);
-                    return StorageClass.INTEGER;
-                } catch (Exception e2) {
-                    try {
-                        Double.parseDouble(lexical);
-                        return StorageClass.REAL;
-                    } catch (Exception e3) {
-                        return StorageClass.TEXT;
-                    }
+                    Double.parseDouble(lexical);
+                    return StorageClass.REAL;
+                } catch (Exception e3) {
+                    return StorageClass.TEXT;
                 }
             }
         }
     }
 
+    //the special literal converter of the literal (e.g. bool to int), null if there is none
+    private Function<Literal, Object> specialParser(Literal l) {
+        String dt = l.getDatatypeURI();
+        if (dt != null) {
+            return specialParserFromDatatype(dt);
+        }
+        String lexical = l.getLexicalForm();
+        if (lexical.equalsIgnoreCase("true") || lexical.equalsIgnoreCase("false")) {
+            return boolParser;
+        }
+        return null;
+    }
+
+    private Function<Literal, Object> specialParserFromDatatype(String dt) {
+        if (dt.equals(XSD.date.getURI())) {
+            return dateParser;
+        } else if (dt.equals(XSD.dateTime.getURI())) {
+            return dateTimeParser;
+        }
+        return null;
+    }
+
     private StorageClass getStorageClassFromDatatype(String dt, Statement stmt) {
+        Function<Literal, Object> parser = specialParserFromDatatype(dt);
+        if (parser != null) {
+            specialParseProperties.put(stmt.getPredicate(), parser);
+        }
+        return storageClassFromDatatype(dt);
+    }
+
+    private StorageClass storageClassFromDatatype(String dt) {
         if (dt.equals(XSD.date.getURI()) || dt.equals(XSD.dateTime.getURI())) {
-            if (dt.equals(XSD.date.getURI())) {
-                specialParseProperties.put(stmt.getPredicate(), dateParser);
-            } else if (dt.equals(XSD.dateTime.getURI())) {
-                specialParseProperties.put(stmt.getPredicate(), dateTimeParser);
-            }
             return StorageClass.INTEGER;
         } else if (dt.equals(XSD.xboolean.getURI())) {
             return StorageClass.INTEGER;
@@ -879,11 +1704,35 @@ public class RdfsAnalyzer {
         warnings.add(warning);
     }
 
+    //a statement is analyzed once per type of its subject, a statement analyzed again does not warn again
+    private void warn(Resource type, String text, Statement stmt) {
+        if (!warningKeys().add(Arrays.asList(type, text, stmt))) {
+            return;
+        }
+        Warning warning = new Warning(text);
+        warning.setRelatedStatement(stmt);
+        warning.setRelatedResource(type);
+        warnings.add(warning);
+    }
+
+    private Set<List<Object>> warningKeys() {
+        if (warningKeys == null) {
+            warningKeys = new HashSet<>();
+            for (Warning warning : warnings) {
+                if (warning.getRelatedStatement() != null) {
+                    warningKeys.add(Arrays.asList(warning.getRelatedResource(), warning.getText(), warning.getRelatedStatement()));
+                }
+            }
+        }
+        return warningKeys;
+    }
+
     public long getSize() {
         return size;
     }
 
     public Set<Resource> getTypes() {
+        refresh();
         return types;
     }
 
@@ -892,6 +1741,7 @@ public class RdfsAnalyzer {
     }
 
     public long getAnalyzedStatementsCount() {
+        refresh();
         return analyzedStatementsCount;
     }
 
@@ -908,19 +1758,42 @@ public class RdfsAnalyzer {
         return props;
     }
 
+    /**
+     * A subject → predicate → objects index of the analyzed (skolemized) model.
+     * It is built on first use.
+     * @return
+     */
+    public SubjectIndex getSubjectIndex() {
+        SubjectIndex index = subjectIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = subjectIndex;
+                if (index == null) {
+                    index = indexed ? SubjectIndex.build(model) : SubjectIndex.view(model);
+                    subjectIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
     public Map<Resource, Set<Property>> getType2prop() {
+        refresh();
         return type2prop;
     }
 
     public Set<Property> getLiteralProperties() {
+        refresh();
         return literalProperties;
     }
 
     public Set<Property> getResourceProperties() {
+        refresh();
         return resourceProperties;
     }
 
     public Set<Resource> getDanglingResources() {
+        refresh();
         return danglingResources;
     }
 
@@ -929,10 +1802,12 @@ public class RdfsAnalyzer {
     }
 
     public Map<Property, StorageClass> getPropertyStorageClass() {
+        refresh();
         return property2storageClass;
     }
 
     public Map<StorageClass, Set<Property>> getStorageClassProperties() {
+        refresh();
         return storageClass2properties;
     }
 
@@ -953,6 +1828,7 @@ public class RdfsAnalyzer {
     }
 
     public List<Warning> getWarnings() {
+        refresh();
         return warnings;
     }
 
@@ -961,10 +1837,12 @@ public class RdfsAnalyzer {
     }
 
     public Map<Property, Set<Resource>> getPropertyDomains() {
+        refresh();
         return propertyDomains;
     }
 
     public Map<Property, Set<Resource>> getPropertyRanges() {
+        refresh();
         return propertyRanges;
     }
 
@@ -985,6 +1863,7 @@ public class RdfsAnalyzer {
     }
 
     public Set<Property> getDanglingResourceProperties() {
+        refresh();
         return danglingResourceProperties;
     }
 
@@ -1002,14 +1881,17 @@ public class RdfsAnalyzer {
     }
 
     public Set<Property> getDomainlessMultiCardProperties() {
+        refresh();
         return domainlessMultiCardProperties;
     }
 
     public Set<Property> getRangelessMultiCardProperties() {
+        refresh();
         return rangelessMultiCardProperties;
     }
 
     public List<MultiCardinalityProperty> getMultiCardProperties() {
+        refresh();
         return multiCardProperties;
     }
 
@@ -1022,10 +1904,12 @@ public class RdfsAnalyzer {
     }
 
     public Map<Property, Function<Literal, Object>> getSpecialParseProperties() {
+        refresh();
         return specialParseProperties;
     }
 
     public Set<Property> getLangStringProperties() {
+        refresh();
         return langStringProperties;
     }
     
@@ -1035,6 +1919,74 @@ public class RdfsAnalyzer {
         return model;
     }
 
+    //-------------------------------------------
+    //for RdfsAnalyzerSnapshots
+
+    //the analysis of the model is filled in by the caller
+    void restore(Model model, long size, long analyzedStatementsCount) {
+        this.model = model;
+        this.size = size;
+        this.analyzedStatementsCount = analyzedStatementsCount;
+        this.subjectIndex = null;
+        this.warningKeys = null;
+        clearOutdated();
+    }
+
+    Set<Property> getManualCardinalityProperties() {
+        return manualCardinalityProperties;
+    }
+
+    String getParserName(Function<Literal, Object> parser) {
+        if (parser == boolParser) {
+            return "bool";
+        } else if (parser == dateParser) {
+            return "date";
+        } else if (parser == dateTimeParser) {
+            return "dateTime";
+        }
+        throw new RuntimeException("unknown special parser " + parser);
+    }
+
+    Function<Literal, Object> getParser(String name) {
+        switch (name) {
+            case "bool":
+                return boolParser;
+            case "date":
+                return dateParser;
+            case "dateTime":
+                return dateTimeParser;
+            default:
+                throw new RuntimeException("unknown special parser " + name);
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Threads used to read the instances and predicates in analyze.
+     * The result does not depend on it.
+     * @param parallelism 1 means sequential
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Whether getSubjectIndex builds an index in the heap (default) or 
+     * returns a view which queries the model.
+     * @param indexed
+     */
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+        this.subjectIndex = null;
+    }
+
     public void print() {
         System.out.println(getSize());
         System.out.println(getAnalyzedStatements().size());
@@ -0,0 +1,166 @@
+package de.dfki.sds.rdf2rdb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+/**
+ * Keeps the results of the RdfsAnalyzer so that the same dataset is analyzed
+ * only once, e.g. for every mode of a pipeline run or for every request of the server.
+ * The key identifies the dataset, for example its name or the content hash of its model.
+ * Keep in mind that the analysis skolemizes the model, thus the cached
+ * analyzer has to be used together with its own model (getModel()).
+ */
+public class RdfsAnalyzerCache {
+
+    private Map<String, RdfsAnalyzer> key2analyzer;
+
+    private AtomicLong hits;
+    private AtomicLong misses;
+
+    //threads of the analyzers created by the cache
+    private int analyzerParallelism = 1;
+
+    public RdfsAnalyzerCache() {
+        key2analyzer = new ConcurrentHashMap<>();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+    }
+
+    /**
+     * Returns the cached analyzer for the key or analyzes the supplied model once.
+     * The supplier is only called when the key is not cached.
+     * @param key
+     * @param modelSupplier
+     * @return
+     */
+    public RdfsAnalyzer get(String key, Supplier<Model> modelSupplier) {
+        return getAnalyzer(key, () -> {
+            RdfsAnalyzer rdfsAnalyzer = new RdfsAnalyzer();
+            rdfsAnalyzer.setParallelism(analyzerParallelism);
+            return rdfsAnalyzer.analyze(modelSupplier.get());
+        });
+    }
+
+    /**
+     * Returns the cached analyzer for the key or the supplied one, 
+     * e.g. loaded from a snapshot (see RdfsAnalyzerSnapshots).
+     * The supplier is only called when the key is not cached.
+     * @param key
+     * @param analyzerSupplier
+     * @return
+     */
+    public RdfsAnalyzer getAnalyzer(String key, Supplier<RdfsAnalyzer> analyzerSupplier) {
+        boolean[] miss = new boolean[1];
+        RdfsAnalyzer analyzer = key2analyzer.computeIfAbsent(key, k -> {
+            miss[0] = true;
+            return analyzerSupplier.get();
+        });
+
+        if (miss[0]) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return analyzer;
+    }
+
+    /**
+     * Uses the content hash of the model as the key.
+     * @param model
+     * @return
+     */
+    public RdfsAnalyzer get(Model model) {
+        return get(contentHash(model), () -> model);
+    }
+
+    public void remove(String key) {
+        key2analyzer.remove(key);
+    }
+
+    public void clear() {
+        key2analyzer.clear();
+    }
+
+    public int size() {
+        return key2analyzer.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int getAnalyzerParallelism() {
+        return analyzerParallelism;
+    }
+
+    public void setAnalyzerParallelism(int analyzerParallelism) {
+        this.analyzerParallelism = analyzerParallelism;
+    }
+
+    /**
+     * An order independent hash of all statements of the model.
+     * Blank node labels are part of the hash, thus two parses of the same
+     * file with blank nodes result in different hashes.
+     * @param model
+     * @return
+     */
+    public static String contentHash(Model model) {
+        long sum = 0;
+        long xor = 0;
+        long count = 0;
+
+        StmtIterator iter = model.listStatements();
+        try {
+            while (iter.hasNext()) {
+                Statement stmt = iter.next();
+                long h = mix(hash(stmt.asTriple()));
+                sum += h;
+                xor ^= h;
+                count++;
+            }
+        } finally {
+            iter.close();
+        }
+
+        return Long.toHexString(count) + "-" + Long.toHexString(sum) + "-" + Long.toHexString(xor);
+    }
+
+    //64 bit FNV-1a of the triple's string form
+    private static long hash(Triple triple) {
+        long h = 0xcbf29ce484222325L;
+        String[] parts = new String[] {
+            triple.getSubject().toString(),
+            triple.getPredicate().toString(),
+            triple.getObject().toString()
+        };
+        for (String part : parts) {
+            for (byte b : part.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b;
+                h *= 0x100000001b3L;
+            }
+            //separator
+            h ^= 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    //finalizer of SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,593 @@
+package de.dfki.sds.rdf2rdb;
+
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer.Cardinality;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer.MultiCardinalityProperty;
+import de.dfki.sds.rdf2rdb.RdfsAnalyzer.StorageClass;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.AnonId;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+
+/**
+ * Persists analyzed knowledge graphs in a folder, so that repeated runs over the same
+ * dataset neither parse nor analyze it again.
+ * A snapshot is keyed by the SHA-256 of the source file (see sha256), thus it is fresh
+ * as long as the source does not change.
+ * It consists of the analyzed (skolemized) graph in RDF Thrift ({@code <hash>.rt}) and the
+ * analysis ({@code <hash>.analysis}): a node dictionary followed by the maps and sets
+ * of the analyzer as int ids.
+ * Sets and maps are restored in their iteration order.
+ * <p>
+ * Snapshots break the reproducibility of a seed: the statements of the loaded graph
+ * are listed in another order than the ones of the parsed file, thus the generated workbooks
+ * differ from the ones of a run without snapshots (with the same seed).
+ * They are only the same for all runs using the same snapshot.
+ * Therefore snapshots are opt-in (e.g. --snapshotFolder).
+ */
+public class RdfsAnalyzerSnapshots {
+
+    //changed when the format or the analysis changes, older snapshots are not fresh anymore
+    private static final int VERSION = 1;
+    private static final int MAGIC = 0x44534153; //DSAS
+
+    private static final int NULL = -1;
+
+    private File folder;
+
+    public RdfsAnalyzerSnapshots(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Loads the snapshot of the source or analyzes the supplied model and saves a snapshot of it.
+     * @param sourceHash the SHA-256 of the source, see sha256
+     * @param modelSupplier parses the source, only called when there is no fresh snapshot
+     * @param parallelism of the analyzer
+     * @return
+     */
+    public RdfsAnalyzer get(String sourceHash, Supplier<Model> modelSupplier, int parallelism) {
+        RdfsAnalyzer analyzer = load(sourceHash);
+        if (analyzer != null) {
+            return analyzer;
+        }
+
+        analyzer = new RdfsAnalyzer();
+        analyzer.setParallelism(parallelism);
+        analyzer.analyze(modelSupplier.get());
+        save(sourceHash, analyzer);
+
+        //the loaded graph lists the statements in another order than the parsed one
+        //(e.g. the objects of a property), so the snapshot is also used now, 
+        //otherwise the first run would generate other workbooks than the following ones
+        return load(sourceHash);
+    }
+
+    public boolean isFresh(String sourceHash) {
+        File analysisFile = analysisFile(sourceHash);
+        if (!analysisFile.exists() || !graphFile(sourceHash).exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(analysisFile)))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @param sourceHash
+     * @return null if there is no fresh snapshot
+     */
+    public RdfsAnalyzer load(String sourceHash) {
+        if (!isFresh(sourceHash)) {
+            return null;
+        }
+
+        long begin = System.currentTimeMillis();
+
+        Model model = ModelFactory.createDefaultModel();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(graphFile(sourceHash)))) {
+            RDFDataMgr.read(model, in, Lang.RDFTHRIFT);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        RdfsAnalyzer analyzer = new RdfsAnalyzer();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(analysisFile(sourceHash)), 1 << 16))) {
+            new Reader(in, model, analyzer).read();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        System.out.println("snapshot " + sourceHash + " loaded with " + model.size() + " statements in " + (System.currentTimeMillis() - begin) + " ms");
+        return analyzer;
+    }
+
+    /**
+     * Writes the analyzed model and its analysis.
+     * The files are written to temporary files first, so that a snapshot is either complete or missing.
+     * @param sourceHash
+     * @param analyzer
+     */
+    public void save(String sourceHash, RdfsAnalyzer analyzer) {
+        folder.mkdirs();
+
+        File graphTmp = new File(folder, sourceHash + ".rt.tmp");
+        File analysisTmp = new File(folder, sourceHash + ".analysis.tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(graphTmp))) {
+                RDFDataMgr.write(out, analyzer.getModel(), RDFFormat.RDF_THRIFT);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(analysisTmp), 1 << 16))) {
+                new Writer(analyzer).write(out);
+            }
+
+            //the analysis is moved last, it marks the snapshot as complete
+            Files.move(graphTmp.toPath(), graphFile(sourceHash).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(analysisTmp.toPath(), analysisFile(sourceHash).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            graphTmp.delete();
+            analysisTmp.delete();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private File graphFile(String sourceHash) {
+        return new File(folder, sourceHash + ".rt");
+    }
+
+    private File analysisFile(String sourceHash) {
+        return new File(folder, sourceHash + ".analysis");
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    public static String sha256(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            return sha256(in);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * The hex SHA-256 of the stream's content, the stream is read but not closed.
+     * @param in
+     * @return
+     */
+    public static String sha256(InputStream in) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        byte[] buffer = new byte[1 << 16];
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    //-------------------------------------------
+    //format
+
+    //the sections are written with node ids while the dictionary is built,
+    //then header, dictionary and sections are written
+    private static class Writer {
+
+        private RdfsAnalyzer analyzer;
+
+        private Map<Node, Integer> node2id = new HashMap<>();
+        private List<Node> nodes = new ArrayList<>();
+
+        private DataOutputStream out;
+
+        Writer(RdfsAnalyzer analyzer) {
+            this.analyzer = analyzer;
+        }
+
+        void write(DataOutputStream file) throws IOException {
+            ByteArrayOutputStream sections = new ByteArrayOutputStream();
+            out = new DataOutputStream(sections);
+
+            out.writeLong(analyzer.getSize());
+            out.writeLong(analyzer.getAnalyzedStatementsCount());
+
+            nodes(analyzer.getTypes());
+            nodeMap(analyzer.getType2prop());
+            nodes(analyzer.getLiteralProperties());
+            nodes(analyzer.getResourceProperties());
+            nodeMap(analyzer.getPropertyDomains());
+            nodeMap(analyzer.getPropertyRanges());
+            nodes(analyzer.getDanglingResources());
+            nodes(analyzer.getDanglingResourceProperties());
+            nodes(analyzer.getLangStringProperties());
+            nodes(analyzer.getUntypedResourceProperties());
+
+            out.writeInt(analyzer.getPropertyStorageClass().size());
+            for (Entry<Property, StorageClass> e : analyzer.getPropertyStorageClass().entrySet()) {
+                out.writeInt(id(e.getKey()));
+                out.writeByte(e.getValue().ordinal());
+            }
+            out.writeInt(analyzer.getStorageClassProperties().size());
+            for (Entry<StorageClass, Set<Property>> e : analyzer.getStorageClassProperties().entrySet()) {
+                out.writeByte(e.getKey().ordinal());
+                nodes(e.getValue());
+            }
+
+            nodeMap(analyzer.getInstance2types());
+            nodeMap(analyzer.getType2instances());
+            cardinalities(analyzer.getDomainCardinality());
+            cardinalities(analyzer.getRangeCardinality());
+
+            out.writeInt(analyzer.getWarnings().size());
+            for (Warning warning : analyzer.getWarnings()) {
+                string(warning.getText());
+                statement(warning.getRelatedStatement());
+                out.writeInt(id(warning.getRelatedResource()));
+            }
+
+            out.writeInt(analyzer.getFilterTypesWithNamespaces().size());
+            for (String ns : analyzer.getFilterTypesWithNamespaces()) {
+                string(ns);
+            }
+
+            nodes(analyzer.getExplicitClasses());
+            nodes(analyzer.getExplicitProperties());
+            nodes(analyzer.getExplicitDatatypes());
+            nodes(analyzer.getExplicitContainers());
+            nodes(analyzer.getDomainlessMultiCardProperties());
+            nodes(analyzer.getRangelessMultiCardProperties());
+
+            out.writeInt(analyzer.getMultiCardProperties().size());
+            for (MultiCardinalityProperty mcp : analyzer.getMultiCardProperties()) {
+                out.writeInt(id(mcp.getDomain()));
+                out.writeInt(id(mcp.getProperty()));
+                out.writeInt(id(mcp.getRange()));
+            }
+
+            out.writeInt(analyzer.getBlankNodeStatements().size());
+            for (Statement stmt : analyzer.getBlankNodeStatements()) {
+                statement(stmt);
+            }
+            out.writeInt(analyzer.getSkolemizedBlankNodes().size());
+            for (AnonId anonId : analyzer.getSkolemizedBlankNodes()) {
+                string(anonId.getLabelString());
+            }
+
+            out.writeInt(analyzer.getSpecialParseProperties().size());
+            for (Entry<Property, Function<Literal, Object>> e : analyzer.getSpecialParseProperties().entrySet()) {
+                out.writeInt(id(e.getKey()));
+                string(analyzer.getParserName(e.getValue()));
+            }
+
+            nodes(analyzer.getManualCardinalityProperties());
+            out.flush();
+
+            //file
+            out = file;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodes.size());
+            for (Node node : nodes) {
+                node(node);
+            }
+            sections.writeTo(file);
+        }
+
+        private int id(RDFNode rdfNode) {
+            if (rdfNode == null) {
+                return NULL;
+            }
+            Node node = rdfNode.asNode();
+            Integer id = node2id.get(node);
+            if (id == null) {
+                id = nodes.size();
+                node2id.put(node, id);
+                nodes.add(node);
+            }
+            return id;
+        }
+
+        private void nodes(Collection<? extends RDFNode> collection) throws IOException {
+            out.writeInt(collection.size());
+            for (RDFNode node : collection) {
+                out.writeInt(id(node));
+            }
+        }
+
+        private void nodeMap(Map<? extends RDFNode, ? extends Collection<? extends RDFNode>> map) throws IOException {
+            out.writeInt(map.size());
+            for (Entry<? extends RDFNode, ? extends Collection<? extends RDFNode>> e : map.entrySet()) {
+                out.writeInt(id(e.getKey()));
+                nodes(e.getValue());
+            }
+        }
+
+        private void cardinalities(Map<Property, Cardinality> map) throws IOException {
+            out.writeInt(map.size());
+            for (Entry<Property, Cardinality> e : map.entrySet()) {
+                out.writeInt(id(e.getKey()));
+                out.writeByte(e.getValue().ordinal());
+            }
+        }
+
+        private void statement(Statement stmt) throws IOException {
+            if (stmt == null) {
+                out.writeInt(NULL);
+                return;
+            }
+            out.writeInt(id(stmt.getSubject()));
+            out.writeInt(id(stmt.getPredicate()));
+            out.writeInt(id(stmt.getObject()));
+        }
+
+        private void node(Node node) throws IOException {
+            if (node.isURI()) {
+                out.writeByte('U');
+                string(node.getURI());
+            } else if (node.isBlank()) {
+                out.writeByte('B');
+                string(node.getBlankNodeLabel());
+            } else if (node.isLiteral()) {
+                out.writeByte('L');
+                string(node.getLiteralLexicalForm());
+                string(node.getLiteralLanguage());
+                string(node.getLiteralDatatypeURI());
+            } else {
+                throw new RuntimeException("node " + node + " can not be written");
+            }
+        }
+
+        //writeUTF is limited to 64K
+        private void string(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static class Reader {
+
+        private DataInputStream in;
+        private Model model;
+        private RdfsAnalyzer analyzer;
+
+        private RDFNode[] nodes;
+
+        Reader(DataInputStream in, Model model, RdfsAnalyzer analyzer) {
+            this.in = in;
+            this.model = model;
+            this.analyzer = analyzer;
+        }
+
+        void read() throws IOException {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new RuntimeException("not a snapshot of version " + VERSION);
+            }
+
+            nodes = new RDFNode[in.readInt()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = model.asRDFNode(node());
+            }
+
+            long size = in.readLong();
+            long analyzedStatementsCount = in.readLong();
+            analyzer.restore(model, size, analyzedStatementsCount);
+
+            resources(analyzer.getTypes());
+            propertyMap(analyzer.getType2prop());
+            properties(analyzer.getLiteralProperties());
+            properties(analyzer.getResourceProperties());
+            resourceMap(analyzer.getPropertyDomains(), this::property);
+            resourceMap(analyzer.getPropertyRanges(), this::property);
+            resources(analyzer.getDanglingResources());
+            properties(analyzer.getDanglingResourceProperties());
+            properties(analyzer.getLangStringProperties());
+            properties(analyzer.getUntypedResourceProperties());
+
+            StorageClass[] storageClasses = StorageClass.values();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Property prop = property(in.readInt());
+                analyzer.getPropertyStorageClass().put(prop, storageClasses[in.readByte()]);
+            }
+            n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                StorageClass storageClass = storageClasses[in.readByte()];
+                Set<Property> props = new HashSet<>();
+                properties(props);
+                analyzer.getStorageClassProperties().put(storageClass, props);
+            }
+
+            resourceMap(analyzer.getInstance2types(), this::resource);
+            resourceMap(analyzer.getType2instances(), this::resource);
+            cardinalities(analyzer.getDomainCardinality());
+            cardinalities(analyzer.getRangeCardinality());
+
+            n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Warning warning = new Warning(string());
+                warning.setRelatedStatement(statement());
+                warning.setRelatedResource(resource(in.readInt()));
+                analyzer.getWarnings().add(warning);
+            }
+
+            analyzer.getFilterTypesWithNamespaces().clear();
+            n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                analyzer.getFilterTypesWithNamespaces().add(string());
+            }
+
+            resources(analyzer.getExplicitClasses());
+            properties(analyzer.getExplicitProperties());
+            resources(analyzer.getExplicitDatatypes());
+            resources(analyzer.getExplicitContainers());
+            properties(analyzer.getDomainlessMultiCardProperties());
+            properties(analyzer.getRangelessMultiCardProperties());
+
+            n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Resource domain = resource(in.readInt());
+                Property prop = property(in.readInt());
+                Resource range = resource(in.readInt());
+                analyzer.getMultiCardProperties().add(analyzer.new MultiCardinalityProperty(domain, prop, range));
+            }
+
+            n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                analyzer.getBlankNodeStatements().add(statement());
+            }
+            n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                analyzer.getSkolemizedBlankNodes().add(AnonId.create(string()));
+            }
+
+            n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Property prop = property(in.readInt());
+                analyzer.getSpecialParseProperties().put(prop, analyzer.getParser(string()));
+            }
+
+            properties(analyzer.getManualCardinalityProperties());
+        }
+
+        private Resource resource(int id) {
+            return id == NULL ? null : nodes[id].asResource();
+        }
+
+        private Property property(int id) {
+            return id == NULL ? null : nodes[id].as(Property.class);
+        }
+
+        private void resources(Collection<Resource> collection) throws IOException {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                collection.add(resource(in.readInt()));
+            }
+        }
+
+        private void properties(Collection<Property> collection) throws IOException {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                collection.add(property(in.readInt()));
+            }
+        }
+
+        private void propertyMap(Map<Resource, Set<Property>> map) throws IOException {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Resource key = resource(in.readInt());
+                Set<Property> values = new HashSet<>();
+                properties(values);
+                map.put(key, values);
+            }
+        }
+
+        private <K> void resourceMap(Map<K, Set<Resource>> map, IntFunction<K> key) throws IOException {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                K k = key.apply(in.readInt());
+                Set<Resource> values = new HashSet<>();
+                resources(values);
+                map.put(k, values);
+            }
+        }
+
+        private void cardinalities(Map<Property, Cardinality> map) throws IOException {
+            Cardinality[] cardinalities = Cardinality.values();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Property prop = property(in.readInt());
+                map.put(prop, cardinalities[in.readByte()]);
+            }
+        }
+
+        private Statement statement() throws IOException {
+            int s = in.readInt();
+            if (s == NULL) {
+                return null;
+            }
+            int p = in.readInt();
+            int o = in.readInt();
+            return model.createStatement(resource(s), property(p), nodes[o]);
+        }
+
+        private Node node() throws IOException {
+            byte kind = in.readByte();
+            switch (kind) {
+                case 'U':
+                    return NodeFactory.createURI(string());
+                case 'B':
+                    return NodeFactory.createBlankNode(string());
+                case 'L':
+                    String lexical = string();
+                    String lang = string();
+                    String datatype = string();
+                    if (!lang.isEmpty()) {
+                        return NodeFactory.createLiteral(lexical, lang);
+                    }
+                    return NodeFactory.createLiteral(lexical, TypeMapper.getInstance().getSafeTypeByName(datatype));
+                default:
+                    throw new RuntimeException("unknown node kind " + kind);
+            }
+        }
+
+        private String string() throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package de.dfki.sds.rdf2rdb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * A read-only subject → predicate → objects index of a model.
+ * Nodes are dictionary encoded (int ids), the index itself is stored in int arrays.
+ * It is built once and then used for the many lookups of the table generation
+ * instead of querying the graph for every cell.
+ * The lists have the same order as the corresponding model methods
+ * (listObjectsOfProperty, listStatements), so the results do not change.
+ * Changes of the model after the build are not reflected.
+ * A view (see view(Model)) has no index, it answers every lookup with a query of the model,
+ * e.g. for a disk-backed model which does not fit in the heap.
+ */
+public class SubjectIndex {
+
+    private Model model;
+
+    //dictionary
+    private Map<Node, Integer> node2id;
+    private RDFNode[] id2node;
+
+    //node id to subject slot, -1 if the node is no subject
+    private int[] subjectSlot;
+
+    //statements of a subject slot k in find order: [stmtStart[k], stmtStart[k+1])
+    private int[] stmtStart;
+    private int[] stmtPredicate;
+    private int[] stmtObject;
+
+    //distinct predicates of a subject slot k: [predicateStart[k], predicateStart[k+1])
+    private int[] predicateStart;
+    private int[] predicate;
+
+    //objects of a predicate entry e in listObjectsOfProperty order: [objectStart[e], objectStart[e+1])
+    private int[] objectStart;
+    private int[] object;
+
+    private SubjectIndex(Model model) {
+        this.model = model;
+    }
+
+    public static SubjectIndex build(Model model) {
+        SubjectIndex index = new SubjectIndex(model);
+        index.build();
+        return index;
+    }
+
+    /**
+     * The same lookups without an index: they query the model (with its current state).
+     * @param model
+     * @return
+     */
+    public static SubjectIndex view(Model model) {
+        return new SubjectIndex(model);
+    }
+
+    /**
+     * @return false if this is a view
+     */
+    public boolean isBuilt() {
+        return id2node != null;
+    }
+
+    private void build() {
+        Graph graph = model.getGraph();
+
+        node2id = new HashMap<>();
+        List<RDFNode> nodes = new ArrayList<>();
+
+        IntList subjectIds = new IntList();
+        IntList stmtStartList = new IntList();
+        IntList stmtPredicateList = new IntList();
+        IntList stmtObjectList = new IntList();
+        IntList predicateStartList = new IntList();
+        IntList predicateList = new IntList();
+        IntList objectStartList = new IntList();
+        IntList objectList = new IntList();
+
+        ExtendedIterator<Node> subjectIter = GraphUtil.listSubjects(graph, Node.ANY, Node.ANY);
+        try {
+            while (subjectIter.hasNext()) {
+                Node s = subjectIter.next();
+                subjectIds.add(id(s, nodes));
+
+                stmtStartList.add(stmtPredicateList.size());
+                predicateStartList.add(predicateList.size());
+
+                //statements in find order
+                Set<Node> predicates = new LinkedHashSet<>();
+                ExtendedIterator<Triple> tripleIter = graph.find(s, Node.ANY, Node.ANY);
+                try {
+                    while (tripleIter.hasNext()) {
+                        Triple t = tripleIter.next();
+                        stmtPredicateList.add(id(t.getPredicate(), nodes));
+                        stmtObjectList.add(id(t.getObject(), nodes));
+                        predicates.add(t.getPredicate());
+                    }
+                } finally {
+                    tripleIter.close();
+                }
+
+                //objects per predicate in the order of listObjectsOfProperty
+                for (Node p : predicates) {
+                    predicateList.add(node2id.get(p));
+                    objectStartList.add(objectList.size());
+                    ExtendedIterator<Node> objectIter = GraphUtil.listObjects(graph, s, p);
+                    try {
+                        while (objectIter.hasNext()) {
+                            objectList.add(id(objectIter.next(), nodes));
+                        }
+                    } finally {
+                        objectIter.close();
+                    }
+                }
+            }
+        } finally {
+            subjectIter.close();
+        }
+
+        //end markers
+        stmtStartList.add(stmtPredicateList.size());
+        predicateStartList.add(predicateList.size());
+        objectStartList.add(objectList.size());
+
+        id2node = nodes.toArray(new RDFNode[0]);
+
+        subjectSlot = new int[id2node.length];
+        Arrays.fill(subjectSlot, -1);
+        for (int k = 0; k < subjectIds.size(); k++) {
+            subjectSlot[subjectIds.get(k)] = k;
+        }
+
+        stmtStart = stmtStartList.toArray();
+        stmtPredicate = stmtPredicateList.toArray();
+        stmtObject = stmtObjectList.toArray();
+        predicateStart = predicateStartList.toArray();
+        predicate = predicateList.toArray();
+        objectStart = objectStartList.toArray();
+        object = objectList.toArray();
+    }
+
+    private int id(Node node, List<RDFNode> nodes) {
+        Integer id = node2id.get(node);
+        if (id == null) {
+            id = nodes.size();
+            node2id.put(node, id);
+            nodes.add(model.asRDFNode(node));
+        }
+        return id;
+    }
+
+    //-1 if not found
+    private int slot(Resource s) {
+        Integer id = node2id.get(s.asNode());
+        if (id == null) {
+            return -1;
+        }
+        return subjectSlot[id];
+    }
+
+    //-1 if not found
+    private int predicateEntry(int slot, Property p) {
+        if (slot < 0) {
+            return -1;
+        }
+        Integer pid = node2id.get(p.asNode());
+        if (pid == null) {
+            return -1;
+        }
+        for (int e = predicateStart[slot]; e < predicateStart[slot + 1]; e++) {
+            if (predicate[e] == pid) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Like Model.listObjectsOfProperty(s, p).toList().
+     * @param s
+     * @param p
+     * @return a new list
+     */
+    public List<RDFNode> objects(Resource s, Property p) {
+        if (!isBuilt()) {
+            return model.listObjectsOfProperty(s, p).toList();
+        }
+        int e = predicateEntry(slot(s), p);
+        if (e < 0) {
+            return new ArrayList<>();
+        }
+        List<RDFNode> result = new ArrayList<>(objectStart[e + 1] - objectStart[e]);
+        for (int i = objectStart[e]; i < objectStart[e + 1]; i++) {
+            result.add(id2node[object[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Only the resource objects of objects(s, p).
+     * @param s
+     * @param p
+     * @return
+     */
+    public List<Resource> resources(Resource s, Property p) {
+        if (!isBuilt()) {
+            List<Resource> result = new ArrayList<>();
+            for (RDFNode node : objects(s, p)) {
+                if (node.isResource()) {
+                    result.add(node.asResource());
+                }
+            }
+            return result;
+        }
+        int e = predicateEntry(slot(s), p);
+        if (e < 0) {
+            return new ArrayList<>();
+        }
+        List<Resource> result = new ArrayList<>(objectStart[e + 1] - objectStart[e]);
+        for (int i = objectStart[e]; i < objectStart[e + 1]; i++) {
+            RDFNode node = id2node[object[i]];
+            if (node.isResource()) {
+                result.add(node.asResource());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The object of the first (s, p, ?) statement, like Model.getRequiredProperty(s, p).getObject().
+     * @param s
+     * @param p
+     * @return null if there is no such statement
+     */
+    public RDFNode object(Resource s, Property p) {
+        if (!isBuilt()) {
+            StmtIterator iter = model.listStatements(s, p, (RDFNode) null);
+            try {
+                return iter.hasNext() ? iter.next().getObject() : null;
+            } finally {
+                iter.close();
+            }
+        }
+        int slot = slot(s);
+        if (slot < 0) {
+            return null;
+        }
+        Integer pid = node2id.get(p.asNode());
+        if (pid == null) {
+            return null;
+        }
+        for (int i = stmtStart[slot]; i < stmtStart[slot + 1]; i++) {
+            if (stmtPredicate[i] == pid) {
+                return id2node[stmtObject[i]];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Like object(s, p) but null if it is not a literal.
+     * @param s
+     * @param p
+     * @return
+     */
+    public Literal literal(Resource s, Property p) {
+        RDFNode node = object(s, p);
+        if (node == null || !node.isLiteral()) {
+            return null;
+        }
+        return node.asLiteral();
+    }
+
+    /**
+     * The literal objects of the (s, p, ?) statements in the order of Model.listStatements(s, p, null).
+     * @param s
+     * @param p
+     * @return
+     */
+    public List<Literal> literals(Resource s, Property p) {
+        if (!isBuilt()) {
+            List<Literal> result = new ArrayList<>();
+            for (Statement stmt : model.listStatements(s, p, (RDFNode) null).toList()) {
+                if (stmt.getObject().isLiteral()) {
+                    result.add(stmt.getLiteral());
+                }
+            }
+            return result;
+        }
+        int slot = slot(s);
+        if (slot < 0) {
+            return new ArrayList<>();
+        }
+        Integer pid = node2id.get(p.asNode());
+        if (pid == null) {
+            return new ArrayList<>();
+        }
+        List<Literal> result = new ArrayList<>();
+        for (int i = stmtStart[slot]; i < stmtStart[slot + 1]; i++) {
+            if (stmtPredicate[i] == pid) {
+                RDFNode node = id2node[stmtObject[i]];
+                if (node.isLiteral()) {
+                    result.add(node.asLiteral());
+                }
+            }
+        }
+        return result;
+    }
+
+    public boolean contains(Resource s, Property p) {
+        if (!isBuilt()) {
+            return model.contains(s, p);
+        }
+        return predicateEntry(slot(s), p) >= 0;
+    }
+
+    /**
+     * All statements of the subject in the order of Model.listStatements(s, null, null).
+     * @param s
+     * @return
+     */
+    public List<Statement> statements(Resource s) {
+        if (!isBuilt()) {
+            return model.listStatements(s, null, (RDFNode) null).toList();
+        }
+        int slot = slot(s);
+        if (slot < 0) {
+            return Collections.emptyList();
+        }
+        List<Statement> result = new ArrayList<>(stmtStart[slot + 1] - stmtStart[slot]);
+        for (int i = stmtStart[slot]; i < stmtStart[slot + 1]; i++) {
+            result.add(model.createStatement(
+                    s,
+                    id2node[stmtPredicate[i]].as(Property.class),
+                    id2node[stmtObject[i]]
+            ));
+        }
+        return result;
+    }
+
+    //the counts are 0 for a view
+
+    public int getNodeCount() {
+        return isBuilt() ? id2node.length : 0;
+    }
+
+    public int getSubjectCount() {
+        return isBuilt() ? stmtStart.length - 1 : 0;
+    }
+
+    public int getStatementCount() {
+        return isBuilt() ? stmtPredicate.length : 0;
+    }
+
+    public Model getModel() {
+        return model;
+    }
+
+    //growable int array
+    private static class IntList {
+
+        private int[] data = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int i) {
+            return data[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}